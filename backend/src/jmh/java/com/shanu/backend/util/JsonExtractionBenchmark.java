@@ -0,0 +1,137 @@
+package com.shanu.backend.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JsonObjectExtractor vs the regex/replaceAll extraction it replaced in ChatService and AiService.
+ *
+ * Inputs:
+ * - fenced:        typical answer, prose + ```json block
+ * - large:         ~200 KB valid object (long arrays of suggestions)
+ * - proseBraces:   20k "{placeholder}" fragments before the real object
+ * - unclosed:      20k '{' and no '}' at all - worst case for the greedy \{[\s\S]*\} fallback
+ * - deepNesting:   {"a":{"a":... 20k levels, never closed
+ *
+ * Run: mvn -Pjmh test-compile exec:exec -Djmh.args="JsonExtraction"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonExtractionBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"fenced", "large", "proseBraces", "unclosed", "deepNesting"})
+    public String input;
+
+    private String text;
+    private List<String> chunks;
+
+    @Setup
+    public void setUp() {
+        String answer = "{\"summary\": \"Spending is high on dining.\", \"actions\": [\"Cook at home\", \"Set a budget\"], "
+            + "\"estimatedSavingsNextMonth\": 1500, \"confidenceScore\": 70, \"citations\": [\"data-based\"]}";
+        text = switch (input) {
+            case "fenced" -> "Here is your analysis:\n```json\n" + answer + "\n```\nLet me know if you need more.";
+            case "large" -> {
+                StringBuilder sb = new StringBuilder("```json\n{\"summary\": \"big\", \"budget_suggestions\": [");
+                for (int i = 0; i < 2000; i++) {
+                    if (i > 0) sb.append(',');
+                    sb.append("{\"category\": \"Cat ").append(i).append("\", \"current\": 1200.5, \"suggested\": 900.0, ")
+                        .append("\"monthly_savings\": 300.5, \"reason\": \"Reduce discretionary spend in this category\"}");
+                }
+                yield sb.append("]}\n```").toString();
+            }
+            case "proseBraces" -> "Use {placeholder} syntax. ".repeat(20_000) + answer;
+            case "unclosed" -> "{ a ".repeat(20_000);
+            case "deepNesting" -> "{\"a\":".repeat(20_000);
+            default -> throw new IllegalArgumentException(input);
+        };
+        chunks = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += 32) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + 32)));
+        }
+    }
+
+    @Benchmark
+    public JsonNode extractor() {
+        return JsonObjectExtractor.extractFirst(text);
+    }
+
+    @Benchmark
+    public JsonNode extractorStreamed() {
+        JsonObjectExtractor extractor = new JsonObjectExtractor(MAPPER);
+        for (String chunk : chunks) {
+            if (extractor.feed(chunk) != null) break;
+        }
+        return extractor.result();
+    }
+
+    /**
+     * Former ChatService.parseGeminiResponse candidate search.
+     */
+    @Benchmark
+    public JsonNode legacyRegex() {
+        Pattern jsonBlockPattern = Pattern.compile("```json\\s*([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+        Matcher matcher = jsonBlockPattern.matcher(text);
+        List<String> candidates = new ArrayList<>();
+        while (matcher.find()) {
+            String block = matcher.group(1).trim();
+            if (!block.isEmpty()) candidates.add(block);
+        }
+        if (candidates.isEmpty()) {
+            Matcher rawMatcher = Pattern.compile("\\{[\\s\\S]*\\}").matcher(text);
+            while (rawMatcher.find()) {
+                String block = rawMatcher.group().trim();
+                if (!block.isEmpty()) candidates.add(block);
+            }
+        }
+        for (String json : candidates) {
+            try {
+                return MAPPER.readTree(json);
+            } catch (Exception ignored) {
+                // next candidate
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Former AiService.parseJsonFromResponse.
+     */
+    @Benchmark
+    public JsonNode legacyReplaceAll() {
+        String cleaned = text.replaceAll("```json", "").replaceAll("```", "").trim();
+        int start = cleaned.indexOf('{');
+        int end = cleaned.lastIndexOf('}');
+        if (start >= 0 && end > start) {
+            cleaned = cleaned.substring(start, end + 1);
+        }
+        try {
+            return MAPPER.readTree(cleaned);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
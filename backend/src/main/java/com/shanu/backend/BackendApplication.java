@@ -3,16 +3,32 @@ package com.shanu.backend;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import com.shanu.backend.config.GeminiProperties;
 import com.shanu.backend.config.ChatProperties;
 import com.shanu.backend.config.JwtProperties;
+import java.util.Map;
 
 @SpringBootApplication
+@EnableScheduling
 @EnableConfigurationProperties({GeminiProperties.class, ChatProperties.class, JwtProperties.class})
 public class BackendApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(BackendApplication.class, args);
+		// JVM-wide: idle keep-alive of every JDK HttpClient's pool (the LLM transport's included).
+		// It is read once, when the HttpClient classes load, so it has to be set before anything
+		// starts; an explicit -Djdk.httpclient.keepalive.timeout wins
+		if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+			System.setProperty("jdk.httpclient.keepalive.timeout", "60");
+		}
+		SpringApplication app = new SpringApplication(BackendApplication.class);
+		// Lowest-precedence defaults; application.properties can still override them
+		// More than one scheduler thread, so the nightly advice precompute doesn't hold up the
+		// conversation flusher and forecast recomputes
+		app.setDefaultProperties(Map.of(
+			"management.endpoints.web.exposure.include", "health,prometheus",
+			"spring.task.scheduling.pool.size", "4"));
+		app.run(args);
 	}
 
 }
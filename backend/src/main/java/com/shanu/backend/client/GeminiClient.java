@@ -1,368 +1,393 @@
 package com.shanu.backend.client;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.auth.oauth2.GoogleCredentials;
-import com.google.auth.oauth2.AccessToken;
-import java.util.HashMap;
+import com.shanu.backend.util.Hashing;
+import com.shanu.backend.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
- * HTTP wrapper for Gemini API calls.
- * Encapsulates REST calls to Gemini (or OpenAI-compatible endpoint).
- * 
- * Environment variables required:
- * - GEMINI_API_KEY: API key for Gemini
- * - GEMINI_API_URL: Base URL for API (e.g., https://api.openai.com/v1 or Gemini endpoint)
- * 
- * TODO: Add circuit breaker and exponential backoff for production.
+ * Entry point for every LLM call in the app (chat, advice, summaries).
+ *
+ * The actual backend is an LlmProvider chosen with llm.provider:
+ * - gemini (default): GeminiLlmProvider, Google's generateContent API
+ * - mock: MockLlmProvider, in-process canned responses with configurable latency/failures,
+ *   for load tests and benchmarks without network access
+ * - replay: ReplayLlmProvider, real traffic captured earlier with llm.record.enabled=true
+ *   (RecordingLlmProvider writes one JSON file per call to llm.record.dir), served back with the
+ *   recorded or scaled latencies
+ *
+ * Around the provider this class applies the same resilience whichever provider is active:
+ * retries with exponential backoff for 5xx/429/I-O errors, LlmCircuitBreaker (circuit breaker +
+ * bulkhead; when the circuit is open, calls fail immediately with LlmUnavailableException instead
+ * of retrying), an adaptive concurrency limit (LlmConcurrencyLimiter) and per-user coalescing of
+ * identical prompts.
+ *
+ * Hedging (llm.hedge.enabled, off by default): if an attempt hasn't answered after the
+ * llm.hedge.percentile latency of recent successful calls (at least llm.hedge.min-delay-ms), a second
+ * identical request is sent and whichever answers successfully first wins; the other is cancelled.
+ * Hedges are only sent once llm.hedge.min-samples latencies are known, and only when the limiter
+ * has headroom and the circuit is closed, so they can't amplify an overload.
+ * Metrics: llm.hedge (counter, tag outcome=fired|won); per-attempt latency, tokens, cost, retries
+ * and fallbacks go through LlmMetrics.
  */
 @Component
 public class GeminiClient {
-    
-    @Value("${gemini.api.key}")
-    private String apiKey;
-    
-    @Value("${gemini.api.url}")
-    private String apiUrl;
-    
-    @Value("${gemini.model}")
-    private String model;
-    
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${llm.provider:gemini}")
+    private String providerName;
+
+    @Autowired
+    private List<LlmProvider> providers;
+
+    @Value("${llm.record.enabled:false}")
+    private boolean recordEnabled;
+
+    @Value("${llm.record.dir:llm-recordings}")
+    private String recordDir;
+
+    @Value("${llm.record.include-prompt:false}")
+    private boolean recordIncludePrompt;
+
+    @Value("${llm.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${llm.hedge.percentile:95}")
+    private double hedgePercentile;
+
+    @Value("${llm.hedge.min-delay-ms:500}")
+    private long hedgeMinDelayMs;
+
+    @Value("${llm.hedge.min-samples:50}")
+    private int hedgeMinSamples;
+
+    @Autowired
+    private LlmCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private LlmConcurrencyLimiter limiter;
+
+    @Autowired
+    private ExecutorService llmExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LlmMetrics metrics;
+
     private final Logger log = LoggerFactory.getLogger(GeminiClient.class);
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final LatencyTracker latencies = new LatencyTracker(500);
+    private LlmProvider provider;
+
+    @PostConstruct
+    void selectProvider() throws IOException {
+        provider = providers.stream()
+            .filter(p -> p.name().equalsIgnoreCase(providerName))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("Unknown llm.provider '" + providerName + "'"));
+        log.info("LLM provider: {} (model {})", provider.name(), provider.model());
+        if (recordEnabled && !(provider instanceof ReplayLlmProvider)) {
+            provider = new RecordingLlmProvider(provider, Path.of(recordDir), recordIncludePrompt);
+            log.info("Recording LLM traffic to {}", Path.of(recordDir).toAbsolutePath());
+        }
+    }
 
     /**
-     * Call Gemini API with a prompt and return raw response.
+     * Same as callGemini(prompt), but concurrent calls with the same user and prompt
+     * (double submits, retries from a second tab) share a single upstream request.
+     */
+    public String callGemini(String userId, String prompt) throws Exception {
+        String key = Hashing.sha256Hex(userId, provider.model(), Hashing.normalizePrompt(prompt));
+        return flights.run(key, () -> call(userId, prompt));
+    }
+
+    /**
+     * Call the LLM with a prompt and return the model's text.
      * Expects the model to return JSON-formatted text.
-     * 
+     *
      * @param prompt The user prompt/message
-     * @return Raw string response from Gemini
+     * @return Raw text response from the model
      */
-    // public String callGemini(String prompt) throws Exception {
-    //     if (apiKey == null || apiKey.isBlank()) {
-    //         throw new IllegalStateException("Gemini API key not configured. Set GEMINI_API_KEY env var.");
-    //     }
-
-    //     // Build URL without embedding the key in the query string — use Authorization header instead.
-    //     String url = apiUrl.endsWith("/") ? apiUrl + model + ":generateContent" : apiUrl + "/" + model + ":generateContent";
-
-    //     // Build Gemini request body
-    //     Map<String, Object> request = new HashMap<>();
-    //     Map<String, Object> contents = new HashMap<>();
-    //     Map<String, String> part = new HashMap<>();
-    //     part.put("text", prompt);
-    //     contents.put("parts", List.of(part));
-    //     request.put("contents", List.of(contents));
-
-    //     HttpHeaders headers = new HttpHeaders();
-    //     headers.setContentType(MediaType.APPLICATION_JSON);
-    //     headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-    //     headers.set("Authorization", "Bearer " + apiKey);
-
-    //     String body = objectMapper.writeValueAsString(request);
-    //     HttpEntity<String> entity = new HttpEntity<>(body, headers);
-
-    //     // Simple retry loop with exponential backoff + jitter to tolerate transient failures
-    //     final int maxAttempts = 3;
-    //     long backoffMillis = 500;
-    //     for (int attempt = 1; attempt <= maxAttempts; attempt++) {
-    //         try {
-    //             log.debug("Calling Gemini (attempt {}): {}", attempt, url);
-    //             ResponseEntity<String> resp = restTemplate.postForEntity(url, entity, String.class);
-    //             int status = resp.getStatusCode().value();
-    //             String responseBody = resp.getBody() == null ? "" : resp.getBody();
-
-    //             if (status >= 200 && status < 300) {
-    //                 String text = extractTextFromGeminiResponse(responseBody);
-    //                 log.debug("Gemini response extracted length={}", text == null ? 0 : text.length());
-    //                 return text;
-    //             } else {
-    //                 String msg = String.format("Gemini returned non-success status %d", status);
-    //                 log.warn(msg + " - body: {}", responseBody);
-
-    //                 // If unauthorized, try fallback: some Google API keys require using ?key=API_KEY
-    //                 if ((status == 401 || status == 403) && attempt == maxAttempts) {
-    //                     try {
-    //                         String fallbackUrl = url + (url.contains("?") ? "&" : "?") + "key=" + apiKey;
-    //                         log.info("Attempting fallback call with API key as query param");
-    //                         ResponseEntity<String> fallbackResp = restTemplate.postForEntity(fallbackUrl, entity, String.class);
-    //                         int fbStatus = fallbackResp.getStatusCode().value();
-    //                         String fbBody = fallbackResp.getBody() == null ? "" : fallbackResp.getBody();
-    //                         log.warn("Fallback attempt returned status {} - body: {}", fbStatus, fbBody);
-    //                         if (fbStatus >= 200 && fbStatus < 300) {
-    //                             return extractTextFromGeminiResponse(fbBody);
-    //                         }
-    //                     } catch (Exception fe) {
-    //                         log.warn("Fallback call also failed: {}", fe.getMessage());
-    //                     }
-
-    //                     // Additional fallback: try using Application Default Credentials (service account) to get an OAuth token
-    //                     try {
-    //                         log.info("Attempting fallback with Application Default Credentials (ADC)");
-    //                         GoogleCredentials creds = GoogleCredentials.getApplicationDefault().createScoped(List.of("https://www.googleapis.com/auth/cloud-platform"));
-    //                         creds.refreshIfExpired();
-    //                         AccessToken token = creds.getAccessToken();
-    //                         if (token != null) {
-    //                             String accessToken = token.getTokenValue();
-    //                             HttpHeaders tokenHeaders = new HttpHeaders();
-    //                             tokenHeaders.setContentType(MediaType.APPLICATION_JSON);
-    //                             tokenHeaders.setAccept(List.of(MediaType.APPLICATION_JSON));
-    //                             tokenHeaders.set("Authorization", "Bearer " + accessToken);
-    //                             HttpEntity<String> tokenEntity = new HttpEntity<>(body, tokenHeaders);
-    //                             ResponseEntity<String> tokenResp = restTemplate.postForEntity(url, tokenEntity, String.class);
-    //                             int tStatus = tokenResp.getStatusCode().value();
-    //                             String tBody = tokenResp.getBody() == null ? "" : tokenResp.getBody();
-    //                             log.warn("ADC attempt returned status {} - body: {}", tStatus, tBody);
-    //                             if (tStatus >= 200 && tStatus < 300) {
-    //                                 return extractTextFromGeminiResponse(tBody);
-    //                             }
-    //                         } else {
-    //                             log.warn("ADC did not return an access token");
-    //                         }
-    //                     } catch (Exception ge) {
-    //                         log.warn("ADC fallback failed: {}", ge.getMessage());
-    //                     }
-    //                 }
-
-    //                 if (attempt == maxAttempts) {
-    //                     throw new RuntimeException(msg + ": " + responseBody);
-    //                 }
-    //             }
-    //         } catch (Exception e) {
-    //             log.warn("Gemini API call failed on attempt {}: {}", attempt, e.getMessage());
-    //             if (attempt == maxAttempts) {
-    //                 throw new RuntimeException("Gemini API call failed after retries: " + e.getMessage(), e);
-    //             }
-    //         }
-
-    //         // backoff with jitter
-    //         long jitter = (long) (Math.random() * 100);
-    //         try {
-    //             Thread.sleep(backoffMillis + jitter);
-    //         } catch (InterruptedException ie) {
-    //             Thread.currentThread().interrupt();
-    //             throw new RuntimeException("Interrupted during retry backoff", ie);
-    //         }
-    //         backoffMillis *= 2;
-    //     }
-
-    //     throw new RuntimeException("Gemini API call failed (unreachable code)");
-    // }
     public String callGemini(String prompt) throws Exception {
-    // Build URL
-    String baseUrl = apiUrl.endsWith("/") ? apiUrl + model + ":generateContent" : apiUrl + "/" + model + ":generateContent";
-
-    // Build request JSON body (same shape you used)
-    Map<String, Object> request = new HashMap<>();
-    Map<String, Object> contents = new HashMap<>();
-    Map<String, String> part = new HashMap<>();
-    part.put("text", prompt);
-    contents.put("parts", List.of(part));
-    request.put("contents", List.of(contents));
-    String body = objectMapper.writeValueAsString(request);
-
-    // Prepare auth detection
-    String effectiveApiKey = apiKey == null ? "" : apiKey.trim();
-    String requestUrl = baseUrl;
-    String bearerToken = null;
-    boolean useQueryApiKey = false;
-    boolean ambiguousApiKeyAsBearer = false;
-
-    // Flags to avoid repeating fallback attempts
-    boolean triedADC = false;
-    boolean triedQueryKey = false;
-
-    // Decide initial auth method
-    if (effectiveApiKey.isBlank()) {
-        log.info("No gemini.api.key provided; will attempt ADC (Application Default Credentials).");
-        // Attempt to get ADC token now (best-effort). If it fails, we'll still attempt other fallbacks later.
+        return call(null, prompt);
+    }
+
+    /**
+     * Retry loop; userId (nullable) is only used to attribute token usage.
+     */
+    private String call(String userId, String prompt) throws Exception {
+        final int maxAttempts = 3;
+        long backoffMillis = 500;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                log.debug("Calling {} (attempt {})", provider.name(), attempt);
+                LlmResult result = hedgeEnabled ? completeHedged(userId, prompt) : completeOnce(userId, prompt);
+                if (result.isSuccess()) {
+                    return result.text();
+                }
+                String msg = String.format("%s returned non-success status %d", provider.name(), result.status());
+                // Other 4xx (bad request, auth already negotiated by the provider) won't get better on retry
+                if (!result.isServerFailure() || attempt == maxAttempts) {
+                    throw new LlmCallException(msg + ": " + result.body());
+                }
+                log.warn(msg + " - retrying");
+                metrics.recordRetry(provider.model(), String.valueOf(result.status()));
+            } catch (LlmUnavailableException | LlmCallException e) {
+                // Circuit open / bulkhead full, or a final answer from upstream: retrying would only add latency
+                throw e;
+            } catch (Exception e) {
+                log.warn("LLM call failed on attempt {}: {}", attempt, e.getMessage());
+                if (attempt == maxAttempts) {
+                    throw new RuntimeException("LLM call failed after retries: " + e.getMessage(), e);
+                }
+                metrics.recordRetry(provider.model(), e.getClass().getSimpleName());
+            }
+
+            // Don't sleep through a backoff if the breaker has opened in the meantime
+            if (!circuitBreaker.isCallPermitted()) {
+                throw new LlmUnavailableException("LLM temporarily unavailable (circuit open)");
+            }
+
+            // backoff with jitter
+            long jitter = (long) (Math.random() * 100);
+            try {
+                Thread.sleep(backoffMillis + jitter);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted during retry backoff", ie);
+            }
+            backoffMillis *= 2;
+        }
+
+        throw new RuntimeException("LLM call failed (unreachable code)");
+    }
+
+    /**
+     * One attempt: limiter slot, then breaker + bulkhead, then the provider.
+     */
+    private LlmResult completeOnce(String userId, String prompt) throws Exception {
+        LlmConcurrencyLimiter.Permit permit = limiter.acquire();
+        long start = System.nanoTime();
         try {
-            GoogleCredentials creds = GoogleCredentials.getApplicationDefault()
-                .createScoped(List.of("https://www.googleapis.com/auth/cloud-platform"));
-            creds.refreshIfExpired();
-            AccessToken token = creds.getAccessToken();
-            if (token != null) {
-                bearerToken = token.getTokenValue();
-                triedADC = true;
-                log.info("Using ADC for initial auth.");
+            LlmResult result = circuitBreaker.execute(() -> {
+                try {
+                    return provider.complete(prompt);
+                } catch (InterruptedException e) {
+                    // Cancelled by us (lost hedge, caller gave up), not an upstream failure
+                    Thread.currentThread().interrupt();
+                    return LlmResult.cancelled();
+                }
+            }, LlmResult::isServerFailure);
+            long elapsed = System.nanoTime() - start;
+            metrics.recordAttempt(provider.name(), provider.model(), "complete", LlmMetrics.outcome(result), elapsed);
+            if (result.isSuccess()) {
+                latencies.record(TimeUnit.NANOSECONDS.toMillis(elapsed));
+                metrics.recordUsage(userId, provider.model(), result.usage());
+                permit.success();
+            } else if (result.isServerFailure()) {
+                permit.dropped();
+            } else if (Thread.currentThread().isInterrupted()) {
+                permit.ignore();
             } else {
-                log.info("ADC available but returned no access token.");
+                permit.success();
             }
+            return result;
         } catch (Exception e) {
-            log.info("ADC not available for initial auth (will try again on 401/403).");
-        }
-    } else {
-        // If looks like OAuth access token
-        if (effectiveApiKey.startsWith("ya29.") || effectiveApiKey.startsWith("ya29_")) {
-            bearerToken = effectiveApiKey;
-            log.info("Using provided credential as OAuth access token (Bearer).");
-        }
-        // If looks like a Google API key
-        else if (effectiveApiKey.startsWith("AIza") || (effectiveApiKey.length() >= 30 && effectiveApiKey.length() <= 60)) {
-            requestUrl = baseUrl + (baseUrl.contains("?") ? "&" : "?") + "key=" + effectiveApiKey;
-            useQueryApiKey = true;
-            triedQueryKey = true;
-            log.info("Using provided credential as Google API key (query param).");
-        }
-        // Ambiguous: try as Bearer but mark ambiguous so we can try query-key fallback later
-        else {
-            bearerToken = effectiveApiKey;
-            ambiguousApiKeyAsBearer = true;
-            log.info("Provided gemini.api.key is ambiguous; attempting to use it as Bearer token and will try ADC/query-key fallback on 401/403.");
+            // Refused by the breaker/bulkhead without a network call: nothing to time, and nothing
+            // learned about upstream capacity (the open breaker already sheds that load)
+            boolean refused = e instanceof LlmUnavailableException;
+            if (!refused) {
+                metrics.recordAttempt(provider.name(), provider.model(), "complete", "error", System.nanoTime() - start);
+            }
+            if (refused || Thread.currentThread().isInterrupted()) {
+                permit.ignore();
+            } else {
+                permit.dropped();
+            }
+            throw e;
         }
     }
 
-    final int maxAttempts = 3;
-    long backoffMillis = 500;
-
-    for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+    /**
+     * completeOnce, plus a second identical attempt if the first is slower than usual.
+     */
+    private LlmResult completeHedged(String userId, String prompt) throws Exception {
+        long delayMs = hedgeDelayMs();
+        if (delayMs < 0) {
+            return completeOnce(userId, prompt);
+        }
+        CompletionService<LlmResult> legs = new ExecutorCompletionService<>(llmExecutor);
+        List<Future<LlmResult>> started = new ArrayList<>(2);
+        started.add(legs.submit(() -> completeOnce(userId, prompt)));
         try {
-            // Build headers for this attempt
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-            if (bearerToken != null && !useQueryApiKey) {
-                headers.set("Authorization", "Bearer " + bearerToken);
+            Future<LlmResult> first = legs.poll(delayMs, TimeUnit.MILLISECONDS);
+            if (first == null && limiter.hasHeadroom() && circuitBreaker.getState() == LlmCircuitBreaker.State.CLOSED) {
+                meterRegistry.counter("llm.hedge", "outcome", "fired").increment();
+                started.add(legs.submit(() -> completeOnce(userId, prompt)));
             }
-            HttpEntity<String> entity = new HttpEntity<>(body, headers);
 
-            log.debug("Calling Gemini (attempt {}): {}", attempt, requestUrl);
-            ResponseEntity<String> resp = restTemplate.postForEntity(requestUrl, entity, String.class);
-            int status = resp.getStatusCode().value();
-            String responseBody = resp.getBody() == null ? "" : resp.getBody();
-
-            if (status >= 200 && status < 300) {
-                String text = extractTextFromGeminiResponse(responseBody);
-                log.debug("Gemini response received length={}", text == null ? 0 : text.length());
-                return text;
-            } else {
-                String msg = String.format("Gemini returned non-success status %d", status);
-                log.warn(msg + " - body: {}", responseBody);
-
-                // If unauthorized, attempt prioritized fallbacks:
-                // 1) If we haven't tried ADC yet, try ADC and retry immediately.
-                // 2) If we used Bearer with ambiguous key, try query param with the original apiKey.
-                // 3) If we used query param and it failed, try ADC (if not yet tried).
-                if ((status == 401 || status == 403)) {
-                    // Attempt ADC fallback if not tried
-                    if (!triedADC) {
-                        try {
-                            log.info("Received {} - attempting ADC fallback.", status);
-                            GoogleCredentials creds = GoogleCredentials.getApplicationDefault()
-                                .createScoped(List.of("https://www.googleapis.com/auth/cloud-platform"));
-                            creds.refreshIfExpired();
-                            AccessToken token = creds.getAccessToken();
-                            if (token != null) {
-                                bearerToken = token.getTokenValue();
-                                // reset requestUrl to base (remove any ?key=... if present)
-                                requestUrl = baseUrl;
-                                triedADC = true;
-                                log.info("ADC fallback obtained token; will retry with ADC Bearer token.");
-                                // continue to next attempt (will retry)
-                                continue;
-                            } else {
-                                log.warn("ADC fallback did not return an access token.");
-                            }
-                        } catch (Exception ge) {
-                            log.warn("ADC fallback failed: {}", ge.getMessage());
-                        }
-                    }
-
-                    // If we used ambiguous Bearer and haven't tried query-key yet, try query param
-                    if (ambiguousApiKeyAsBearer && !triedQueryKey && !effectiveApiKey.isBlank()) {
-                        try {
-                            log.info("Received {} - attempting fallback using API key as query parameter.", status);
-                            requestUrl = baseUrl + (baseUrl.contains("?") ? "&" : "?") + "key=" + effectiveApiKey;
-                            // clear bearer header for query-key attempt
-                            bearerToken = null;
-                            triedQueryKey = true;
-                            useQueryApiKey = true;
-                            // retry immediately
-                            continue;
-                        } catch (Exception qe) {
-                            log.warn("Query-key fallback failed to construct request: {}", qe.getMessage());
+            // First successful answer wins; otherwise report the last leg's outcome
+            LlmResult lastResult = null;
+            Exception lastError = null;
+            for (int pending = started.size(); pending > 0; pending--) {
+                Future<LlmResult> done = (first != null) ? first : legs.take();
+                first = null;
+                try {
+                    LlmResult result = done.get();
+                    if (result.isSuccess()) {
+                        if (started.size() > 1 && done == started.get(1)) {
+                            meterRegistry.counter("llm.hedge", "outcome", "won").increment();
                         }
+                        return result;
                     }
-
-                    // If we used query param initially and it failed, try ADC (if not tried)
-                    if (useQueryApiKey && !triedADC) {
-                        try {
-                            log.info("Query-key attempt failed with {} - trying ADC as fallback.", status);
-                            GoogleCredentials creds = GoogleCredentials.getApplicationDefault()
-                                .createScoped(List.of("https://www.googleapis.com/auth/cloud-platform"));
-                            creds.refreshIfExpired();
-                            AccessToken token = creds.getAccessToken();
-                            if (token != null) {
-                                bearerToken = token.getTokenValue();
-                                requestUrl = baseUrl; // switch back to bearer-based URL
-                                triedADC = true;
-                                useQueryApiKey = false;
-                                log.info("ADC fallback obtained token; will retry with ADC Bearer token.");
-                                continue;
-                            } else {
-                                log.warn("ADC fallback after query-key did not return an access token.");
-                            }
-                        } catch (Exception ge) {
-                            log.warn("ADC fallback after query-key failed: {}", ge.getMessage());
-                        }
-                    }
-                }
-
-                if (attempt == maxAttempts) {
-                    throw new RuntimeException(msg + ": " + responseBody);
+                    lastResult = result;
+                } catch (ExecutionException e) {
+                    lastError = (e.getCause() instanceof Exception cause) ? cause : e;
                 }
             }
-        } catch (Exception e) {
-            log.warn("Gemini API call failed on attempt {}: {}", attempt, e.getMessage());
-            if (attempt == maxAttempts) {
-                throw new RuntimeException("Gemini API call failed after retries: " + e.getMessage(), e);
+            if (lastResult != null) {
+                return lastResult;
             }
+            throw lastError;
+        } finally {
+            started.forEach(f -> f.cancel(true));
         }
+    }
 
-        // backoff with jitter
-        long jitter = (long) (Math.random() * 100);
-        try {
-            Thread.sleep(backoffMillis + jitter);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Interrupted during retry backoff", ie);
+    /**
+     * Delay before hedging, or -1 while there aren't enough latency samples to pick one.
+     */
+    private long hedgeDelayMs() {
+        if (latencies.size() < hedgeMinSamples) {
+            return -1;
         }
-        backoffMillis *= 2;
+        return Math.max(hedgeMinDelayMs, latencies.percentile(hedgePercentile));
     }
 
-    throw new RuntimeException("Gemini API call failed (unreachable code)");
-}
-
-
     /**
-     * Extract the text content from Gemini's response JSON.
-     * Gemini returns: { "candidates": [{ "content": { "parts": [{ "text": "..." }] } }] }
+     * Stream a completion; each text fragment is passed to onDelta as soon as it arrives
+     * and the full text is returned at the end.
+     *
+     * A stream cannot be retried once text has been forwarded, so there is no retry loop here.
+     * If the stream fails upstream (5xx/429, I/O error) before the first fragment, this falls back
+     * to callGemini and emits the whole answer as one fragment. Outcomes are classified as in
+     * completeOnce: a 4xx is a final answer (no fallback, not a breaker or limiter failure), and a
+     * cancelled stream (interrupt, or onDelta failing because the client went away) is not recorded.
+     * userId (nullable) is only used to attribute token usage.
      */
-    private String extractTextFromGeminiResponse(String responseJson) throws Exception {
+    public String streamGemini(String userId, String prompt, Consumer<String> onDelta) throws Exception {
+        StringBuilder full = new StringBuilder();
+        LlmConcurrencyLimiter.Permit permit = limiter.acquire();
+        try {
+            circuitBreaker.acquirePermission();
+        } catch (LlmUnavailableException e) {
+            permit.ignore();
+            throw e;
+        }
+        boolean[] downstreamFailed = {false};
+        long start = System.nanoTime();
+        LlmResult result;
         try {
-            com.fasterxml.jackson.databind.JsonNode root = objectMapper.readTree(responseJson);
-            return root.at("/candidates/0/content/parts/0/text").asText("");
+            result = provider.stream(prompt, delta -> {
+                full.append(delta);
+                try {
+                    onDelta.accept(delta);
+                } catch (RuntimeException e) {
+                    downstreamFailed[0] = true;
+                    throw e;
+                }
+            });
         } catch (Exception e) {
-            // Fallback: return response as-is if parsing fails
-            return responseJson;
+            boolean cancelled = downstreamFailed[0] || e instanceof InterruptedException
+                || Thread.currentThread().isInterrupted();
+            metrics.recordAttempt(provider.name(), provider.model(), "stream", cancelled ? "cancelled" : "error",
+                System.nanoTime() - start);
+            circuitBreaker.releaseBulkhead();
+            if (cancelled) {
+                circuitBreaker.onCancelled();
+                permit.ignore();
+                throw e;
+            }
+            circuitBreaker.onResult(0, true);
+            permit.dropped();
+            if (full.length() > 0) {
+                throw e;
+            }
+            log.warn("LLM stream failed before first token ({}); falling back to unary call", e.getMessage());
+            return fallbackToUnary(userId, prompt, onDelta);
+        }
+
+        metrics.recordAttempt(provider.name(), provider.model(), "stream", LlmMetrics.outcome(result), System.nanoTime() - start);
+        circuitBreaker.releaseBulkhead();
+        if (Thread.currentThread().isInterrupted() && !result.isSuccess()) {
+            circuitBreaker.onCancelled();
+            permit.ignore();
+            throw new InterruptedException("LLM stream cancelled");
+        }
+        // A long stream is expected, so only time-to-completion failures count, not slowness
+        circuitBreaker.onResult(0, result.isServerFailure());
+        if (result.isServerFailure()) {
+            permit.dropped();
+        } else {
+            permit.ignore();
+        }
+        if (result.isSuccess()) {
+            metrics.recordUsage(userId, provider.model(), result.usage());
+            return full.toString();
+        }
+        String msg = provider.name() + " stream returned non-success status " + result.status() + ": " + result.body();
+        if (!result.isServerFailure() || full.length() > 0) {
+            throw new LlmCallException(msg);
         }
+        log.warn("{}; falling back to unary call", msg);
+        return fallbackToUnary(userId, prompt, onDelta);
+    }
+
+    private String fallbackToUnary(String userId, String prompt, Consumer<String> onDelta) throws Exception {
+        metrics.recordFallback("stream", "stream_failed");
+        String text = call(userId, prompt);
+        onDelta.accept(text);
+        return text;
+    }
+
+    /**
+     * Model of the active provider (part of cache keys, so switching models doesn't serve stale answers).
+     */
+    public String model() {
+        return provider.model();
     }
 
     /**
-     * Check if the API key is configured.
+     * Check if the active provider has what it needs (credentials) to make calls.
      */
     public boolean isConfigured() {
-        return apiKey != null && !apiKey.isBlank();
+        return provider.isConfigured();
+    }
+
+    /**
+     * Upstream answered with a non-retryable error status.
+     */
+    static class LlmCallException extends RuntimeException {
+        LlmCallException(String message) {
+            super(message);
+        }
     }
 }
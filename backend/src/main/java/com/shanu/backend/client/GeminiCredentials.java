@@ -0,0 +1,202 @@
+package com.shanu.backend.client;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves Gemini credentials once and keeps OAuth access tokens fresh.
+ *
+ * The auth mode is derived from gemini.api.key (or the older ai.key) at startup:
+ * - "ya29..."            -> BEARER (static OAuth access token)
+ * - "AIza..." / 30-60 ch -> API_KEY (sent as ?key= query param)
+ * - anything else        -> AMBIGUOUS (tried as Bearer, then as query key)
+ * - blank                -> ADC (Application Default Credentials)
+ *
+ * ADC tokens are refreshed on a background thread a few minutes before they expire,
+ * so callers only read a volatile field. Forced refreshes after a 401/403 are coalesced:
+ * only the first caller that saw a given token refreshes it.
+ *
+ * ADC is given up on only when no credentials are found. If they are found but fetching a
+ * token fails (metadata server not up yet, network blip), it is retried every 30s in the
+ * background and by callers once that window has passed.
+ */
+@Component
+public class GeminiCredentials {
+
+    public enum AuthMode { API_KEY, BEARER, AMBIGUOUS, ADC }
+
+    private static final List<String> SCOPES = List.of("https://www.googleapis.com/auth/cloud-platform");
+
+    private static final long ADC_RETRY_MS = 30_000;
+
+    @Value("${gemini.api.key:${ai.key:}}")
+    private String apiKey;
+
+    // Refresh ADC tokens this long before expiry
+    @Value("${gemini.auth.refresh-skew-ms:300000}")
+    private long refreshSkewMs;
+
+    private final Logger log = LoggerFactory.getLogger(GeminiCredentials.class);
+
+    private AuthMode mode;
+    private String effectiveApiKey;
+
+    private final Object adcLock = new Object();
+    private volatile GoogleCredentials adc;
+    private volatile String adcToken;
+    private volatile long adcExpiresAtMillis;
+    private volatile boolean adcUnavailable;
+    // Earliest time a caller may retry a failed token fetch; guarded by adcLock
+    private long nextAdcAttemptAt;
+
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    void init() {
+        effectiveApiKey = apiKey == null ? "" : apiKey.trim();
+        if (effectiveApiKey.isBlank()) {
+            mode = AuthMode.ADC;
+        } else if (effectiveApiKey.startsWith("ya29.") || effectiveApiKey.startsWith("ya29_")) {
+            mode = AuthMode.BEARER;
+        } else if (effectiveApiKey.startsWith("AIza") || (effectiveApiKey.length() >= 30 && effectiveApiKey.length() <= 60)) {
+            mode = AuthMode.API_KEY;
+        } else {
+            mode = AuthMode.AMBIGUOUS;
+        }
+        log.info("Gemini auth mode resolved: {}", mode);
+
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gemini-token-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (mode == AuthMode.ADC) {
+            // Best-effort warm-up; a failed token fetch is retried in the background and on use
+            refresher.execute(this::adcToken);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    public AuthMode mode() {
+        return mode;
+    }
+
+    public String apiKey() {
+        return effectiveApiKey;
+    }
+
+    public boolean isConfigured() {
+        return !effectiveApiKey.isBlank() || adcToken != null;
+    }
+
+    /**
+     * Current ADC access token, loading credentials on first use. Returns null if ADC is not available
+     * or no token could be fetched yet. After the first successful load this is a plain field read.
+     */
+    public String adcToken() {
+        String token = adcToken;
+        if (token != null || adcUnavailable) {
+            return token;
+        }
+        synchronized (adcLock) {
+            if (adcToken != null || adcUnavailable || System.currentTimeMillis() < nextAdcAttemptAt) {
+                return adcToken;
+            }
+            if (adc == null) {
+                try {
+                    adc = loadApplicationDefault().createScoped(SCOPES);
+                } catch (Exception e) {
+                    // No credentials in this environment; that won't change without a restart
+                    adcUnavailable = true;
+                    log.info("ADC not available: {}", e.getMessage());
+                    return null;
+                }
+            }
+            try {
+                refreshAdc();
+            } catch (Exception e) {
+                log.warn("ADC token fetch failed, retrying in 30s: {}", e.getMessage());
+                nextAdcAttemptAt = System.currentTimeMillis() + ADC_RETRY_MS;
+                scheduleRefresh(ADC_RETRY_MS);
+            }
+            return adcToken;
+        }
+    }
+
+    GoogleCredentials loadApplicationDefault() throws IOException {
+        return GoogleCredentials.getApplicationDefault();
+    }
+
+    /**
+     * Called when a request using the given ADC token was rejected.
+     * Only refreshes if no other thread has already replaced that token.
+     */
+    public String refreshAfterRejection(String rejectedToken) {
+        synchronized (adcLock) {
+            if (adc == null || rejectedToken == null || !rejectedToken.equals(adcToken)) {
+                return adcToken;
+            }
+            try {
+                refreshAdc();
+            } catch (Exception e) {
+                log.warn("Forced ADC refresh failed: {}", e.getMessage());
+            }
+            return adcToken;
+        }
+    }
+
+    // Must be called with adcLock held (or from the refresher thread via scheduledRefresh)
+    private void refreshAdc() throws Exception {
+        adc.refresh();
+        AccessToken token = adc.getAccessToken();
+        if (token == null) {
+            throw new IllegalStateException("ADC returned no access token");
+        }
+        adcToken = token.getTokenValue();
+        adcExpiresAtMillis = token.getExpirationTime() != null
+            ? token.getExpirationTime().getTime()
+            : System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(55);
+        scheduleRefresh(adcExpiresAtMillis - refreshSkewMs - System.currentTimeMillis());
+    }
+
+    private void scheduleRefresh(long delayMs) {
+        if (refresher == null || refresher.isShutdown()) return;
+        refresher.schedule(this::scheduledRefresh, Math.max(5_000, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduledRefresh() {
+        synchronized (adcLock) {
+            // Another refresh may already have pushed the expiry out
+            if (adcExpiresAtMillis - System.currentTimeMillis() > refreshSkewMs) {
+                return;
+            }
+            try {
+                refreshAdc();
+                log.debug("ADC token refreshed in background");
+            } catch (Exception e) {
+                log.warn("Background ADC refresh failed, retrying in 30s: {}", e.getMessage());
+                nextAdcAttemptAt = System.currentTimeMillis() + ADC_RETRY_MS;
+                scheduleRefresh(ADC_RETRY_MS);
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.shanu.backend.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * LlmProvider for Google's Gemini generateContent / streamGenerateContent endpoints.
+ *
+ * Properties (the older ai.* names are accepted as fallbacks):
+ * - gemini.api.url (ai.baseUrl): base URL, e.g. https://generativelanguage.googleapis.com/v1beta/models
+ * - gemini.model (ai.model): model name
+ * - gemini.api.key (ai.key): see GeminiCredentials
+ *
+ * Auth mode is resolved once by GeminiCredentials; on 401/403 an attempt falls back to ADC
+ * and/or the query-param API key, in that order, without re-reading credentials.
+ */
+@Component
+public class GeminiLlmProvider implements LlmProvider {
+
+    @Value("${gemini.api.url:${ai.baseUrl:https://generativelanguage.googleapis.com/v1beta/models}}")
+    private String apiUrl;
+
+    @Value("${gemini.model:${ai.model:gemini-pro}}")
+    private String model;
+
+    @Value("${llm.http.stream-timeout-ms:120000}")
+    private long streamTimeoutMs;
+
+    @Autowired
+    private GeminiCredentials credentials;
+
+    @Autowired
+    private LlmHttpTransport transport;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Logger log = LoggerFactory.getLogger(GeminiLlmProvider.class);
+
+    @Override
+    public String name() {
+        return "gemini";
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return credentials.isConfigured() || credentials.adcToken() != null;
+    }
+
+    @Override
+    public LlmResult complete(String prompt) throws IOException, InterruptedException {
+        String baseUrl = endpoint("generateContent");
+        String queryKeyUrl = baseUrl + (baseUrl.contains("?") ? "&" : "?") + "key=" + credentials.apiKey();
+        String body = buildRequestBody(prompt);
+
+        // Initial auth from the resolved mode (field reads only)
+        GeminiCredentials.AuthMode mode = credentials.mode();
+        String requestUrl = baseUrl;
+        String bearerToken = null;
+        boolean usingAdc = false;
+        switch (mode) {
+            case API_KEY -> requestUrl = queryKeyUrl;
+            case BEARER, AMBIGUOUS -> bearerToken = credentials.apiKey();
+            case ADC -> {
+                bearerToken = credentials.adcToken();
+                usingAdc = bearerToken != null;
+            }
+        }
+
+        // Flags to avoid repeating fallback attempts within this call
+        boolean triedADC = usingAdc;
+        boolean triedQueryKey = mode == GeminiCredentials.AuthMode.API_KEY;
+        boolean triedRefresh = false;
+
+        while (true) {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Accept", "application/json");
+            if (bearerToken != null) {
+                headers.put("Authorization", "Bearer " + bearerToken);
+            }
+
+            log.debug("Calling Gemini (auth={})", usingAdc ? "ADC" : mode);
+            LlmHttpTransport.Response resp = transport.postJson(requestUrl, headers, body);
+            int status = resp.status();
+
+            if (resp.isSuccess()) {
+                JsonNode root = parse(resp.body());
+                String text = root != null ? extractText(root) : resp.body();
+                log.debug("Gemini response received length={}", text == null ? 0 : text.length());
+                return LlmResult.ok(text, root != null ? extractUsage(root) : null);
+            }
+            log.warn("Gemini returned non-success status {} - body: {}", status, resp.body());
+            if (status != 401 && status != 403) {
+                return LlmResult.error(status, resp.body());
+            }
+
+            // Unauthorized: try prioritized fallbacks
+            // 1) If the rejected token was our ADC token, force one (coalesced) refresh.
+            // 2) If we haven't tried ADC yet, switch to ADC.
+            // 3) If we used Bearer with an ambiguous key, try it as query param.
+            if (usingAdc && !triedRefresh) {
+                triedRefresh = true;
+                String refreshed = credentials.refreshAfterRejection(bearerToken);
+                if (refreshed != null && !refreshed.equals(bearerToken)) {
+                    log.info("Received {} - retrying with refreshed ADC token.", status);
+                    bearerToken = refreshed;
+                    continue;
+                }
+            } else if (!usingAdc && !triedADC) {
+                triedADC = true;
+                String adcToken = credentials.adcToken();
+                if (adcToken != null) {
+                    log.info("Received {} - retrying with ADC Bearer token.", status);
+                    bearerToken = adcToken;
+                    requestUrl = baseUrl;
+                    usingAdc = true;
+                    continue;
+                }
+            }
+
+            if (mode == GeminiCredentials.AuthMode.AMBIGUOUS && !triedQueryKey) {
+                log.info("Received {} - attempting fallback using API key as query parameter.", status);
+                triedQueryKey = true;
+                requestUrl = queryKeyUrl;
+                bearerToken = null;
+                usingAdc = false;
+                continue;
+            }
+            return LlmResult.error(status, resp.body());
+        }
+    }
+
+    @Override
+    public LlmResult stream(String prompt, Consumer<String> onDelta) throws IOException, InterruptedException {
+        String baseUrl = endpoint("streamGenerateContent?alt=sse");
+        String requestUrl = baseUrl;
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "text/event-stream");
+        switch (credentials.mode()) {
+            case API_KEY -> requestUrl = baseUrl + "&key=" + credentials.apiKey();
+            case BEARER, AMBIGUOUS -> headers.put("Authorization", "Bearer " + credentials.apiKey());
+            case ADC -> {
+                String token = credentials.adcToken();
+                if (token != null) headers.put("Authorization", "Bearer " + token);
+            }
+        }
+
+        StringBuilder full = new StringBuilder();
+        LlmResult.Usage[] usage = new LlmResult.Usage[1];
+        LlmHttpTransport.Response resp = transport.postJsonStreaming(requestUrl, headers, buildRequestBody(prompt),
+            Duration.ofMillis(streamTimeoutMs), line -> {
+                // SSE frames look like: data: {"candidates":[{"content":{"parts":[{"text":"..."}]}}],"usageMetadata":{...}}
+                if (!line.startsWith("data:")) return;
+                String data = line.substring(5).trim();
+                JsonNode frame = parse(data);
+                String delta = frame != null ? extractText(frame) : data;
+                if (frame != null && frame.has("usageMetadata")) {
+                    // Counts are cumulative, so the last frame has the totals
+                    usage[0] = extractUsage(frame);
+                }
+                if (delta != null && !delta.isEmpty()) {
+                    full.append(delta);
+                    onDelta.accept(delta);
+                }
+            });
+        if (!resp.isSuccess()) {
+            return LlmResult.error(resp.status(), resp.body());
+        }
+        return LlmResult.ok(full.toString(), usage[0]);
+    }
+
+    private String endpoint(String method) {
+        return (apiUrl.endsWith("/") ? apiUrl : apiUrl + "/") + model + ":" + method;
+    }
+
+    private String buildRequestBody(String prompt) throws IOException {
+        Map<String, Object> request = new HashMap<>();
+        Map<String, Object> contents = new HashMap<>();
+        Map<String, String> part = new HashMap<>();
+        part.put("text", prompt);
+        contents.put("parts", List.of(part));
+        request.put("contents", List.of(contents));
+        return objectMapper.writeValueAsString(request);
+    }
+
+    private JsonNode parse(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            // Callers use the raw payload as the text if it isn't JSON
+            return null;
+        }
+    }
+
+    /**
+     * Extract the text content from Gemini's response JSON.
+     * Gemini returns: { "candidates": [{ "content": { "parts": [{ "text": "..." }] } }] }
+     */
+    private String extractText(JsonNode root) {
+        return root.at("/candidates/0/content/parts/0/text").asText("");
+    }
+
+    /**
+     * Token counts from "usageMetadata": { "promptTokenCount": n, "candidatesTokenCount": n, ... }
+     */
+    private LlmResult.Usage extractUsage(JsonNode root) {
+        JsonNode usage = root.get("usageMetadata");
+        if (usage == null) return null;
+        return new LlmResult.Usage(usage.path("promptTokenCount").asLong(0), usage.path("candidatesTokenCount").asLong(0));
+    }
+}
@@ -0,0 +1,49 @@
+package com.shanu.backend.client;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the most recent successful call latencies, for percentile lookups.
+ *
+ * Percentiles are recomputed from a sorted copy of the window, at most once every
+ * RECOMPUTE_EVERY samples, so reading them on every call is cheap.
+ */
+class LatencyTracker {
+
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples;
+    private int count;
+    private int cursor;
+    private int sinceSort = RECOMPUTE_EVERY;
+    private long[] sorted = new long[0];
+
+    LatencyTracker(int windowSize) {
+        this.samples = new long[Math.max(1, windowSize)];
+    }
+
+    synchronized void record(long millis) {
+        samples[cursor] = millis;
+        cursor = (cursor + 1) % samples.length;
+        if (count < samples.length) count++;
+        sinceSort++;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Latency at the given percentile (0-100) of the window, or -1 if there are no samples yet.
+     */
+    synchronized long percentile(double percentile) {
+        if (count == 0) return -1;
+        if (sinceSort >= RECOMPUTE_EVERY) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceSort = 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
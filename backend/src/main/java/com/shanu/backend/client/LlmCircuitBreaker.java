@@ -0,0 +1,242 @@
+package com.shanu.backend.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Circuit breaker plus concurrency bulkhead shared by every outbound LLM call.
+ *
+ * Circuit states:
+ * - CLOSED: calls flow; outcomes go into a count-based window of the last llm.circuit.window-size calls.
+ *   Once llm.circuit.min-calls are recorded, the circuit opens if the failure rate reaches
+ *   llm.circuit.failure-rate-threshold or the rate of calls slower than llm.circuit.slow-call-ms
+ *   reaches llm.circuit.slow-call-rate-threshold (both in percent).
+ * - OPEN: calls are refused with LlmUnavailableException (no network, microseconds) for llm.circuit.open-ms.
+ * - HALF_OPEN: up to llm.circuit.half-open-calls trial calls are let through; if all succeed the
+ *   circuit closes, any failure re-opens it. A cancelled trial frees its slot without counting.
+ *
+ * Bulkhead: at most llm.bulkhead.max-concurrent calls in flight; extra callers wait up to
+ * llm.bulkhead.max-wait-ms and are then refused.
+ *
+ * Metrics: llm.circuit.state (gauge, 0=closed 1=open 2=half-open), llm.calls.rejected (counter, tag reason).
+ */
+@Component
+public class LlmCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${llm.circuit.window-size:20}")
+    private int windowSize;
+
+    @Value("${llm.circuit.min-calls:10}")
+    private int minCalls;
+
+    @Value("${llm.circuit.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${llm.circuit.slow-call-ms:10000}")
+    private long slowCallMs;
+
+    @Value("${llm.circuit.slow-call-rate-threshold:80}")
+    private int slowCallRateThreshold;
+
+    @Value("${llm.circuit.open-ms:30000}")
+    private long openMs;
+
+    @Value("${llm.circuit.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Value("${llm.bulkhead.max-concurrent:16}")
+    private int bulkheadMaxConcurrent;
+
+    @Value("${llm.bulkhead.max-wait-ms:250}")
+    private long bulkheadMaxWaitMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Logger log = LoggerFactory.getLogger(LlmCircuitBreaker.class);
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean[] failures;
+    private boolean[] slows;
+    private int recorded;
+    private int cursor;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    private Semaphore bulkhead;
+
+    @PostConstruct
+    void init() {
+        failures = new boolean[windowSize];
+        slows = new boolean[windowSize];
+        bulkhead = new Semaphore(bulkheadMaxConcurrent, true);
+        meterRegistry.gauge("llm.circuit.state", this, cb -> cb.getState().ordinal());
+    }
+
+    /**
+     * Run one LLM call under the breaker and bulkhead.
+     * isFailure classifies a returned value as a failure (e.g. HTTP 5xx/429); exceptions always count.
+     * A call that ends with its thread interrupted was cancelled by us (a losing hedge, a caller that
+     * gave up) and says nothing about upstream, so it is not recorded either way.
+     */
+    public <T> T execute(Callable<T> call, Predicate<T> isFailure) throws Exception {
+        acquirePermission();
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            if (Thread.currentThread().isInterrupted()) {
+                onCancelled();
+            } else {
+                onResult(System.nanoTime() - start, isFailure != null && isFailure.test(result));
+            }
+            return result;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+                onCancelled();
+            } else {
+                onResult(System.nanoTime() - start, true);
+            }
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Cheap check for callers that want to skip straight to a fallback.
+     * Does not reserve anything; execute() still enforces the limits.
+     */
+    public synchronized boolean isCallPermitted() {
+        if (state == State.OPEN) {
+            return System.currentTimeMillis() - openedAt >= openMs;
+        }
+        if (state == State.HALF_OPEN) {
+            return halfOpenInFlight < halfOpenCalls;
+        }
+        return true;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Reserve a call slot. Must be paired with onResult(...) (or onCancelled()) and releaseBulkhead().
+     * Used directly by streaming calls, where the outcome is only known at the end.
+     */
+    public void acquirePermission() {
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < openMs) {
+                    reject("circuit_open");
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenInFlight >= halfOpenCalls) {
+                    reject("circuit_half_open");
+                }
+                halfOpenInFlight++;
+            }
+        }
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadMaxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            synchronized (this) {
+                if (state == State.HALF_OPEN && halfOpenInFlight > 0) halfOpenInFlight--;
+            }
+            reject("bulkhead_full");
+        }
+    }
+
+    public void releaseBulkhead() {
+        bulkhead.release();
+    }
+
+    /**
+     * Record the outcome of a call that went through acquirePermission().
+     */
+    public synchronized void onResult(long durationNanos, boolean failed) {
+        boolean slow = TimeUnit.NANOSECONDS.toMillis(durationNanos) >= slowCallMs;
+
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (failed || slow) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+
+        failures[cursor] = failed;
+        slows[cursor] = slow;
+        cursor = (cursor + 1) % windowSize;
+        if (recorded < windowSize) recorded++;
+        if (recorded < minCalls) return;
+
+        int failedCount = 0;
+        int slowCount = 0;
+        for (int i = 0; i < recorded; i++) {
+            if (failures[i]) failedCount++;
+            if (slows[i]) slowCount++;
+        }
+        if (failedCount * 100 >= failureRateThreshold * recorded || slowCount * 100 >= slowCallRateThreshold * recorded) {
+            log.warn("LLM circuit opening: {}/{} failed, {}/{} slow", failedCount, recorded, slowCount, recorded);
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Release the slot of a call that went through acquirePermission() but was cancelled before
+     * it had an outcome: a HALF_OPEN trial slot is freed without counting as a success.
+     */
+    public synchronized void onCancelled() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+        }
+    }
+
+    // Must hold the monitor
+    private void transitionTo(State next) {
+        if (state == next) return;
+        log.info("LLM circuit {} -> {}", state, next);
+        state = next;
+        halfOpenInFlight = 0;
+        halfOpenSucceeded = 0;
+        if (next == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+        if (next == State.CLOSED) {
+            recorded = 0;
+            cursor = 0;
+        }
+    }
+
+    private void reject(String reason) {
+        meterRegistry.counter("llm.calls.rejected", "reason", reason).increment();
+        throw new LlmUnavailableException("LLM temporarily unavailable (" + reason.replace('_', ' ') + ")");
+    }
+}
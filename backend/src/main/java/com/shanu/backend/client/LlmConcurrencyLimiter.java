@@ -0,0 +1,145 @@
+package com.shanu.backend.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive (AIMD) limit on concurrent LLM calls, so we find out how much load the provider
+ * sustains instead of guessing a fixed number.
+ *
+ * - Each call that completes in time with capacity in use grows the limit by 1/limit
+ *   (about +1 per "round" of calls), up to llm.limiter.max-limit.
+ * - A call that is rate limited, fails upstream, times out or takes longer than
+ *   llm.limiter.slow-ms shrinks it to limit * llm.limiter.backoff-ratio, down to llm.limiter.min-limit.
+ * - Calls over the limit are refused at once with LlmUnavailableException: under overload it is
+ *   cheaper to fall back immediately than to queue behind requests that are already too slow.
+ *
+ * The fixed bulkhead in LlmCircuitBreaker stays as the hard upper bound; this limit moves below it.
+ *
+ * Metrics: llm.limiter.limit and llm.limiter.in-flight (gauges); rejections are counted in
+ * llm.calls.rejected with reason=limit_exceeded.
+ */
+@Component
+public class LlmConcurrencyLimiter {
+
+    @Value("${llm.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${llm.limiter.initial-limit:8}")
+    private int initialLimit;
+
+    @Value("${llm.limiter.min-limit:2}")
+    private int minLimit;
+
+    @Value("${llm.limiter.max-limit:64}")
+    private int maxLimit;
+
+    @Value("${llm.limiter.backoff-ratio:0.75}")
+    private double backoffRatio;
+
+    @Value("${llm.limiter.slow-ms:15000}")
+    private long slowMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Logger log = LoggerFactory.getLogger(LlmConcurrencyLimiter.class);
+
+    // Guarded by this
+    private double limit;
+    private int inFlight;
+
+    @PostConstruct
+    void init() {
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        meterRegistry.gauge("llm.limiter.limit", this, LlmConcurrencyLimiter::getLimit);
+        meterRegistry.gauge("llm.limiter.in-flight", this, LlmConcurrencyLimiter::getInFlight);
+    }
+
+    /**
+     * Take a slot or fail fast. The permit must be completed exactly once with one of
+     * success(...), dropped() or ignore().
+     */
+    public Permit acquire() {
+        synchronized (this) {
+            if (!enabled || inFlight < (int) limit) {
+                inFlight++;
+                return new Permit();
+            }
+        }
+        meterRegistry.counter("llm.calls.rejected", "reason", "limit_exceeded").increment();
+        throw new LlmUnavailableException("LLM temporarily unavailable (concurrency limit reached)");
+    }
+
+    /**
+     * Whether an optional extra call (a hedge) fits without pushing past the limit.
+     */
+    public synchronized boolean hasHeadroom() {
+        return !enabled || inFlight + 1 < (int) limit;
+    }
+
+    public synchronized double getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private synchronized void release(long durationNanos, boolean dropped, boolean adjust) {
+        // In-flight count before this call finished: only grow when the limit was actually being used
+        int used = inFlight;
+        inFlight = Math.max(0, inFlight - 1);
+        if (!adjust) return;
+
+        if (dropped || TimeUnit.NANOSECONDS.toMillis(durationNanos) >= slowMs) {
+            double next = Math.max(minLimit, limit * backoffRatio);
+            if ((int) next != (int) limit) {
+                log.info("LLM concurrency limit {} -> {}", (int) limit, (int) next);
+            }
+            limit = next;
+        } else if (used * 2 >= (int) limit) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    public final class Permit {
+
+        private final long startNanos = System.nanoTime();
+        private boolean done;
+
+        /**
+         * Upstream answered (any non-failure status).
+         */
+        public void success() {
+            finish(false, true);
+        }
+
+        /**
+         * Upstream was overloaded: 5xx, 429, timeout or I/O error.
+         */
+        public void dropped() {
+            finish(true, true);
+        }
+
+        /**
+         * Release without learning anything (cancelled, or a call whose latency isn't comparable like a stream).
+         */
+        public void ignore() {
+            finish(false, false);
+        }
+
+        private void finish(boolean dropped, boolean adjust) {
+            if (done) return;
+            done = true;
+            release(System.nanoTime() - startNanos, dropped, adjust);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.shanu.backend.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Shared outbound HTTP transport for LLM calls (GeminiLlmProvider).
+ *
+ * Built on the JDK HttpClient:
+ * - HTTP/2 with keep-alive; one client (and connection pool) shared by all callers. Idle pooled
+ *   connections are kept for jdk.httpclient.keepalive.timeout seconds, a JVM-wide setting that
+ *   BackendApplication defaults to 60 (override with -Djdk.httpclient.keepalive.timeout=...)
+ * - connect timeout plus a hard per-call deadline covering headers and body
+ * - at most llm.http.max-concurrent requests in flight; callers wait up to
+ *   llm.http.acquire-timeout-ms for a slot and then fail fast
+ * - Micrometer metrics: llm.http.requests (timer, tags host/status/mode), llm.http.in-flight (gauge)
+ *
+ * Unlike RestTemplate it never throws on 4xx/5xx; callers get the status and decide.
+ * To benchmark against a local mock server, point gemini.api.url at it (or use llm.provider=mock).
+ */
+@Component
+public class LlmHttpTransport {
+
+    public record Response(int status, String body) {
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    @Value("${llm.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${llm.http.request-timeout-ms:30000}")
+    private long requestTimeoutMs;
+
+    @Value("${llm.http.max-concurrent:32}")
+    private int maxConcurrent;
+
+    @Value("${llm.http.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Logger log = LoggerFactory.getLogger(LlmHttpTransport.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private HttpClient httpClient;
+    private Semaphore permits;
+    private ScheduledThreadPoolExecutor deadlines;
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        permits = new Semaphore(maxConcurrent, true);
+        deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "llm-stream-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+        // Most streams finish in time; don't keep their cancelled watchdogs queued until the deadline
+        deadlines.setRemoveOnCancelPolicy(true);
+        meterRegistry.gauge("llm.http.in-flight", inFlight);
+        log.info("LLM HTTP transport ready: maxConcurrent={}, connectTimeout={}ms, deadline={}ms",
+            maxConcurrent, connectTimeoutMs, requestTimeoutMs);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (deadlines != null) {
+            deadlines.shutdownNow();
+        }
+    }
+
+    /**
+     * POST a JSON body using the default deadline.
+     */
+    public Response postJson(String url, Map<String, String> headers, String body) throws IOException, InterruptedException {
+        return postJson(url, headers, body, Duration.ofMillis(requestTimeoutMs));
+    }
+
+    /**
+     * POST a JSON body; the whole exchange (including reading the body) must finish within the deadline.
+     */
+    public Response postJson(String url, Map<String, String> headers, String body, Duration deadline)
+            throws IOException, InterruptedException {
+        HttpRequest request = buildRequest(url, headers, body, deadline);
+        String host = request.uri().getHost();
+
+        acquire(host);
+        long start = System.nanoTime();
+        String status = "error";
+        try {
+            CompletableFuture<HttpResponse<String>> future =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response;
+            try {
+                response = future.get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException te) {
+                future.cancel(true);
+                status = "timeout";
+                throw new HttpTimeoutException("LLM call exceeded deadline of " + deadline.toMillis() + " ms");
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof HttpTimeoutException) status = "timeout";
+                if (cause instanceof IOException io) throw io;
+                throw new IOException(cause.getMessage(), cause);
+            } catch (InterruptedException ie) {
+                future.cancel(true);
+                throw ie;
+            }
+            status = String.valueOf(response.statusCode());
+            return new Response(response.statusCode(), response.body() == null ? "" : response.body());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("llm.http.requests")
+                .tag("host", host == null ? "unknown" : host)
+                .tag("status", status)
+                .tag("mode", "unary")
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+            release();
+        }
+    }
+
+    /**
+     * POST a JSON body and hand each line of a streamed (SSE / chunked) response to the consumer
+     * as it arrives. For non-2xx statuses the lines are collected and returned as the body instead.
+     * The deadline covers the whole exchange: HttpRequest.timeout only bounds the wait for headers,
+     * so a watchdog closes the body at the deadline, waking a read blocked on a stalled stream
+     * (reported as HttpTimeoutException).
+     */
+    public Response postJsonStreaming(String url, Map<String, String> headers, String body, Duration deadline,
+                                      Consumer<String> lineConsumer) throws IOException, InterruptedException {
+        HttpRequest request = buildRequest(url, headers, body, deadline);
+        String host = request.uri().getHost();
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        acquire(host);
+        long start = System.nanoTime();
+        String status = "error";
+        ScheduledFuture<?> watchdog = null;
+        try {
+            CompletableFuture<HttpResponse<InputStream>> future =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+            HttpResponse<InputStream> response;
+            try {
+                response = future.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException te) {
+                future.cancel(true);
+                status = "timeout";
+                throw new HttpTimeoutException("LLM stream exceeded deadline of " + deadline.toMillis() + " ms");
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof HttpTimeoutException) status = "timeout";
+                if (cause instanceof IOException io) throw io;
+                throw new IOException(cause.getMessage(), cause);
+            } catch (InterruptedException ie) {
+                future.cancel(true);
+                throw ie;
+            }
+            status = String.valueOf(response.statusCode());
+            boolean ok = response.statusCode() >= 200 && response.statusCode() < 300;
+
+            InputStream in = response.body();
+            AtomicBoolean expired = new AtomicBoolean();
+            watchdog = deadlines.schedule(() -> {
+                expired.set(true);
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // Closing is all we need; the reader sees end of stream or an error
+                }
+            }, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+            StringBuilder errorBody = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null && !expired.get()) {
+                    if (ok) {
+                        lineConsumer.accept(line);
+                    } else {
+                        errorBody.append(line).append('\n');
+                    }
+                }
+            } catch (IOException e) {
+                if (!expired.get()) throw e;
+            }
+            if (expired.get()) {
+                status = "timeout";
+                throw new HttpTimeoutException("LLM stream exceeded deadline of " + deadline.toMillis() + " ms");
+            }
+            return new Response(response.statusCode(), errorBody.toString());
+        } finally {
+            if (watchdog != null) watchdog.cancel(false);
+            Timer.builder("llm.http.requests")
+                .tag("host", host == null ? "unknown" : host)
+                .tag("status", status)
+                .tag("mode", "stream")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            release();
+        }
+    }
+
+    HttpRequest buildRequest(String url, Map<String, String> headers, String body, Duration deadline) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+            .timeout(deadline)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (headers != null) {
+            headers.forEach(builder::header);
+        }
+        return builder.build();
+    }
+
+    void acquire(String host) throws InterruptedException, IOException {
+        if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+            meterRegistry.counter("llm.http.rejected", "host", host == null ? "unknown" : host).increment();
+            throw new IOException("LLM transport saturated: " + maxConcurrent + " requests already in flight");
+        }
+        inFlight.incrementAndGet();
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+        permits.release();
+    }
+}
@@ -0,0 +1,105 @@
+package com.shanu.backend.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Usage and cost telemetry for LLM calls (scraped from /actuator/prometheus).
+ *
+ * - llm.calls (timer, with histogram buckets): one sample per upstream attempt,
+ *   tags provider, model, endpoint (complete|stream), outcome (success|client_error|server_error|error|cancelled)
+ * - llm.tokens (counter): tags model, type (prompt|output), from the provider's usage metadata
+ * - llm.cost (counter, USD): tokens priced with llm.cost.input-per-million / llm.cost.output-per-million
+ * - llm.retries (counter): tags model, reason
+ * - llm.fallbacks (counter): answers served without the LLM, tags flow, reason
+ *
+ * Per-user totals are kept in memory rather than as meter tags (one time series per user would
+ * blow up Prometheus cardinality) and are served by GET /api/ai/usage. They reset on restart.
+ */
+@Component
+public class LlmMetrics {
+
+    @Value("${llm.cost.input-per-million:1.25}")
+    private double inputCostPerMillion;
+
+    @Value("${llm.cost.output-per-million:5.00}")
+    private double outputCostPerMillion;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, UserUsage> users = new ConcurrentHashMap<>();
+
+    public record UsageSnapshot(long calls, long promptTokens, long outputTokens, double estimatedCostUsd, Instant since) {}
+
+    private static final class UserUsage {
+        final LongAdder calls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder outputTokens = new LongAdder();
+        final DoubleAdder cost = new DoubleAdder();
+        final Instant since = Instant.now();
+    }
+
+    /**
+     * One upstream attempt (retries and hedges are separate samples).
+     */
+    public void recordAttempt(String provider, String model, String endpoint, String outcome, long durationNanos) {
+        Timer.builder("llm.calls")
+            .tags("provider", provider, "model", model, "endpoint", endpoint, "outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Token usage of a successful attempt; userId may be null for calls not made on behalf of a user.
+     */
+    public void recordUsage(String userId, String model, LlmResult.Usage usage) {
+        if (usage == null) return;
+        double cost = (usage.promptTokens() * inputCostPerMillion + usage.outputTokens() * outputCostPerMillion) / 1_000_000.0;
+        meterRegistry.counter("llm.tokens", "model", model, "type", "prompt").increment(usage.promptTokens());
+        meterRegistry.counter("llm.tokens", "model", model, "type", "output").increment(usage.outputTokens());
+        meterRegistry.counter("llm.cost", "model", model).increment(cost);
+        if (userId == null) return;
+
+        UserUsage u = users.computeIfAbsent(userId, k -> new UserUsage());
+        u.calls.increment();
+        u.promptTokens.add(usage.promptTokens());
+        u.outputTokens.add(usage.outputTokens());
+        u.cost.add(cost);
+    }
+
+    public void recordRetry(String model, String reason) {
+        meterRegistry.counter("llm.retries", "model", model, "reason", reason).increment();
+    }
+
+    public void recordFallback(String flow, String reason) {
+        meterRegistry.counter("llm.fallbacks", "flow", flow, "reason", reason).increment();
+    }
+
+    public UsageSnapshot usageFor(String userId) {
+        UserUsage u = users.get(userId);
+        if (u == null) {
+            return new UsageSnapshot(0, 0, 0, 0.0, null);
+        }
+        return new UsageSnapshot(u.calls.sum(), u.promptTokens.sum(), u.outputTokens.sum(), u.cost.sum(), u.since);
+    }
+
+    /**
+     * outcome tag for a result returned by a provider.
+     */
+    static String outcome(LlmResult result) {
+        if (result.isSuccess()) return "success";
+        if (result.status() == 499) return "cancelled";
+        return result.isServerFailure() ? "server_error" : "client_error";
+    }
+}
@@ -0,0 +1,38 @@
+package com.shanu.backend.client;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * A backend that turns a prompt into text (Gemini, the in-process mock, ...).
+ *
+ * Implementations perform exactly one logical attempt per call and report HTTP-like statuses
+ * instead of throwing for upstream errors; retries, the circuit breaker, the bulkhead and
+ * request coalescing are applied on top of them by GeminiClient, so they behave the same
+ * whichever provider is selected with llm.provider.
+ */
+public interface LlmProvider {
+
+    /**
+     * Value of llm.provider that selects this implementation.
+     */
+    String name();
+
+    /**
+     * Model identifier, used in cache keys.
+     */
+    String model();
+
+    boolean isConfigured();
+
+    /**
+     * One completion. I/O failures and deadline overruns are thrown.
+     */
+    LlmResult complete(String prompt) throws IOException, InterruptedException;
+
+    /**
+     * One streamed completion; fragments go to onDelta in order as they arrive and the full
+     * text is returned in the result.
+     */
+    LlmResult stream(String prompt, Consumer<String> onDelta) throws IOException, InterruptedException;
+}
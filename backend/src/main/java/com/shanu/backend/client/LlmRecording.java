@@ -0,0 +1,48 @@
+package com.shanu.backend.client;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One recorded LLM attempt, stored as a JSON file by RecordingLlmProvider and served back by
+ * ReplayLlmProvider.
+ *
+ * key is the SHA-256 of the normalized prompt; the prompt itself is only stored with
+ * llm.record.include-prompt=true, since it contains the user's transactions.
+ * For failed attempts error holds the exception message and status is 0.
+ * For streams, chunks holds every fragment with its offset from the start of the call.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LlmRecording(
+    String key,
+    String kind,
+    String provider,
+    String model,
+    long recordedAt,
+    long latencyMs,
+    int status,
+    String text,
+    String body,
+    String error,
+    List<Chunk> chunks,
+    LlmResult.Usage usage,
+    String prompt
+) {
+
+    public record Chunk(long atMs, String text) {}
+
+    public boolean isStream() {
+        return chunks != null;
+    }
+
+    /**
+     * Full answer text; for streams, the concatenated fragments.
+     */
+    public String fullText() {
+        if (text != null || chunks == null) return text;
+        StringBuilder sb = new StringBuilder();
+        chunks.forEach(c -> sb.append(c.text()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.shanu.backend.client;
+
+/**
+ * Outcome of one LlmProvider attempt.
+ * For 2xx statuses text holds the model's answer; otherwise body holds the upstream error payload.
+ * usage is the provider's token accounting, null when it didn't report any.
+ */
+public record LlmResult(int status, String text, String body, Usage usage) {
+
+    public record Usage(long promptTokens, long outputTokens) {}
+
+    public static LlmResult ok(String text) {
+        return ok(text, null);
+    }
+
+    public static LlmResult ok(String text, Usage usage) {
+        return new LlmResult(200, text, "", usage);
+    }
+
+    public static LlmResult error(int status, String body) {
+        return new LlmResult(status, null, body, null);
+    }
+
+    /**
+     * The attempt was abandoned locally (e.g. the losing leg of a hedged call) before upstream answered.
+     * Uses nginx's 499 "client closed request"; not a server failure, so it never trips the breaker.
+     */
+    public static LlmResult cancelled() {
+        return new LlmResult(499, null, "cancelled", null);
+    }
+
+    public boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * Worth retrying / counts against the circuit breaker: upstream errors and rate limiting.
+     */
+    public boolean isServerFailure() {
+        return status >= 500 || status == 429;
+    }
+}
@@ -0,0 +1,14 @@
+package com.shanu.backend.client;
+
+/**
+ * Thrown without touching the network when an LLM call is refused locally:
+ * the circuit breaker is open, the concurrency bulkhead is full or the adaptive
+ * concurrency limit is reached.
+ * Callers should switch to their non-AI fallback immediately.
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,205 @@
+package com.shanu.backend.client;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * In-process LlmProvider for load tests and benchmarks on a machine with no network
+ * (llm.provider=mock). Everything above the provider - retries, circuit breaker, bulkhead,
+ * single-flight, caches, SSE streaming - runs exactly as with Gemini.
+ *
+ * Latency per call is drawn from llm.mock.latency.distribution:
+ * - fixed:     always median-ms
+ * - uniform:   between min-ms and max-ms
+ * - lognormal: median median-ms, shape sigma (long right tail, like real LLM latency)
+ * and clamped to [min-ms, max-ms]. llm.mock.failure-rate of calls return llm.mock.failure-status,
+ * and llm.mock.timeout-rate of calls sleep for max-ms and then throw HttpTimeoutException.
+ *
+ * Payloads are canned per prompt kind (advice JSON, chat JSON, conversation summary); any of them
+ * can be replaced by a file in llm.mock.payload-dir (advice.json, chat.txt, summary.txt, default.txt).
+ * With a fixed llm.mock.seed the sequence of latencies and failures is reproducible run to run
+ * (for a single caller thread).
+ */
+@Component
+public class MockLlmProvider implements LlmProvider {
+
+    private static final String ADVICE_PAYLOAD = """
+        {
+          "summary": "Spending is concentrated in a few discretionary categories; trimming them would lift savings noticeably.",
+          "actions": ["Cap dining out at a weekly amount", "Cancel one unused subscription", "Move a fixed sum to savings on payday"],
+          "estimatedSavingsNextMonth": 2500,
+          "confidenceScore": 72,
+          "citations": ["data-based"]
+        }""";
+
+    private static final String CHAT_PAYLOAD = """
+        ```json
+        {
+          "summary": "Your expenses are within income, with most spending in food and shopping.",
+          "top_expense_categories": [
+            {"category": "Food & Dining", "amount": 2450.00, "percent_of_expense": 32.5},
+            {"category": "Shopping", "amount": 1800.00, "percent_of_expense": 23.9}
+          ],
+          "budget_suggestions": [
+            {"category": "Shopping", "current": 1800.0, "suggested": 1400.0, "monthly_savings": 400.0, "reason": "Largest discretionary category"}
+          ],
+          "actionable_steps": ["Set a shopping budget", "Review subscriptions", "Automate savings"],
+          "confidence": 70
+        }
+        ```""";
+
+    private static final String SUMMARY_PAYLOAD =
+        "The user asked for help with budgeting; the assistant reviewed their spending and suggested cutting shopping and dining.";
+
+    @Value("${llm.mock.model:mock-1}")
+    private String model;
+
+    @Value("${llm.mock.latency.distribution:lognormal}")
+    private String distribution;
+
+    @Value("${llm.mock.latency.median-ms:800}")
+    private long medianMs;
+
+    @Value("${llm.mock.latency.sigma:0.5}")
+    private double sigma;
+
+    @Value("${llm.mock.latency.min-ms:50}")
+    private long minMs;
+
+    @Value("${llm.mock.latency.max-ms:10000}")
+    private long maxMs;
+
+    @Value("${llm.mock.failure-rate:0.0}")
+    private double failureRate;
+
+    @Value("${llm.mock.failure-status:503}")
+    private int failureStatus;
+
+    @Value("${llm.mock.timeout-rate:0.0}")
+    private double timeoutRate;
+
+    @Value("${llm.mock.stream-chunk-chars:24}")
+    private int streamChunkChars;
+
+    @Value("${llm.mock.payload-dir:}")
+    private String payloadDir;
+
+    @Value("${llm.mock.seed:42}")
+    private long seed;
+
+    private final Logger log = LoggerFactory.getLogger(MockLlmProvider.class);
+    private Random random;
+    private final Map<String, String> payloads = new HashMap<>();
+
+    private record Draw(long latencyMs, boolean fail, boolean timeout) {}
+
+    @PostConstruct
+    void init() {
+        random = new Random(seed);
+        payloads.put(PromptKind.ADVICE, load("advice.json", ADVICE_PAYLOAD));
+        payloads.put(PromptKind.SUMMARY, load("summary.txt", SUMMARY_PAYLOAD));
+        payloads.put(PromptKind.CHAT, load("chat.txt", CHAT_PAYLOAD));
+        payloads.put(PromptKind.DEFAULT, load("default.txt", "{\"text\": \"This is a mock response.\"}"));
+    }
+
+    @Override
+    public String name() {
+        return "mock";
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return true;
+    }
+
+    @Override
+    public LlmResult complete(String prompt) throws IOException, InterruptedException {
+        Draw draw = draw();
+        if (draw.timeout()) {
+            Thread.sleep(maxMs);
+            throw new HttpTimeoutException("Mock LLM call timed out after " + maxMs + " ms");
+        }
+        Thread.sleep(draw.latencyMs());
+        if (draw.fail()) {
+            return LlmResult.error(failureStatus, "{\"error\":{\"code\":" + failureStatus + ",\"message\":\"mock failure\"}}");
+        }
+        String text = payloadFor(prompt);
+        return LlmResult.ok(text, usage(prompt, text));
+    }
+
+    @Override
+    public LlmResult stream(String prompt, Consumer<String> onDelta) throws IOException, InterruptedException {
+        Draw draw = draw();
+        if (draw.timeout()) {
+            Thread.sleep(maxMs);
+            throw new HttpTimeoutException("Mock LLM stream timed out after " + maxMs + " ms");
+        }
+        // Roughly a third of the latency before the first token, the rest spread over the chunks
+        long firstTokenMs = draw.latencyMs() / 3;
+        Thread.sleep(firstTokenMs);
+        if (draw.fail()) {
+            return LlmResult.error(failureStatus, "{\"error\":{\"code\":" + failureStatus + ",\"message\":\"mock failure\"}}");
+        }
+        String text = payloadFor(prompt);
+        int chunkSize = Math.max(1, streamChunkChars);
+        int chunks = (text.length() + chunkSize - 1) / chunkSize;
+        long perChunkMs = chunks == 0 ? 0 : (draw.latencyMs() - firstTokenMs) / chunks;
+        for (int i = 0; i < text.length(); i += chunkSize) {
+            if (i > 0 && perChunkMs > 0) Thread.sleep(perChunkMs);
+            onDelta.accept(text.substring(i, Math.min(text.length(), i + chunkSize)));
+        }
+        return LlmResult.ok(text, usage(prompt, text));
+    }
+
+    // Rough 4-characters-per-token estimate, so token and cost metrics move under load tests too
+    private static LlmResult.Usage usage(String prompt, String text) {
+        return new LlmResult.Usage(prompt.length() / 4, text.length() / 4);
+    }
+
+    private synchronized Draw draw() {
+        long latency = switch (distribution) {
+            case "fixed" -> medianMs;
+            case "uniform" -> minMs + (long) (random.nextDouble() * Math.max(0, maxMs - minMs));
+            default -> Math.round(medianMs * Math.exp(sigma * random.nextGaussian()));
+        };
+        latency = Math.max(minMs, Math.min(maxMs, latency));
+        boolean timeout = random.nextDouble() < timeoutRate;
+        boolean fail = random.nextDouble() < failureRate;
+        return new Draw(latency, fail, timeout);
+    }
+
+    private String payloadFor(String prompt) {
+        return payloads.get(PromptKind.of(prompt));
+    }
+
+    private String load(String fileName, String fallback) {
+        if (payloadDir == null || payloadDir.isBlank()) return fallback;
+        Path file = Path.of(payloadDir, fileName);
+        try {
+            if (!Files.isRegularFile(file)) return fallback;
+            log.info("Mock LLM payload override: {}", file);
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Could not read mock payload {}: {}", file, e.getMessage());
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.shanu.backend.client;
+
+/**
+ * Coarse classification of prompts by the flow that built them, for providers that answer
+ * without a model (mock payloads, replayed recordings).
+ */
+final class PromptKind {
+
+    static final String ADVICE = "advice";
+    static final String SUMMARY = "summary";
+    static final String CHAT = "chat";
+    static final String DEFAULT = "default";
+
+    private PromptKind() {}
+
+    static String of(String prompt) {
+        if (prompt.contains("\"estimatedSavingsNextMonth\"")) {
+            return ADVICE;
+        }
+        if (prompt.startsWith("Summarize this conversation")) {
+            return SUMMARY;
+        }
+        if (prompt.contains("=== CONVERSATION HISTORY ===") || prompt.contains("BudgetPilot")) {
+            return CHAT;
+        }
+        return DEFAULT;
+    }
+}
@@ -0,0 +1,113 @@
+package com.shanu.backend.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shanu.backend.util.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Decorator that passes every call through to the real provider and writes what happened
+ * (status, text, latency, stream chunk timings) to one JSON file per attempt under dir.
+ *
+ * Installed by GeminiClient when llm.record.enabled=true; the files are the input of
+ * ReplayLlmProvider (llm.provider=replay). Write failures are logged and never affect the call.
+ */
+class RecordingLlmProvider implements LlmProvider {
+
+    private final LlmProvider delegate;
+    private final Path dir;
+    private final boolean includePrompt;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Logger log = LoggerFactory.getLogger(RecordingLlmProvider.class);
+
+    RecordingLlmProvider(LlmProvider delegate, Path dir, boolean includePrompt) throws IOException {
+        this.delegate = delegate;
+        this.dir = dir;
+        this.includePrompt = includePrompt;
+        Files.createDirectories(dir);
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public String model() {
+        return delegate.model();
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return delegate.isConfigured();
+    }
+
+    @Override
+    public LlmResult complete(String prompt) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            LlmResult result = delegate.complete(prompt);
+            save(prompt, start, result, null, null);
+            return result;
+        } catch (IOException e) {
+            save(prompt, start, null, e, null);
+            throw e;
+        }
+    }
+
+    @Override
+    public LlmResult stream(String prompt, Consumer<String> onDelta) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<LlmRecording.Chunk> chunks = new ArrayList<>();
+        try {
+            LlmResult result = delegate.stream(prompt, delta -> {
+                chunks.add(new LlmRecording.Chunk(elapsedMs(start), delta));
+                onDelta.accept(delta);
+            });
+            save(prompt, start, result, null, chunks);
+            return result;
+        } catch (IOException e) {
+            save(prompt, start, null, e, chunks);
+            throw e;
+        }
+    }
+
+    private void save(String prompt, long start, LlmResult result, Exception error, List<LlmRecording.Chunk> chunks) {
+        String key = Hashing.sha256Hex(Hashing.normalizePrompt(prompt));
+        String kind = PromptKind.of(prompt);
+        LlmRecording recording = new LlmRecording(
+            key,
+            kind,
+            delegate.name(),
+            delegate.model(),
+            System.currentTimeMillis(),
+            elapsedMs(start),
+            result != null ? result.status() : 0,
+            // For streams the text is rebuilt from the chunks on replay
+            result != null && chunks == null ? result.text() : null,
+            result != null && !result.isSuccess() ? result.body() : null,
+            error != null ? error.getClass().getSimpleName() + ": " + error.getMessage() : null,
+            chunks,
+            result != null ? result.usage() : null,
+            includePrompt ? prompt : null
+        );
+        Path file = dir.resolve(kind + "-" + recording.recordedAt() + "-" + key.substring(0, 12) + ".json");
+        try {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), recording);
+        } catch (IOException e) {
+            log.warn("Could not write LLM recording {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
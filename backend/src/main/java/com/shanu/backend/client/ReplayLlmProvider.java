@@ -0,0 +1,163 @@
+package com.shanu.backend.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shanu.backend.util.Hashing;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Serves LLM traffic captured with llm.record.enabled=true back from disk (llm.provider=replay),
+ * so chat and advice load tests run offline against real response shapes and latencies.
+ *
+ * Matching, per call:
+ * - a recording of exactly the same (normalized) prompt, if there is one;
+ * - otherwise the next recording of the same prompt kind (advice, chat, summary, ...), round-robin
+ *   in recording order - prompts embed dates and live data, so exact hits are rare across runs;
+ * - otherwise a 404 result.
+ *
+ * Timing: each answer is delayed by its recorded latency times llm.replay.latency-scale
+ * (1.0 = original profile, 0.5 = twice as fast, 0 = no delay). Streams replay every chunk at its
+ * recorded offset. Recorded failures are replayed too: error statuses as results, exceptions as IOException.
+ */
+@Component
+public class ReplayLlmProvider implements LlmProvider {
+
+    @Value("${llm.replay.dir:${llm.record.dir:llm-recordings}}")
+    private String replayDir;
+
+    @Value("${llm.replay.latency-scale:1.0}")
+    private double latencyScale;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Logger log = LoggerFactory.getLogger(ReplayLlmProvider.class);
+
+    private final Map<String, List<LlmRecording>> byKey = new HashMap<>();
+    private final Map<String, List<LlmRecording>> byKind = new HashMap<>();
+    private final Map<String, AtomicInteger> cursors = new HashMap<>();
+    private String model = "replay";
+
+    @PostConstruct
+    void load() {
+        Path dir = Path.of(replayDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<LlmRecording> recordings = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(f -> f.toString().endsWith(".json")).forEach(f -> {
+                try {
+                    recordings.add(objectMapper.readValue(f.toFile(), LlmRecording.class));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable LLM recording {}: {}", f, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not list LLM recordings in {}: {}", dir, e.getMessage());
+            return;
+        }
+        recordings.sort(Comparator.comparingLong(LlmRecording::recordedAt));
+        for (LlmRecording r : recordings) {
+            byKey.computeIfAbsent(r.key(), k -> new ArrayList<>()).add(r);
+            byKind.computeIfAbsent(r.kind(), k -> new ArrayList<>()).add(r);
+        }
+        byKey.keySet().forEach(k -> cursors.put("key:" + k, new AtomicInteger()));
+        byKind.keySet().forEach(k -> cursors.put("kind:" + k, new AtomicInteger()));
+        if (!recordings.isEmpty() && recordings.get(0).model() != null) {
+            model = recordings.get(0).model();
+        }
+        log.info("Loaded {} LLM recordings from {}", recordings.size(), dir);
+    }
+
+    @Override
+    public String name() {
+        return "replay";
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return !byKind.isEmpty();
+    }
+
+    @Override
+    public LlmResult complete(String prompt) throws IOException, InterruptedException {
+        LlmRecording r = match(prompt);
+        if (r == null) {
+            return noRecording(prompt);
+        }
+        sleepScaled(r.latencyMs());
+        return toResult(r);
+    }
+
+    @Override
+    public LlmResult stream(String prompt, Consumer<String> onDelta) throws IOException, InterruptedException {
+        LlmRecording r = match(prompt);
+        if (r == null) {
+            return noRecording(prompt);
+        }
+        if (!r.isStream()) {
+            // Recorded as a unary call: the whole answer arrives at once
+            sleepScaled(r.latencyMs());
+            LlmResult result = toResult(r);
+            if (result.isSuccess()) onDelta.accept(result.text());
+            return result;
+        }
+        long elapsed = 0;
+        for (LlmRecording.Chunk chunk : r.chunks()) {
+            sleepScaled(chunk.atMs() - elapsed);
+            elapsed = chunk.atMs();
+            onDelta.accept(chunk.text());
+        }
+        sleepScaled(r.latencyMs() - elapsed);
+        return toResult(r);
+    }
+
+    private LlmRecording match(String prompt) {
+        String key = Hashing.sha256Hex(Hashing.normalizePrompt(prompt));
+        LlmRecording exact = next("key:" + key, byKey.get(key));
+        return exact != null ? exact : next("kind:" + PromptKind.of(prompt), byKind.get(PromptKind.of(prompt)));
+    }
+
+    private LlmRecording next(String cursor, List<LlmRecording> candidates) {
+        if (candidates == null || candidates.isEmpty()) return null;
+        return candidates.get(Math.floorMod(cursors.get(cursor).getAndIncrement(), candidates.size()));
+    }
+
+    private LlmResult toResult(LlmRecording r) throws IOException {
+        if (r.error() != null) {
+            throw new IOException("Replayed failure: " + r.error());
+        }
+        if (r.status() >= 200 && r.status() < 300) {
+            return LlmResult.ok(r.fullText(), r.usage());
+        }
+        return LlmResult.error(r.status(), r.body() != null ? r.body() : "");
+    }
+
+    private LlmResult noRecording(String prompt) {
+        return LlmResult.error(404, "No LLM recording for prompt kind '" + PromptKind.of(prompt) + "' in " + replayDir);
+    }
+
+    private void sleepScaled(long millis) throws InterruptedException {
+        long scaled = Math.round(millis * latencyScale);
+        if (scaled > 0) Thread.sleep(scaled);
+    }
+}
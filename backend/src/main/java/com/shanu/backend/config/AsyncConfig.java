@@ -0,0 +1,25 @@
+package com.shanu.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * AsyncConfig - Executors for work that must not run on Tomcat request threads.
+ *
+ * LLM calls spend nearly all their time waiting on network I/O, so they run on
+ * virtual threads: cheap to create, and blocking them doesn't pin a platform thread.
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Runs streamed chat turns (SSE) after the controller has returned the emitter.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService llmExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-", 0).factory());
+    }
+}
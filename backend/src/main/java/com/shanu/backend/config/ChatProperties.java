@@ -8,11 +8,13 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * Maps properties from application.properties:
  * - chat.system-prompt
  * - chat.rate-limit.per-sec (note: hyphen converted to camelCase)
+ * - chat.prompt.* (token budget and rolling summary, see PromptBudgetManager)
  */
 @ConfigurationProperties(prefix = "chat")
 public class ChatProperties {
   private String systemPrompt;
   private RateLimit rateLimit;
+  private Prompt prompt;
 
   public static class RateLimit {
     private int perSec;
@@ -26,6 +28,58 @@ public class ChatProperties {
     }
   }
 
+  public static class Prompt {
+    // Estimated tokens (chars / 4) allowed for the whole chat prompt
+    private int tokenBudget = 6000;
+    // Messages older than the newest maxRecentMessages are summarized; unsummarized ones stay verbatim
+    // while they fit the budget, and at least minRecentMessages always do (the newest one is always kept)
+    private int maxRecentMessages = 15;
+    private int minRecentMessages = 4;
+    // Re-summarize once this many messages have fallen out of the recent window unsummarized
+    private int summaryRefreshEvery = 6;
+    private int summaryMaxChars = 1200;
+
+    public int getTokenBudget() {
+      return tokenBudget;
+    }
+
+    public void setTokenBudget(int tokenBudget) {
+      this.tokenBudget = tokenBudget;
+    }
+
+    public int getMaxRecentMessages() {
+      return maxRecentMessages;
+    }
+
+    public void setMaxRecentMessages(int maxRecentMessages) {
+      this.maxRecentMessages = maxRecentMessages;
+    }
+
+    public int getMinRecentMessages() {
+      return minRecentMessages;
+    }
+
+    public void setMinRecentMessages(int minRecentMessages) {
+      this.minRecentMessages = minRecentMessages;
+    }
+
+    public int getSummaryRefreshEvery() {
+      return summaryRefreshEvery;
+    }
+
+    public void setSummaryRefreshEvery(int summaryRefreshEvery) {
+      this.summaryRefreshEvery = summaryRefreshEvery;
+    }
+
+    public int getSummaryMaxChars() {
+      return summaryMaxChars;
+    }
+
+    public void setSummaryMaxChars(int summaryMaxChars) {
+      this.summaryMaxChars = summaryMaxChars;
+    }
+  }
+
   public String getSystemPrompt() {
     return systemPrompt;
   }
@@ -44,4 +98,15 @@ public class ChatProperties {
   public void setRateLimit(RateLimit rateLimit) {
     this.rateLimit = rateLimit;
   }
+
+  public Prompt getPrompt() {
+    if (prompt == null) {
+      prompt = new Prompt();
+    }
+    return prompt;
+  }
+
+  public void setPrompt(Prompt prompt) {
+    this.prompt = prompt;
+  }
 }
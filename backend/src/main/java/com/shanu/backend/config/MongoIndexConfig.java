@@ -0,0 +1,80 @@
+package com.shanu.backend.config;
+
+import com.shanu.backend.model.AiHistory;
+import com.shanu.backend.model.Conversation;
+import com.shanu.backend.repository.ConversationRepository;
+import com.shanu.backend.model.EmailOutbox;
+import com.shanu.backend.model.Forecast;
+import com.shanu.backend.model.Transaction;
+import com.shanu.backend.repository.ForecastRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * MongoIndexConfig - Creates the indexes the application relies on at startup.
+ *
+ * Spring Boot does not auto-create indexes from annotations by default, so indexes
+ * that queries depend on are declared here explicitly. Failures are logged, not fatal.
+ * Also backfills derived fields that new indexes/queries rely on for older documents.
+ */
+@Configuration
+public class MongoIndexConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexConfig.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ForecastRepository forecastRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        // Email outbox: dedupe key makes enqueueing idempotent, status+nextAttemptAt serves the dispatcher poll
+        ensure(EmailOutbox.class, new Index().on("dedupeKey", Sort.Direction.ASC).unique());
+        ensure(EmailOutbox.class, new Index().on("status", Sort.Direction.ASC).on("nextAttemptAt", Sort.Direction.ASC));
+        // AI history: newest stored advice for the same data (AdviceService current-advice lookup)
+        ensure(AiHistory.class, new Index().on("userId", Sort.Direction.ASC).on("scope", Sort.Direction.ASC)
+            .on("promptKey", Sort.Direction.ASC).on("createdAt", Sort.Direction.DESC));
+        // Conversations: keyset-paginated sidebar listing (ConversationRepository.findSummaries)
+        ensure(Conversation.class, new Index().on("userId", Sort.Direction.ASC).on("updatedAt", Sort.Direction.DESC)
+            .on("_id", Sort.Direction.DESC));
+        // Transactions: a user's history window (forecast history and data version, advice)
+        ensure(Transaction.class, new Index().on("userId", Sort.Direction.ASC).on("date", Sort.Direction.ASC));
+
+        // Forecasts: one per user and month (upserted); drop the per-request duplicates of older versions first
+        try {
+            long removed = forecastRepository.removeDuplicates();
+            if (removed > 0) logger.info("Removed {} duplicate forecasts", removed);
+        } catch (Exception e) {
+            logger.warn("Could not remove duplicate forecasts: {}", e.getMessage());
+        }
+        ensure(Forecast.class, new Index().on("userId", Sort.Direction.ASC).on("forecastMonth", Sort.Direction.ASC).unique());
+
+        // Summary fields for conversations stored before they existed (no-op once done)
+        try {
+            long filled = conversationRepository.backfillSummaries();
+            if (filled > 0) logger.info("Backfilled summary fields on {} conversations", filled);
+        } catch (Exception e) {
+            logger.warn("Could not backfill conversation summaries: {}", e.getMessage());
+        }
+    }
+
+    private void ensure(Class<?> entity, Index index) {
+        try {
+            mongoTemplate.indexOps(entity).createIndex(index);
+        } catch (Exception e) {
+            logger.warn("Could not create index {} on {}: {}", index.getIndexKeys(), entity.getSimpleName(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.shanu.backend.config;
+
+import com.shanu.backend.websocket.ChatHandshakeInterceptor;
+import com.shanu.backend.websocket.ChatWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+/**
+ * WebSocketConfig - Registers the chat WebSocket at /ws/chat.
+ *
+ * Runs on Tomcat's NIO connector: open connections are parked in the poller, not on a thread,
+ * so thousands of idle chat tabs cost only their buffers. Idle connections are closed after
+ * chat.ws.idle-timeout-ms (clients send ping frames to stay connected).
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    @Value("${chat.ws.allowed-origins:http://localhost:5173}")
+    private String[] allowedOrigins;
+
+    @Value("${chat.ws.idle-timeout-ms:600000}")
+    private long idleTimeoutMs;
+
+    @Value("${chat.ws.max-frame-bytes:65536}")
+    private int maxFrameBytes;
+
+    @Autowired
+    private ChatWebSocketHandler chatWebSocketHandler;
+
+    @Autowired
+    private ChatHandshakeInterceptor chatHandshakeInterceptor;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(chatWebSocketHandler, "/ws/chat")
+            .addInterceptors(chatHandshakeInterceptor)
+            .setAllowedOrigins(allowedOrigins);
+    }
+
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxSessionIdleTimeout(idleTimeoutMs);
+        // Incoming frames are small user messages; keep per-session buffers small
+        container.setMaxTextMessageBufferSize(maxFrameBytes);
+        container.setMaxBinaryMessageBufferSize(maxFrameBytes);
+        return container;
+    }
+}
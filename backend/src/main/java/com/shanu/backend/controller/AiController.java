@@ -1,17 +1,20 @@
 package com.shanu.backend.controller;
 
+import com.shanu.backend.client.LlmMetrics;
 import com.shanu.backend.model.AiHistory;
-import com.shanu.backend.model.Transaction;
 import com.shanu.backend.repository.AiHistoryRepository;
-import com.shanu.backend.repository.TransactionRepository;
-import com.shanu.backend.service.AiService;
+import com.shanu.backend.service.AdviceJob;
+import com.shanu.backend.service.AdviceJobService;
+import com.shanu.backend.service.AdviceService;
 import com.shanu.backend.service.AuthService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.time.LocalDate;
-import java.time.ZoneId;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/ai")
@@ -19,27 +22,35 @@ import java.util.*;
 public class AiController {
 
     @Autowired
-    private AiService aiService;
+    private AdviceService adviceService;
 
     @Autowired
-    private AiHistoryRepository aiHistoryRepository;
+    private AdviceJobService adviceJobService;
 
     @Autowired
-    private TransactionRepository transactionRepository;
+    private AiHistoryRepository aiHistoryRepository;
+
+    @Value("${ai.jobs.events-timeout-ms:120000}")
+    private long jobEventsTimeoutMs;
 
-    @Autowired
-    private com.shanu.backend.service.TipService tipService;
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private LlmMetrics llmMetrics;
+
     /**
      * Generate AI-powered advice
-     * POST /api/ai/advice
+     * POST /api/ai/advice[?async=true]
      * Body: { "scope": "monthly" | "yearly" | "detailed" }
+     *
+     * With async=true the request is queued and 202 { jobId, status } is returned at once;
+     * fetch the result from GET /api/ai/jobs/{jobId} or GET /api/ai/jobs/{jobId}/events.
      */
     @PostMapping("/advice")
     public ResponseEntity<?> generateAdvice(
             @RequestHeader(value = "Authorization", required = false) String token,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             @RequestBody Map<String, String> request) {
         try {
             if (token == null || !token.startsWith("Bearer ")) {
@@ -49,125 +60,112 @@ public class AiController {
             String userId = authService.getUserFromToken(token.substring(7)).getId();
             String scope = request.getOrDefault("scope", "monthly");
 
-            // Get user transactions based on scope
-            // "monthly" = current month only
-            // "all" = all transactions
-            LocalDate startDate;
-            if ("all".equals(scope)) {
-                // Fetch all transactions (from 100 years ago to get all)
-                startDate = LocalDate.now().minusYears(100);
-            } else {
-                // "monthly" scope - get current month only
-                startDate = LocalDate.now().withDayOfMonth(1);
+            if (async) {
+                AdviceJob job = adviceJobService.submit(userId, scope);
+                return ResponseEntity.accepted().body(Map.of(
+                    "jobId", job.getId(),
+                    "status", job.getStatus(),
+                    "statusUrl", "/api/ai/jobs/" + job.getId(),
+                    "eventsUrl", "/api/ai/jobs/" + job.getId() + "/events"
+                ));
             }
 
-            Date start = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-            List<Transaction> transactions = transactionRepository.findByUserIdAndDateGreaterThan(userId, start);
+            return ResponseEntity.ok(adviceService.generateAdvice(userId, scope));
 
-            if (transactions.isEmpty()) {
-                return ResponseEntity.ok(Map.of(
-                    "summary", "No transactions found. Start tracking expenses to get personalized advice.",
-                    "actions", List.of(),
-                    "estimatedSavingsNextMonth", 0,
-                    "confidenceScore", 0,
-                    "citations", List.of()
-                ));
-            }
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
 
-            // If AI feature is disabled or not configured, return rule-based tips as fallback
-            if (!aiService.isAiEnabled()) {
-                Map<String, Object> tipResult = tipService.recommendTips(transactions);
-                List<String> tips = new ArrayList<>();
-                Object tipsObj = tipResult.getOrDefault("tips", List.of());
-                if (tipsObj instanceof List) {
-                    for (Object o : (List<?>) tipsObj) if (o != null) tips.add(o.toString());
-                }
-
-                String summary = tips.isEmpty() ? "No personalized tips available" : String.join("; ", tips.subList(0, Math.min(3, tips.size())));
-                List<String> actions = tips;
-                Double estimatedSavings = 0.0;
-                Integer confidenceScore = 60;
-                List<String> citations = List.of("rule-based");
-
-                AiHistory history = new AiHistory(userId, scope, summary, actions, estimatedSavings, confidenceScore, citations);
-                aiHistoryRepository.save(history);
-
-                return ResponseEntity.ok(Map.of(
-                    "summary", summary,
-                    "actions", actions,
-                    "estimatedSavingsNextMonth", estimatedSavings,
-                    "confidenceScore", confidenceScore,
-                    "citations", citations,
-                    "source", "rule-based"
-                ));
+    /**
+     * Poll an async advice job
+     * GET /api/ai/jobs/{id}
+     * Returns { id, scope, status, createdAt, startedAt, finishedAt, result, error }
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getJob(
+            @PathVariable String id,
+            @RequestHeader(value = "Authorization", required = false) String token) {
+        try {
+            if (token == null || !token.startsWith("Bearer ")) {
+                return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
             }
 
-            // Call AI service (pass scope)
-            Map<String, Object> aiResponse = aiService.generatePersonalizedAdvice(userId, transactions, scope);
-
-            // If AI returned error, fall back to rule-based tips
-            if (aiResponse == null || aiResponse.containsKey("error")) {
-                Map<String, Object> tipResult = tipService.recommendTips(transactions);
-                List<String> tips = new ArrayList<>();
-                Object tipsObj = tipResult.getOrDefault("tips", List.of());
-                if (tipsObj instanceof List) {
-                    for (Object o : (List<?>) tipsObj) if (o != null) tips.add(o.toString());
-                }
-
-                String summary = "AI unavailable — showing rule-based suggestions.";
-                List<String> actions = tips;
-                Double estimatedSavings = 0.0;
-                Integer confidenceScore = 50;
-                List<String> citations = List.of("fallback");
-
-                AiHistory history = new AiHistory(userId, scope, summary, actions, estimatedSavings, confidenceScore, citations);
-                aiHistoryRepository.save(history);
-
-                return ResponseEntity.ok(Map.of(
-                    "summary", summary,
-                    "actions", actions,
-                    "estimatedSavingsNextMonth", estimatedSavings,
-                    "confidenceScore", confidenceScore,
-                    "citations", citations,
-                    "source", "fallback"
-                ));
+            String userId = authService.getUserFromToken(token.substring(7)).getId();
+            Optional<AdviceJob> job = adviceJobService.find(id, userId);
+            if (job.isEmpty()) {
+                return ResponseEntity.status(404).body(Map.of("error", "Not found"));
             }
 
-            // Extract structured response from AI
-            String summary = (String) aiResponse.getOrDefault("summary", "Unable to generate summary");
-            Object actionsObj = aiResponse.getOrDefault("actions", List.of());
-            List<String> actions = new ArrayList<>();
-            if (actionsObj instanceof List) {
-                for (Object o : (List<?>) actionsObj) if (o != null) actions.add(o.toString());
-            }
+            return ResponseEntity.ok(job.get());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
 
-            Double estimatedSavings = 0.0;
-            Object estObj = aiResponse.getOrDefault("estimatedSavingsNextMonth", 0);
-            if (estObj instanceof Number) estimatedSavings = ((Number) estObj).doubleValue();
+    /**
+     * Wait for an async advice job over Server-Sent Events
+     * GET /api/ai/jobs/{id}/events
+     * Emits a single "done" or "failed" event carrying the job, then closes.
+     * Auth errors and unknown jobs are plain JSON errors (401/404), sent instead of the stream.
+     */
+    @GetMapping(value = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Object jobEvents(
+            @PathVariable String id,
+            @RequestHeader(value = "Authorization", required = false) String token) {
+        if (token == null || !token.startsWith("Bearer ")) {
+            return eventsError(401, "Unauthorized");
+        }
 
-            Integer confidenceScore = 50;
-            Object confObj = aiResponse.getOrDefault("confidenceScore", 50);
-            if (confObj instanceof Number) confidenceScore = ((Number) confObj).intValue();
+        Optional<AdviceJob> found;
+        try {
+            String userId = authService.getUserFromToken(token.substring(7)).getId();
+            found = adviceJobService.find(id, userId);
+        } catch (Exception e) {
+            return eventsError(500, e.getMessage());
+        }
+        if (found.isEmpty()) {
+            return eventsError(404, "Not found");
+        }
 
-            Object citationsObj = aiResponse.getOrDefault("citations", List.of());
-            List<String> citations = new ArrayList<>();
-            if (citationsObj instanceof List) {
-                for (Object o : (List<?>) citationsObj) if (o != null) citations.add(o.toString());
+        SseEmitter emitter = new SseEmitter(jobEventsTimeoutMs);
+        found.get().getCompletion().whenComplete((job, ex) -> {
+            try {
+                String name = job.getStatus() == AdviceJob.Status.DONE ? "done" : "failed";
+                emitter.send(SseEmitter.event().name(name).data(job, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception sendFailed) {
+                // Client went away; nothing left to deliver
+                emitter.completeWithError(sendFailed);
             }
+        });
+        return emitter;
+    }
 
-            // Save to history
-            AiHistory history = new AiHistory(userId, scope, summary, actions, estimatedSavings, confidenceScore, citations);
-            aiHistoryRepository.save(history);
+    // The mapping produces text/event-stream only; without an explicit JSON content type the
+    // error body has no converter and the client gets an empty 500
+    private static ResponseEntity<Map<String, String>> eventsError(int status, String message) {
+        return ResponseEntity.status(status)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(Map.of("error", String.valueOf(message)));
+    }
 
-            return ResponseEntity.ok(Map.of(
-                "summary", summary,
-                "actions", actions,
-                "estimatedSavingsNextMonth", estimatedSavings,
-                "confidenceScore", confidenceScore,
-                "citations", citations,
-                "source", "ai"
-            ));
+    /**
+     * LLM usage of the current user since server start (calls, tokens, estimated cost in USD)
+     * GET /api/ai/usage
+     */
+    @GetMapping("/usage")
+    public ResponseEntity<?> getUsage(
+            @RequestHeader(value = "Authorization", required = false) String token) {
+        try {
+            if (token == null || !token.startsWith("Bearer ")) {
+                return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
+            }
 
+            String userId = authService.getUserFromToken(token.substring(7)).getId();
+            return ResponseEntity.ok(llmMetrics.usageFor(userId));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
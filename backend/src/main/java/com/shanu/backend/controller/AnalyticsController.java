@@ -2,18 +2,13 @@ package com.shanu.backend.controller;
 
 import com.shanu.backend.model.Alert;
 import com.shanu.backend.model.Forecast;
-import com.shanu.backend.model.Transaction;
 import com.shanu.backend.repository.AlertRepository;
-import com.shanu.backend.repository.ForecastRepository;
-import com.shanu.backend.repository.TransactionRepository;
 import com.shanu.backend.service.AuthService;
+import com.shanu.backend.service.ForecastCache;
 import com.shanu.backend.service.ForecastService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.YearMonth;
 import java.util.*;
 
 @RestController
@@ -25,21 +20,23 @@ public class AnalyticsController {
     private ForecastService forecastService;
 
     @Autowired
-    private TransactionRepository transactionRepository;
-
-    @Autowired
-    private ForecastRepository forecastRepository;
+    private ForecastCache forecastCache;
 
     @Autowired
     private AuthService authService;
 
     /**
      * Get forecast for next month
-     * GET /api/analytics/forecast
+     * GET /api/analytics/forecast?model=auto
+     *
+     * Served from ForecastCache (stored once per user and month, recomputed when transactions change).
+     * model (optional): a ForecastService model name or "auto" for every category, computed on the
+     * fly and not stored; default is the configured per-category selection.
      */
     @GetMapping("/forecast")
     public ResponseEntity<?> getForecast(
-            @RequestHeader(value = "Authorization", required = false) String token) {
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @RequestParam(value = "model", required = false) String model) {
         try {
             if (token == null || !token.startsWith("Bearer ")) {
                 return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
@@ -47,35 +44,66 @@ public class AnalyticsController {
 
             String userId = authService.getUserFromToken(token.substring(7)).getId();
 
-            // Get last 6 months of transactions
-            LocalDate startDate = LocalDate.now().minusMonths(6);
-            Date start = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
-            List<Transaction> transactions = transactionRepository.findByUserIdAndDateGreaterThan(userId, start);
+            Map<String, Double> forecast;
+            Map<String, Double> trendSlope;
+            Map<String, String> models;
+            Double totalForecast;
+            if (model == null) {
+                Forecast stored = forecastCache.get(userId);
+                forecast = stored.getCategoryExpensesForecast();
+                trendSlope = stored.getCategoryTrendSlope();
+                models = stored.getCategoryModel();
+                totalForecast = stored.getTotalForecastedExpense();
+            } else {
+                ForecastService.ForecastResult result = forecastService.forecast(forecastCache.loadHistory(userId), model);
+                forecast = result.forecast();
+                trendSlope = result.trendSlope();
+                models = result.models();
+                totalForecast = result.total();
+            }
 
-            if (transactions.isEmpty()) {
+            if (forecast == null || forecast.isEmpty()) {
                 return ResponseEntity.ok(Map.of(
                     "forecast", Map.of(),
                     "message", "Not enough data for forecast"
                 ));
             }
 
-            Map<String, Double> forecast = forecastService.forecastNextMonth(transactions);
+            return ResponseEntity.ok(Map.of(
+                "forecast", forecast,
+                "totalForecast", totalForecast,
+                "trendSlope", trendSlope != null ? trendSlope : Map.of(),
+                "models", models != null ? models : Map.of()
+            ));
 
-            // Calculate total
-            Double totalForecast = forecast.values().stream()
-                .mapToDouble(Double::doubleValue)
-                .sum();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
 
-            // Save forecast to DB
-            Forecast forecastObj = new Forecast(userId, YearMonth.now().plusMonths(1).atDay(1).atStartOfDay(), 
-                forecast, new HashMap<>(), totalForecast);
-            forecastRepository.save(forecastObj);
+    /**
+     * Compare forecast models on the user's data
+     * GET /api/analytics/forecast/models
+     *
+     * Response: { "models": [...], "categories": { "Food": [{ "model", "forecast", "mae" }, ...] } }
+     * mae is the mean absolute error of backtests made the same way, two months ahead of the last
+     * complete month (null: too little history).
+     */
+    @GetMapping("/forecast/models")
+    public ResponseEntity<?> compareForecastModels(
+            @RequestHeader(value = "Authorization", required = false) String token) {
+        try {
+            if (token == null || !token.startsWith("Bearer ")) {
+                return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
+            }
 
+            String userId = authService.getUserFromToken(token.substring(7)).getId();
             return ResponseEntity.ok(Map.of(
-                "forecast", forecast,
-                "totalForecast", totalForecast
+                "models", forecastService.modelNames(),
+                "categories", forecastService.compareModels(forecastCache.loadHistory(userId))
             ));
-
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
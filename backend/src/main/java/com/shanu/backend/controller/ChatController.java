@@ -3,11 +3,15 @@ package com.shanu.backend.controller;
 import com.shanu.backend.model.Conversation;
 import com.shanu.backend.service.AuthService;
 import com.shanu.backend.service.ChatService;
+import com.shanu.backend.service.ChatStreamListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Chat Controller for BudgetPilot chatbot.
@@ -15,7 +19,9 @@ import java.util.Map;
  * Endpoints:
  * - POST /api/chat/start: Create new conversation
  * - GET /api/chat/{id}: Fetch conversation
+ * - GET /api/chat/{id}/messages?afterSeq=N: Messages after seq N (resume after reconnect)
  * - POST /api/chat/{id}/message: Send user message
+ * - POST /api/chat/{id}/message/stream: Send user message, stream reply as SSE
  * - GET /api/chat: List user's conversations
  * 
  * All endpoints require Authorization header with Bearer token.
@@ -34,6 +40,12 @@ public class ChatController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private ExecutorService llmExecutor;
+
+    @Value("${chat.stream.timeout-ms:180000}")
+    private long streamTimeoutMs;
+
     /**
      * POST /api/chat/start
      * 
@@ -94,6 +106,36 @@ public class ChatController {
         }
     }
 
+    /**
+     * GET /api/chat/{id}/messages?afterSeq=12&limit=100
+     * 
+     * Resume after a reconnect: the messages the client missed, oldest first.
+     * If hasMore is true, call again with afterSeq = seq of the last returned message.
+     * 
+     * Response: { "conversationId": "...", "messages": [...], "lastSeq": 20, "hasMore": false }
+     */
+    @GetMapping("/{id}/messages")
+    public ResponseEntity<?> getMessagesAfter(
+            @PathVariable String id,
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @RequestParam(value = "afterSeq", defaultValue = "0") long afterSeq,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        try {
+            if (token == null || !token.startsWith("Bearer ")) {
+                return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
+            }
+            
+            String userId = authService.getUserFromToken(token.substring(7)).getId();
+            return ResponseEntity.ok(chatService.fetchMessagesAfter(id, userId, afterSeq, limit));
+        } catch (SecurityException se) {
+            return ResponseEntity.status(403).body(Map.of("error", se.getMessage()));
+        } catch (IllegalArgumentException iae) {
+            return ResponseEntity.status(404).body(Map.of("error", iae.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * POST /api/chat/{id}/message
      * 
@@ -102,16 +144,21 @@ public class ChatController {
      * Body:
      * {
      *   "text": "I want help with savings",  // optional
-     *   "option": "Savings Plan"            // optional
+     *   "option": "Savings Plan",           // optional
+     *   "afterSeq": 12                      // optional, seq of the last message the client has
      * }
      * 
      * At least one of 'text' or 'option' must be provided.
      * 
      * Response:
      * {
-     *   "assistantMessage": { "text": "...", "options": [...], "metadata": {...} },
-     *   "conversation": { ... full conversation ... }
+     *   "conversationId": "...",
+     *   "assistantMessage": { "seq": 14, "text": "...", "options": [...], "metadata": {...} },
+     *   "messages": [ ... messages after afterSeq (default: this turn's user and assistant message) ... ],
+     *   "lastSeq": 14
      * }
+     * 
+     * 409 if another turn was written to the conversation in the meantime.
      */
     @PostMapping("/{id}/message")
     public ResponseEntity<?> sendMessage(
@@ -127,13 +174,15 @@ public class ChatController {
             String text = body.getOrDefault("text", null);
             String option = body.getOrDefault("option", null);
             
-            Map<String, Object> response = chatService.handleUserMessage(id, userId, text, option);
+            Map<String, Object> response = chatService.handleUserMessage(id, userId, text, option, afterSeq(body));
             
             return ResponseEntity.ok(response);
         } catch (SecurityException se) {
             return ResponseEntity.status(403).body(Map.of("error", se.getMessage()));
         } catch (IllegalArgumentException iae) {
             return ResponseEntity.status(400).body(Map.of("error", iae.getMessage()));
+        } catch (IllegalStateException ise) {
+            return ResponseEntity.status(409).body(Map.of("error", ise.getMessage()));
         } catch (RuntimeException re) {
             // Rate limit exceeded
             if (re.getMessage().contains("Rate limit")) {
@@ -146,29 +195,122 @@ public class ChatController {
     }
 
     /**
-     * GET /api/chat
+     * POST /api/chat/{id}/message/stream
      * 
-     * List all conversations for the authenticated user.
+     * Same body as /message, but the reply is streamed as Server-Sent Events:
+     * - event "token":   a raw text fragment from Gemini, in order
+     * - event "message": the final response, same shape as /message (sent once, after persisting)
+     * - event "error":   { "error": "..." } if the turn failed
      * 
-     * Response: [{ "id": "...", "title": "...", "updatedAt": "..." }, ...]
+     * Validation errors (auth, ownership, rate limit, empty message) are returned as normal JSON errors,
+     * before any event is sent.
+     */
+    @PostMapping(value = "/{id}/message/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Object streamMessage(
+            @PathVariable String id,
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @RequestBody Map<String, String> body) {
+        Conversation conversation;
+        String userId;
+        Long afterSeq;
+        try {
+            if (token == null || !token.startsWith("Bearer ")) {
+                return streamError(401, "Unauthorized");
+            }
+            
+            userId = authService.getUserFromToken(token.substring(7)).getId();
+            afterSeq = afterSeq(body);
+            conversation = chatService.beginStreamingTurn(id, userId, body.get("text"), body.get("option"));
+        } catch (SecurityException se) {
+            return streamError(403, se.getMessage());
+        } catch (IllegalArgumentException iae) {
+            return streamError(400, iae.getMessage());
+        } catch (RuntimeException re) {
+            if (re.getMessage() != null && re.getMessage().contains("Rate limit")) {
+                return streamError(429, re.getMessage());
+            }
+            return streamError(500, re.getMessage());
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        final String streamUserId = userId;
+        llmExecutor.execute(() -> chatService.streamReply(conversation, streamUserId, afterSeq, new ChatStreamListener() {
+            @Override
+            public void onToken(String delta) {
+                send(SseEmitter.event().name("token").data(delta));
+            }
+
+            @Override
+            public void onComplete(Map<String, Object> response) {
+                send(SseEmitter.event().name("message").data(response, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                send(SseEmitter.event().name("error").data(Map.of("error", String.valueOf(e.getMessage())), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            }
+
+            private void send(SseEmitter.SseEventBuilder event) {
+                try {
+                    emitter.send(event);
+                } catch (Exception ignored) {
+                    // Client went away; keep generating so the reply is still persisted
+                }
+            }
+        }));
+        return emitter;
+    }
+
+    /**
+     * GET /api/chat?limit=20&cursor=...
+     * 
+     * List the authenticated user's conversations, newest first, without their messages.
+     * Pass nextCursor from the previous response as cursor to get the next page (null = last page).
+     * 
+     * Response: { "conversations": [{ "id", "title", "updatedAt", "messageCount", "lastMessagePreview" }, ...],
+     *             "nextCursor": "..." }
      */
     @GetMapping
     public ResponseEntity<?> listConversations(
-            @RequestHeader(value = "Authorization", required = false) String token) {
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @RequestParam(value = "limit", defaultValue = "20") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
         try {
             if (token == null || !token.startsWith("Bearer ")) {
                 return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
             }
             
             String userId = authService.getUserFromToken(token.substring(7)).getId();
-            List<Conversation> conversations = chatService.listUserConversations(userId);
-            
-            return ResponseEntity.ok(conversations);
+            return ResponseEntity.ok(chatService.listConversationSummaries(userId, cursor, limit));
+        } catch (IllegalArgumentException iae) {
+            return ResponseEntity.status(400).body(Map.of("error", iae.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * JSON error from an SSE mapping. The content type must be set explicitly: the mapping only
+     * produces text/event-stream, for which there is no converter for a Map (that would be a bare 500).
+     */
+    private static ResponseEntity<Map<String, String>> streamError(int status, String message) {
+        return ResponseEntity.status(status)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(Map.of("error", String.valueOf(message)));
+    }
+
+    private static Long afterSeq(Map<String, String> body) {
+        String value = body.get("afterSeq");
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("afterSeq must be a number");
+        }
+    }
+
     /**
      * DEBUG: Call Gemini directly to reproduce API errors without authentication.
      * POST /api/chat/debug/gemini
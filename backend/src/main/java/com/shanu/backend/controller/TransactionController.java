@@ -105,12 +105,8 @@ public ResponseEntity<?> updateTransaction(
                     .body(Map.of("message", "You can only update your own transactions"));
         }
 
-        existing.setType(updatedTxn.getType());
-        existing.setCategory(updatedTxn.getCategory());
-        existing.setAmount(updatedTxn.getAmount());
-        existing.setDescription(updatedTxn.getDescription());
-        existing.setDate(updatedTxn.getDate());
-        Transaction saved = transactionRepository.save(existing);
+        // Go through the service so caches derived from this user's data are invalidated
+        Transaction saved = transactionService.updateTransaction(id, updatedTxn);
 
         return ResponseEntity.ok(saved);
     } catch (Exception e) {
@@ -144,7 +140,7 @@ public ResponseEntity<?> deleteTransaction(
                     .body(Map.of("message", "You can only delete your own transactions"));
         }
 
-        transactionRepository.deleteById(id);
+        transactionService.deleteTransaction(id);
         return ResponseEntity.ok(Map.of("message", "Transaction deleted successfully"));
     } catch (Exception e) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
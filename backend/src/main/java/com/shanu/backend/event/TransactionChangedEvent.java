@@ -0,0 +1,18 @@
+package com.shanu.backend.event;
+
+/**
+ * Published whenever a user's transactions are created, updated or deleted.
+ * Listeners use it to drop or refresh anything derived from that user's data (caches, forecasts, etc.).
+ */
+public class TransactionChangedEvent {
+
+    private final String userId;
+
+    public TransactionChangedEvent(String userId) {
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,126 @@
+package com.shanu.backend.forecast;
+
+import com.shanu.backend.model.Transaction;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Monthly expense totals per category as a dense double[months][categories] matrix.
+ *
+ * Rows are consecutive calendar months over a caller-given window [from, to], oldest first, starting
+ * at the first month in the window with an expense (months before a user's first expense are not
+ * data) and always ending at to, so trailing months without spending are rows of 0, like gaps.
+ * A month in which a category had no expense is 0, not missing, so row i is always firstMonth + i.
+ * Expenses outside the window are ignored; callers pass complete months only, since a partial
+ * month would read as a drop in spending. Columns are the categories in alphabetical order.
+ *
+ * Expenses are transactions with a positive amount that are not income (type or category "income");
+ * transactions without a date are skipped, a missing category counts as "Uncategorized".
+ */
+public final class ExpenseMatrix {
+
+    private final YearMonth firstMonth;
+    private final String[] categories;
+    private final double[][] values;
+
+    private ExpenseMatrix(YearMonth firstMonth, String[] categories, double[][] values) {
+        this.firstMonth = firstMonth;
+        this.categories = categories;
+        this.values = values;
+    }
+
+    /**
+     * Build the matrix in one pass over the transactions: each expense is reduced to a
+     * (month, category, amount) triple in primitive arrays, which are then summed into the matrix.
+     */
+    public static ExpenseMatrix of(List<Transaction> transactions, ZoneId zone, YearMonth from, YearMonth to) {
+        int fromMonth = monthIndex(from);
+        int toMonth = monthIndex(to);
+        int n = transactions.size();
+        int[] monthOf = new int[n];
+        int[] categoryOf = new int[n];
+        double[] amountOf = new double[n];
+        Map<String, Integer> categoryIndex = new HashMap<>();
+        int count = 0;
+        int minMonth = Integer.MAX_VALUE;
+
+        for (Transaction t : transactions) {
+            if (t.getDate() == null || t.getAmount() == null || t.getAmount() <= 0) continue;
+            if ("income".equalsIgnoreCase(t.getType()) || "income".equalsIgnoreCase(t.getCategory())) continue;
+            int month = monthIndex(YearMonth.from(LocalDate.ofInstant(t.getDate().toInstant(), zone)));
+            if (month < fromMonth || month > toMonth) continue;
+            String category = t.getCategory() != null ? t.getCategory() : "Uncategorized";
+            Integer c = categoryIndex.get(category);
+            if (c == null) {
+                c = categoryIndex.size();
+                categoryIndex.put(category, c);
+            }
+            monthOf[count] = month;
+            categoryOf[count] = c;
+            amountOf[count] = t.getAmount();
+            count++;
+            if (month < minMonth) minMonth = month;
+        }
+        if (count == 0) {
+            return new ExpenseMatrix(null, new String[0], new double[0][0]);
+        }
+
+        // Alphabetical columns: stable output order regardless of transaction order
+        String[] categories = categoryIndex.keySet().toArray(new String[0]);
+        Arrays.sort(categories);
+        int[] column = new int[categories.length];
+        for (int c = 0; c < categories.length; c++) {
+            column[categoryIndex.get(categories[c])] = c;
+        }
+
+        double[][] values = new double[toMonth - minMonth + 1][categories.length];
+        for (int i = 0; i < count; i++) {
+            values[monthOf[i] - minMonth][column[categoryOf[i]]] += amountOf[i];
+        }
+        return new ExpenseMatrix(YearMonth.of(minMonth / 12, minMonth % 12 + 1), categories, values);
+    }
+
+    private static int monthIndex(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    public int months() {
+        return values.length;
+    }
+
+    public int categoryCount() {
+        return categories.length;
+    }
+
+    public String category(int c) {
+        return categories[c];
+    }
+
+    /**
+     * First month (row 0), or null if there are no expenses.
+     */
+    public YearMonth firstMonth() {
+        return firstMonth;
+    }
+
+    public double get(int month, int category) {
+        return values[month][category];
+    }
+
+    /**
+     * Copy category c's monthly series, oldest first, into out (length >= months()) and return it.
+     * Lets a caller reuse one buffer across all categories.
+     */
+    public double[] series(int c, double[] out) {
+        for (int m = 0; m < values.length; m++) {
+            out[m] = values[m][c];
+        }
+        return out;
+    }
+}
@@ -0,0 +1,33 @@
+package com.shanu.backend.forecast;
+
+/**
+ * A one-step-ahead forecasting method for a monthly series.
+ *
+ * Implementations run in O(n) over the primitive array, allocate little or nothing, and are
+ * stateless, so one instance serves all users and categories concurrently.
+ */
+public interface ForecastModel {
+
+    /**
+     * Short name used in configuration, API parameters and stored forecasts ("ses", "holt", ...).
+     */
+    String name();
+
+    /**
+     * Fewest months of history the model needs.
+     */
+    int minMonths();
+
+    /**
+     * Forecast for month n from y[0..n), oldest first (n >= minMonths()).
+     */
+    default double forecast(double[] y, int n) {
+        return forecast(y, n, 1);
+    }
+
+    /**
+     * Forecast for month n + horizon - 1 from y[0..n): horizon 1 is the month right after the
+     * series, 2 skips one (e.g. the current month, still in progress).
+     */
+    double forecast(double[] y, int n, int horizon);
+}
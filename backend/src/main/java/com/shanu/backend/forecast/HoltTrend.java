@@ -0,0 +1,65 @@
+package com.shanu.backend.forecast;
+
+/**
+ * Double exponential smoothing (Holt): level plus trend.
+ *
+ * With phi < 1 the trend is damped (Gardner-McKenzie): each step carries only phi of the previous
+ * trend, so a few rising months don't extrapolate into an ever-growing forecast.
+ */
+public final class HoltTrend implements ForecastModel {
+
+    private final String name;
+    private final double alpha;
+    private final double beta;
+    private final double phi;
+
+    public HoltTrend(String name, double alpha, double beta, double phi) {
+        this.name = name;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.phi = phi;
+    }
+
+    /**
+     * Undamped Holt linear trend ("holt").
+     */
+    public static HoltTrend linear(double alpha, double beta) {
+        return new HoltTrend("holt", alpha, beta, 1.0);
+    }
+
+    /**
+     * Damped trend ("damped").
+     */
+    public static HoltTrend damped(double alpha, double beta, double phi) {
+        return new HoltTrend("damped", alpha, beta, phi);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int minMonths() {
+        return 3;
+    }
+
+    @Override
+    public double forecast(double[] y, int n, int horizon) {
+        double level = y[0];
+        double trend = y[1] - y[0];
+        for (int t = 1; t < n; t++) {
+            double previous = level;
+            level = alpha * y[t] + (1 - alpha) * (level + phi * trend);
+            trend = beta * (level - previous) + (1 - beta) * phi * trend;
+        }
+        // h steps ahead adds (phi + phi^2 + ... + phi^h) * trend; h * trend when undamped
+        double damping = 0.0;
+        double factor = 1.0;
+        for (int h = 0; h < horizon; h++) {
+            factor *= phi;
+            damping += factor;
+        }
+        return level + damping * trend;
+    }
+}
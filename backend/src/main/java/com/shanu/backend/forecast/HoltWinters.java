@@ -0,0 +1,65 @@
+package com.shanu.backend.forecast;
+
+/**
+ * Triple exponential smoothing (additive Holt-Winters): level, trend and a seasonal offset per
+ * month of the season (12 for yearly patterns such as festivals, insurance, school fees).
+ *
+ * Initialized from the first two seasons, so it needs 2 * period months of history.
+ */
+public final class HoltWinters implements ForecastModel {
+
+    private final double alpha;
+    private final double beta;
+    private final double gamma;
+    private final int period;
+
+    public HoltWinters(double alpha, double beta, double gamma, int period) {
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+        this.period = period;
+    }
+
+    @Override
+    public String name() {
+        return "holt-winters";
+    }
+
+    @Override
+    public int minMonths() {
+        return 2 * period;
+    }
+
+    @Override
+    public double forecast(double[] y, int n, int horizon) {
+        double firstMean = 0.0;
+        double secondMean = 0.0;
+        for (int i = 0; i < period; i++) {
+            firstMean += y[i];
+            secondMean += y[period + i];
+        }
+        firstMean /= period;
+        secondMean /= period;
+
+        // Season means sit mid-season; offsets are measured against that trend line so the
+        // trend doesn't leak into them
+        double trend = (secondMean - firstMean) / period;
+        double middle = (period - 1) / 2.0;
+        double[] season = new double[period];
+        for (int i = 0; i < period; i++) {
+            double drift = trend * (i - middle);
+            season[i] = ((y[i] - firstMean - drift) + (y[period + i] - secondMean - drift)) / 2;
+        }
+        // Level at the end of the first season; smoothing then runs from the second one on
+        double level = firstMean + trend * middle;
+
+        for (int t = period; t < n; t++) {
+            int s = t % period;
+            double previous = level;
+            level = alpha * (y[t] - season[s]) + (1 - alpha) * (level + trend);
+            trend = beta * (level - previous) + (1 - beta) * trend;
+            season[s] = gamma * (y[t] - level) + (1 - gamma) * season[s];
+        }
+        return level + horizon * trend + season[(n + horizon - 1) % period];
+    }
+}
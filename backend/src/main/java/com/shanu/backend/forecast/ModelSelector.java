@@ -0,0 +1,83 @@
+package com.shanu.backend.forecast;
+
+import java.util.List;
+
+/**
+ * Picks a forecasting model per series by backtesting: each model forecasts each of the last
+ * holdout months from the months before it, and the lowest mean absolute error wins.
+ *
+ * All models are scored on the same holdout months, so only models whose minMonths() fits before
+ * the first holdout month compete. Costs O(models * holdout * n); for a user's categories over two
+ * years of history that is a few thousand multiply-adds.
+ */
+public final class ModelSelector {
+
+    /**
+     * A model's forecast and its backtest error (null if it could not be backtested).
+     */
+    public record Score(String model, double forecast, Double mae) {
+
+        static Score of(ForecastModel model, double[] y, int n, int horizon, double mae) {
+            return new Score(model.name(), model.forecast(y, n, horizon), Double.isNaN(mae) ? null : mae);
+        }
+    }
+
+    private ModelSelector() {}
+
+    /**
+     * Mean absolute one-step error of the model over y[n - holdout .. n), or NaN if the model
+     * lacks history for that.
+     */
+    public static double backtest(ForecastModel model, double[] y, int n, int holdout) {
+        return backtest(model, y, n, holdout, 1);
+    }
+
+    /**
+     * Mean absolute error of the model's horizon-step-ahead forecasts of y[n - holdout .. n)
+     * (each made from the months up to horizon before it), or NaN if the model lacks history for that.
+     */
+    public static double backtest(ForecastModel model, double[] y, int n, int holdout, int horizon) {
+        if (holdout <= 0 || n - holdout - horizon + 1 < model.minMonths()) return Double.NaN;
+        double error = 0.0;
+        for (int t = n - holdout; t < n; t++) {
+            error += Math.abs(model.forecast(y, t - horizon + 1, horizon) - y[t]);
+        }
+        return error / holdout;
+    }
+
+    /**
+     * Holdout months to use for a series of n months: at most maxHoldout, leaving at least
+     * minMonths of history before the first one.
+     */
+    public static int holdoutFor(int n, int maxHoldout, int minMonths) {
+        return Math.max(0, Math.min(maxHoldout, n - minMonths));
+    }
+
+    /**
+     * The best model for y[0..n) among those with enough history, scored over holdout months.
+     * Falls back to the first applicable model when none can be backtested.
+     *
+     * @return null if no model has enough history
+     */
+    public static Score select(List<ForecastModel> models, double[] y, int n, int holdout) {
+        return select(models, y, n, holdout, 1);
+    }
+
+    /**
+     * As select(models, y, n, holdout), forecasting and backtesting horizon months ahead.
+     */
+    public static Score select(List<ForecastModel> models, double[] y, int n, int holdout, int horizon) {
+        Score best = null;
+        Score fallback = null;
+        for (ForecastModel model : models) {
+            if (n < model.minMonths()) continue;
+            double mae = backtest(model, y, n, holdout, horizon);
+            if (!Double.isNaN(mae) && (best == null || mae < best.mae())) {
+                best = Score.of(model, y, n, horizon, mae);
+            } else if (fallback == null) {
+                fallback = Score.of(model, y, n, horizon, mae);
+            }
+        }
+        return best != null ? best : fallback;
+    }
+}
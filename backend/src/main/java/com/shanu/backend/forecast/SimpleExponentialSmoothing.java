@@ -0,0 +1,33 @@
+package com.shanu.backend.forecast;
+
+/**
+ * Simple exponential smoothing: level only, for series without trend or seasonality.
+ */
+public final class SimpleExponentialSmoothing implements ForecastModel {
+
+    private final double alpha;
+
+    public SimpleExponentialSmoothing(double alpha) {
+        this.alpha = alpha;
+    }
+
+    @Override
+    public String name() {
+        return "ses";
+    }
+
+    @Override
+    public int minMonths() {
+        return 2;
+    }
+
+    @Override
+    public double forecast(double[] y, int n, int horizon) {
+        // Flat forecast: the level, whatever the horizon
+        double level = y[0];
+        for (int t = 1; t < n; t++) {
+            level = alpha * y[t] + (1 - alpha) * level;
+        }
+        return level;
+    }
+}
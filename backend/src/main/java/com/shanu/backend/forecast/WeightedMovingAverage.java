@@ -0,0 +1,38 @@
+package com.shanu.backend.forecast;
+
+/**
+ * Linearly weighted average of the last window months (weights 1..window, most recent highest);
+ * with fewer months, the plain average.
+ */
+public final class WeightedMovingAverage implements ForecastModel {
+
+    private final int window;
+
+    public WeightedMovingAverage(int window) {
+        this.window = window;
+    }
+
+    @Override
+    public String name() {
+        return "wma";
+    }
+
+    @Override
+    public int minMonths() {
+        return 2;
+    }
+
+    @Override
+    public double forecast(double[] y, int n, int horizon) {
+        // No trend: every horizon gets the same average
+        int w = Math.min(window, n);
+        double sum = 0.0;
+        double weightSum = 0.0;
+        for (int i = 0; i < w; i++) {
+            double weight = n < window ? 1.0 : i + 1.0;
+            sum += y[n - w + i] * weight;
+            weightSum += weight;
+        }
+        return weightSum > 0 ? sum / weightSum : 0.0;
+    }
+}
@@ -30,6 +30,12 @@ public class AiHistory {
     @JsonProperty("citations")
     private List<String> citations;
 
+    // "ai", "fallback" or "rule-based"
+    private String source;
+
+    // AdviceCache key of the prompt an "ai" entry was generated from; equal key = same underlying data
+    private String promptKey;
+
     // Constructors
     public AiHistory() {}
 
@@ -74,4 +80,10 @@ public class AiHistory {
 
     public List<String> getCitations() { return citations; }
     public void setCitations(List<String> citations) { this.citations = citations; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public String getPromptKey() { return promptKey; }
+    public void setPromptKey(String promptKey) { this.promptKey = promptKey; }
 }
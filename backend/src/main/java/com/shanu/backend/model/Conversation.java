@@ -1,8 +1,11 @@
 package com.shanu.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -12,6 +15,9 @@ import java.util.Map;
  */
 @Document(collection = "conversations")
 public class Conversation {
+
+    public static final int PREVIEW_CHARS = 120;
+
     @Id
     private String id;
     
@@ -22,6 +28,15 @@ public class Conversation {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Sidebar summary, kept up to date by every write so listing never needs the messages
+    private Integer messageCount;
+    private String lastMessagePreview;
+
+    // How many of messages are already in the database; the rest are appended on the next write
+    @Transient
+    @JsonIgnore
+    private int storedMessageCount;
+
     // Constructors
     public Conversation() {
         this.createdAt = LocalDateTime.now();
@@ -56,4 +71,67 @@ public class Conversation {
 
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public Integer getMessageCount() { return messageCount; }
+    public void setMessageCount(Integer messageCount) { this.messageCount = messageCount; }
+
+    public String getLastMessagePreview() { return lastMessagePreview; }
+    public void setLastMessagePreview(String lastMessagePreview) { this.lastMessagePreview = lastMessagePreview; }
+
+    /**
+     * Refresh messageCount and lastMessagePreview from the in-memory messages.
+     */
+    public void updateSummary() {
+        this.messageCount = messages == null ? 0 : messages.size();
+        this.lastMessagePreview = messages == null || messages.isEmpty() ? null : preview(messages.get(messages.size() - 1).getText());
+    }
+
+    /**
+     * First PREVIEW_CHARS characters of a message, whitespace collapsed.
+     */
+    public static String preview(String text) {
+        if (text == null) return null;
+        String flat = text.replaceAll("\\s+", " ").trim();
+        return flat.length() <= PREVIEW_CHARS ? flat : flat.substring(0, PREVIEW_CHARS - 1) + "…";
+    }
+
+    /**
+     * Append a message and give it the next sequence number (its 1-based position; messages are never
+     * removed or reordered, so seq N is always messages[N - 1]).
+     */
+    public Message addMessage(Message message) {
+        message.setSeq((long) messages.size() + 1);
+        messages.add(message);
+        return message;
+    }
+
+    /**
+     * Number messages stored before sequence numbers existed.
+     */
+    public void numberMessages() {
+        if (messages == null) return;
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i).getSeq() == null) messages.get(i).setSeq((long) i + 1);
+        }
+    }
+
+    /**
+     * The messages with seq greater than afterSeq, oldest first.
+     */
+    public List<Message> messagesAfter(long afterSeq) {
+        if (messages == null) return List.of();
+        int from = (int) Math.max(0, Math.min(afterSeq, messages.size()));
+        return new ArrayList<>(messages.subList(from, messages.size()));
+    }
+
+    /**
+     * Sequence number of the newest message (0 for an empty conversation).
+     */
+    @JsonIgnore
+    public long getLastSeq() {
+        return messages == null ? 0 : messages.size();
+    }
+
+    public int getStoredMessageCount() { return storedMessageCount; }
+    public void setStoredMessageCount(int storedMessageCount) { this.storedMessageCount = storedMessageCount; }
 }
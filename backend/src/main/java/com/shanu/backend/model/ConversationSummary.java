@@ -0,0 +1,26 @@
+package com.shanu.backend.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sidebar entry for a conversation: read from the summary fields of the conversation
+ * document with a projection, so the messages are never loaded.
+ */
+public record ConversationSummary(
+    String id,
+    String title,
+    LocalDateTime updatedAt,
+    int messageCount,
+    String lastMessagePreview
+) {
+
+    public static ConversationSummary of(Conversation conversation) {
+        return new ConversationSummary(
+            conversation.getId(),
+            conversation.getTitle(),
+            conversation.getUpdatedAt(),
+            conversation.getMessageCount() == null ? 0 : conversation.getMessageCount(),
+            conversation.getLastMessagePreview()
+        );
+    }
+}
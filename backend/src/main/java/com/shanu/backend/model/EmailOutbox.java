@@ -0,0 +1,98 @@
+package com.shanu.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+/**
+ * Outgoing email waiting to be delivered by EmailOutboxDispatcher.
+ * Rows are written during the request (e.g. registration) and drained in the background,
+ * so request latency never depends on the SMTP server.
+ *
+ * Lifecycle: PENDING -> SENDING (claimed, leaseUntil set) -> SENT | FAILED | CANCELLED.
+ * A SENDING row whose lease expired (dispatcher crashed) is picked up again.
+ */
+@Document(collection = "email_outbox")
+public class EmailOutbox {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SENDING = "SENDING";
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    @Id
+    private String id;
+
+    private String dedupeKey; // unique, e.g. "verify-email:<token>" - the same email is never queued twice
+    private String userId;
+    private String verificationToken; // email is only sent while the user still has this token
+    private String to;
+    private String subject;
+    private String body;
+    private String status;
+    private int attempts;
+    private Date nextAttemptAt;
+    private Date leaseUntil;
+    private String lastError;
+    private Date createdAt;
+    private Date sentAt;
+
+    // Constructors
+    public EmailOutbox() {}
+
+    public EmailOutbox(String dedupeKey, String userId, String to, String subject, String body) {
+        this.dedupeKey = dedupeKey;
+        this.userId = userId;
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.status = STATUS_PENDING;
+        this.attempts = 0;
+        this.createdAt = new Date();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getDedupeKey() { return dedupeKey; }
+    public void setDedupeKey(String dedupeKey) { this.dedupeKey = dedupeKey; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public String getVerificationToken() { return verificationToken; }
+    public void setVerificationToken(String verificationToken) { this.verificationToken = verificationToken; }
+
+    public String getTo() { return to; }
+    public void setTo(String to) { this.to = to; }
+
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public Date getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Date nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public Date getLeaseUntil() { return leaseUntil; }
+    public void setLeaseUntil(Date leaseUntil) { this.leaseUntil = leaseUntil; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getSentAt() { return sentAt; }
+    public void setSentAt(Date sentAt) { this.sentAt = sentAt; }
+}
@@ -14,8 +14,11 @@ public class Forecast {
     private LocalDateTime forecastMonth;
     private Map<String, Double> categoryExpensesForecast; // category -> predicted expense
     private Map<String, Double> categoryTrendSlope; // linear trend
+    private Map<String, String> categoryModel; // category -> forecast model used
     private Double totalForecastedExpense;
+    private String dataVersion; // fingerprint of the transactions (and model settings) it was computed from
     private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
 
     // Constructors
     public Forecast() {}
@@ -52,11 +55,20 @@ public class Forecast {
         this.categoryTrendSlope = categoryTrendSlope;
     }
 
+    public Map<String, String> getCategoryModel() { return categoryModel; }
+    public void setCategoryModel(Map<String, String> categoryModel) { this.categoryModel = categoryModel; }
+
     public Double getTotalForecastedExpense() { return totalForecastedExpense; }
     public void setTotalForecastedExpense(Double totalForecastedExpense) {
         this.totalForecastedExpense = totalForecastedExpense;
     }
 
+    public String getDataVersion() { return dataVersion; }
+    public void setDataVersion(String dataVersion) { this.dataVersion = dataVersion; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 }
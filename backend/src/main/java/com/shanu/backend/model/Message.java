@@ -13,6 +13,7 @@ public class Message {
     @Id
     private String id;
     
+    private Long seq; // 1-based position in the conversation, assigned by Conversation.addMessage
     private String role; // "user" or "assistant"
     private String text;
     private List<String> options; // quick options for assistant messages
@@ -41,6 +42,9 @@ public class Message {
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
 
+    public Long getSeq() { return seq; }
+    public void setSeq(Long seq) { this.seq = seq; }
+
     public String getRole() { return role; }
     public void setRole(String role) { this.role = role; }
 
@@ -4,9 +4,12 @@ import com.shanu.backend.model.AiHistory;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AiHistoryRepository extends MongoRepository<AiHistory, String> {
     List<AiHistory> findByUserId(String userId);
     List<AiHistory> findByUserIdOrderByCreatedAtDesc(String userId);
+    Optional<AiHistory> findFirstByUserIdAndScopeAndPromptKeyAndSourceOrderByCreatedAtDesc(
+        String userId, String scope, String promptKey, String source);
 }
@@ -8,7 +8,7 @@ import java.util.List;
  * MongoDB repository for Conversation documents.
  * Queries by userId to support per-user conversation history.
  */
-public interface ConversationRepository extends MongoRepository<Conversation, String> {
+public interface ConversationRepository extends MongoRepository<Conversation, String>, ConversationRepositoryCustom {
     List<Conversation> findByUserIdOrderByUpdatedAtDesc(String userId);
     List<Conversation> findByUserId(String userId);
 }
@@ -0,0 +1,47 @@
+package com.shanu.backend.repository;
+
+import com.shanu.backend.model.Message;
+
+import com.shanu.backend.model.Conversation;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Partial updates of conversation documents, so a chat turn writes only what it changed
+ * instead of re-saving the whole message history.
+ */
+public interface ConversationRepositoryCustom {
+
+    /**
+     * Append messages with $push and $set updatedAt plus the given meta.* keys, in one update.
+     * Cost depends on the size of the new messages, not on the length of the conversation.
+     * Only applies while the stored messageCount is still expectedCount, so two writers can never
+     * hand out the same message sequence numbers.
+     *
+     * @return false if no conversation has this id or it gained messages since it was loaded
+     */
+    boolean appendMessages(String conversationId, int expectedCount, List<Message> messages, Map<String, Object> metaUpdates, LocalDateTime updatedAt);
+
+    /**
+     * A conversation with only userId, messageCount and up to limit messages after afterSeq loaded
+     * ($slice projection, so reconnecting clients don't pull the whole history).
+     */
+    Conversation findMessagesAfter(String conversationId, long afterSeq, int limit);
+
+    /**
+     * One page of a user's conversations, newest first, with only the summary fields loaded
+     * (id, title, updatedAt, messageCount, lastMessagePreview).
+     * Keyset pagination: pass the updatedAt and id of the last row of the previous page, or nulls
+     * for the first page. Served by the (userId, updatedAt desc, _id desc) index.
+     */
+    List<Conversation> findSummaries(String userId, LocalDateTime beforeUpdatedAt, String beforeId, int limit);
+
+    /**
+     * Fill messageCount / lastMessagePreview on conversations written before those fields existed.
+     *
+     * @return number of conversations updated
+     */
+    long backfillSummaries();
+}
@@ -0,0 +1,104 @@
+package com.shanu.backend.repository;
+
+import com.shanu.backend.model.Conversation;
+import com.shanu.backend.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * MongoTemplate implementation of ConversationRepositoryCustom (picked up by Spring Data via the Impl suffix).
+ */
+public class ConversationRepositoryCustomImpl implements ConversationRepositoryCustom {
+
+    private static final int BACKFILL_BATCH = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean appendMessages(String conversationId, int expectedCount, List<Message> messages, Map<String, Object> metaUpdates, LocalDateTime updatedAt) {
+        Update update = new Update().set("updatedAt", updatedAt);
+        if (!messages.isEmpty()) {
+            update.push("messages").each(messages.toArray());
+            update.inc("messageCount", messages.size());
+            update.set("lastMessagePreview", Conversation.preview(messages.get(messages.size() - 1).getText()));
+        }
+        if (metaUpdates != null) {
+            metaUpdates.forEach((key, value) -> update.set("meta." + key, value));
+        }
+        Query query = Query.query(Criteria.where("_id").is(conversationId).and("messageCount").is(expectedCount));
+        return mongoTemplate.updateFirst(query, update, Conversation.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public Conversation findMessagesAfter(String conversationId, long afterSeq, int limit) {
+        // seq N is messages[N - 1], so the messages after afterSeq start at array offset afterSeq
+        Query query = Query.query(Criteria.where("_id").is(conversationId));
+        query.fields().include("userId", "messageCount").slice("messages", (int) Math.min(afterSeq, Integer.MAX_VALUE), limit);
+        return mongoTemplate.findOne(query, Conversation.class);
+    }
+
+    @Override
+    public List<Conversation> findSummaries(String userId, LocalDateTime beforeUpdatedAt, String beforeId, int limit) {
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        if (beforeUpdatedAt != null && beforeId != null) {
+            query.addCriteria(new Criteria().orOperator(
+                Criteria.where("updatedAt").lt(beforeUpdatedAt),
+                Criteria.where("updatedAt").is(beforeUpdatedAt).and("id").lt(beforeId)));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "updatedAt", "id")).limit(limit);
+        query.fields().include("id", "title", "updatedAt", "messageCount", "lastMessagePreview");
+        return mongoTemplate.find(query, Conversation.class);
+    }
+
+    @Override
+    public long backfillSummaries() {
+        // Only the last message is read, for the preview (built by Conversation.preview, exactly as on
+        // append); messageCount is counted server-side by a pipeline update
+        Criteria missing = Criteria.where("messageCount").exists(false);
+        Query query = Query.query(missing);
+        query.fields().include("id").slice("messages", -1);
+
+        long modified = 0;
+        BulkOperations bulk = null;
+        int batched = 0;
+        try (Stream<Conversation> conversations = mongoTemplate.stream(query, Conversation.class)) {
+            for (Conversation conversation : (Iterable<Conversation>) conversations::iterator) {
+                List<Message> last = conversation.getMessages();
+                AggregationUpdate summary = AggregationUpdate.update()
+                    .set("messageCount").toValue(ArrayOperators.Size.lengthOfArray(ConditionalOperators.ifNull("messages").then(List.of())));
+                if (last != null && !last.isEmpty() && last.get(0).getText() != null) {
+                    // $literal: a preview starting with '$' must not be read as a field path
+                    summary.set("lastMessagePreview").toValue(LiteralOperators.valueOf(Conversation.preview(last.get(0).getText())).asLiteral());
+                }
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+                }
+                bulk.updateOne(Query.query(Criteria.where("_id").is(conversation.getId()).andOperator(missing)), summary);
+                if (++batched == BACKFILL_BATCH) {
+                    modified += bulk.execute().getModifiedCount();
+                    bulk = null;
+                    batched = 0;
+                }
+            }
+        }
+        if (bulk != null) {
+            modified += bulk.execute().getModifiedCount();
+        }
+        return modified;
+    }
+}
@@ -0,0 +1,13 @@
+package com.shanu.backend.repository;
+
+import com.shanu.backend.model.EmailOutbox;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface EmailOutboxRepository extends MongoRepository<EmailOutbox, String> {
+    Optional<EmailOutbox> findByDedupeKey(String dedupeKey);
+    long countByStatus(String status);
+}
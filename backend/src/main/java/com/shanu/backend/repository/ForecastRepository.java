@@ -7,7 +7,7 @@ import java.util.List;
 import java.time.LocalDateTime;
 
 @Repository
-public interface ForecastRepository extends MongoRepository<Forecast, String> {
+public interface ForecastRepository extends MongoRepository<Forecast, String>, ForecastRepositoryCustom {
     List<Forecast> findByUserIdOrderByForecastMonthDesc(String userId);
     Forecast findByUserIdAndForecastMonth(String userId, LocalDateTime forecastMonth);
 }
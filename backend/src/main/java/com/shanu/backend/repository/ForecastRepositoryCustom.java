@@ -0,0 +1,23 @@
+package com.shanu.backend.repository;
+
+import com.shanu.backend.model.Forecast;
+
+/**
+ * Keeps one forecast document per (userId, forecastMonth) instead of inserting a new one per request.
+ */
+public interface ForecastRepositoryCustom {
+
+    /**
+     * Insert or replace the forecast for its (userId, forecastMonth); createdAt is kept from the
+     * first insert.
+     */
+    void upsert(Forecast forecast);
+
+    /**
+     * Delete all but the newest forecast of every (userId, forecastMonth), left over from when
+     * every request inserted one. Needed before the unique index can be built.
+     *
+     * @return number of documents deleted
+     */
+    long removeDuplicates();
+}
@@ -0,0 +1,63 @@
+package com.shanu.backend.repository;
+
+import com.shanu.backend.model.Forecast;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MongoTemplate implementation of ForecastRepositoryCustom (picked up by Spring Data via the Impl suffix).
+ */
+public class ForecastRepositoryCustomImpl implements ForecastRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void upsert(Forecast forecast) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("userId").is(forecast.getUserId())
+            .and("forecastMonth").is(forecast.getForecastMonth()));
+        Update update = new Update()
+            .set("categoryExpensesForecast", forecast.getCategoryExpensesForecast())
+            .set("categoryTrendSlope", forecast.getCategoryTrendSlope())
+            .set("categoryModel", forecast.getCategoryModel())
+            .set("totalForecastedExpense", forecast.getTotalForecastedExpense())
+            .set("dataVersion", forecast.getDataVersion())
+            .set("updatedAt", now)
+            .setOnInsert("createdAt", forecast.getCreatedAt() != null ? forecast.getCreatedAt() : now);
+        mongoTemplate.upsert(query, update, Forecast.class);
+        forecast.setUpdatedAt(now);
+    }
+
+    @Override
+    public long removeDuplicates() {
+        Aggregation duplicates = Aggregation.newAggregation(
+            Aggregation.sort(Sort.Direction.DESC, "createdAt"),
+            Aggregation.group("userId", "forecastMonth").push("_id").as("ids").count().as("count"),
+            Aggregation.match(Criteria.where("count").gt(1)))
+            .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        List<Object> stale = new ArrayList<>();
+        for (Document group : mongoTemplate.aggregate(duplicates, Forecast.class, Document.class)) {
+            List<?> ids = group.getList("ids", Object.class);
+            stale.addAll(ids.subList(1, ids.size()));
+        }
+        long deleted = 0;
+        for (int i = 0; i < stale.size(); i += 1000) {
+            List<Object> batch = stale.subList(i, Math.min(i + 1000, stale.size()));
+            deleted += mongoTemplate.remove(Query.query(Criteria.where("_id").in(batch)), Forecast.class).getDeletedCount();
+        }
+        return deleted;
+    }
+}
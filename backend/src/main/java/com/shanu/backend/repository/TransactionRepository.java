@@ -8,4 +8,5 @@ import java.util.Date;
 public interface TransactionRepository extends MongoRepository<Transaction, String> {
     List<Transaction> findByUserId(String userId);
     List<Transaction> findByUserIdAndDateGreaterThan(String userId, Date date);
+    List<Transaction> findByUserIdAndDateGreaterThanEqual(String userId, Date date);
 }
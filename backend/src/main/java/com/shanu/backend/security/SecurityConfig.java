@@ -31,10 +31,16 @@ public class SecurityConfig {
             .httpBasic(AbstractHttpConfigurer::disable)
             .formLogin(AbstractHttpConfigurer::disable)
             .authorizeHttpRequests(auth -> auth
+                // SSE responses complete on an async dispatch; the original request was already authorized
+                .dispatcherTypeMatchers(jakarta.servlet.DispatcherType.ASYNC, jakarta.servlet.DispatcherType.ERROR).permitAll()
                 .requestMatchers(org.springframework.http.HttpMethod.OPTIONS, "/**").permitAll()
                 // allow public read access to forum posts so the community feed can be viewed without auth
                 .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/forum/posts").permitAll()
                 .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/verify-email").permitAll()
+                // health checks and Prometheus scraping (aggregate metrics only, no per-user data)
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                // browsers can't set headers on a WebSocket upgrade; ChatHandshakeInterceptor checks the token instead
+                .requestMatchers("/ws/chat").permitAll()
                 .anyRequest().authenticated()
             )
             .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
@@ -0,0 +1,132 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.event.TransactionChangedEvent;
+import com.shanu.backend.util.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of parsed AI advice, keyed by a hash of (model, normalized prompt).
+ *
+ * The advice prompt is built from the user's category summary, so an unchanged summary
+ * produces the same key and the Gemini call is skipped. Entries are scoped per user,
+ * expire after ai.cache.ttl-ms, are evicted LRU beyond ai.cache.max-entries, and are
+ * dropped as soon as the user's transactions change.
+ *
+ * Metrics: ai.advice.cache (counter, tag result=hit|miss), ai.advice.cache.size (gauge).
+ */
+@Component
+public class AdviceCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AdviceCache.class);
+
+    @Value("${ai.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.cache.ttl-ms:3600000}")
+    private long ttlMs;
+
+    @Value("${ai.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter hits;
+    private Counter misses;
+
+    private static class Entry {
+        final String userId;
+        final Map<String, Object> value;
+        final long expiresAt;
+
+        Entry(String userId, Map<String, Object> value, long expiresAt) {
+            this.userId = userId;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // Access-ordered so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    @PostConstruct
+    void init() {
+        hits = meterRegistry.counter("ai.advice.cache", "result", "hit");
+        misses = meterRegistry.counter("ai.advice.cache", "result", "miss");
+        meterRegistry.gauge("ai.advice.cache.size", this, AdviceCache::size);
+    }
+
+    /**
+     * Content-addressed key for a prompt sent to a model.
+     */
+    public String key(String model, String prompt) {
+        return Hashing.sha256Hex(model, Hashing.normalizePrompt(prompt));
+    }
+
+    public Map<String, Object> get(String userId, String key) {
+        if (!enabled) return null;
+        synchronized (entries) {
+            Entry entry = entries.get(userId + ":" + key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(userId + ":" + key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String userId, String key, Map<String, Object> value) {
+        if (!enabled || value == null) return;
+        synchronized (entries) {
+            entries.put(userId + ":" + key, new Entry(userId, value, System.currentTimeMillis() + ttlMs));
+        }
+    }
+
+    public void invalidate(String userId) {
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().userId.equals(userId)) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.debug("Invalidated {} cached advice entries for user {}", removed, userId);
+        }
+    }
+
+    @EventListener
+    public void onTransactionsChanged(TransactionChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
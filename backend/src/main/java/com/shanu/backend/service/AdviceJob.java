@@ -0,0 +1,81 @@
+package com.shanu.backend.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An advice request running in the background (see AdviceJobService).
+ * Held in memory only; the resulting advice itself is persisted in AiHistory as usual.
+ */
+public class AdviceJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String userId;
+    private final String scope;
+    private final Date createdAt = new Date();
+    private final long enqueuedNanos = System.nanoTime();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Date startedAt;
+    private volatile Date finishedAt;
+    private volatile Map<String, Object> result;
+    private volatile String error;
+    private final CompletableFuture<AdviceJob> completion = new CompletableFuture<>();
+
+    public AdviceJob(String userId, String scope) {
+        this.userId = userId;
+        this.scope = scope;
+    }
+
+    public String getId() { return id; }
+
+    @JsonIgnore
+    public String getUserId() { return userId; }
+
+    public String getScope() { return scope; }
+    public Date getCreatedAt() { return createdAt; }
+    public Status getStatus() { return status; }
+    public Date getStartedAt() { return startedAt; }
+    public Date getFinishedAt() { return finishedAt; }
+    public Map<String, Object> getResult() { return result; }
+    public String getError() { return error; }
+
+    @JsonIgnore
+    public long getEnqueuedNanos() { return enqueuedNanos; }
+
+    /**
+     * Completes (never exceptionally) with this job once it is DONE or FAILED.
+     */
+    @JsonIgnore
+    public CompletableFuture<AdviceJob> getCompletion() { return completion; }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    void markRunning() {
+        startedAt = new Date();
+        status = Status.RUNNING;
+    }
+
+    void markDone(Map<String, Object> result) {
+        this.result = result;
+        finishedAt = new Date();
+        status = Status.DONE;
+        completion.complete(this);
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        finishedAt = new Date();
+        status = Status.FAILED;
+        completion.complete(this);
+    }
+}
@@ -0,0 +1,145 @@
+package com.shanu.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs advice requests off the servlet thread.
+ *
+ * POST /api/ai/advice?async=true enqueues a job and returns its id straight away; a fixed set
+ * of virtual-thread workers drains the queue through AdviceService (so single-flight, caching,
+ * the circuit breaker and history recording all still apply). Clients poll /api/ai/jobs/{id}
+ * or subscribe to /api/ai/jobs/{id}/events. Finished jobs are kept for ai.jobs.retention-ms.
+ *
+ * Metrics: ai.jobs.queue.depth and ai.jobs.running (gauges), ai.jobs.wait (timer, enqueue to start),
+ * ai.jobs.latency (timer, enqueue to finish, tag outcome=done|failed).
+ */
+@Service
+public class AdviceJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdviceJobService.class);
+
+    @Value("${ai.jobs.workers:8}")
+    private int workerCount;
+
+    @Value("${ai.jobs.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${ai.jobs.retention-ms:600000}")
+    private long retentionMs;
+
+    @Autowired
+    private AdviceService adviceService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<AdviceJob> queue;
+    private final Map<String, AdviceJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean stopping;
+
+    @PostConstruct
+    void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        meterRegistry.gauge("ai.jobs.queue.depth", queue, BlockingQueue::size);
+        meterRegistry.gauge("ai.jobs.running", running);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("advice-job-" + i).start(this::workLoop));
+        }
+        log.info("Advice job workers started: workers={}, queueCapacity={}", workerCount, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        stopping = true;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Queue an advice job for the user.
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public AdviceJob submit(String userId, String scope) {
+        AdviceJob job = new AdviceJob(userId, scope);
+        jobs.put(job.getId(), job);
+        if (!queue.offer(job)) {
+            jobs.remove(job.getId());
+            meterRegistry.counter("ai.jobs.rejected").increment();
+            throw new RejectedExecutionException("Advice queue is full, try again shortly");
+        }
+        return job;
+    }
+
+    /**
+     * Look up a job; only its owner can see it.
+     */
+    public Optional<AdviceJob> find(String jobId, String userId) {
+        AdviceJob job = jobs.get(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(job);
+    }
+
+    private void workLoop() {
+        while (!stopping) {
+            AdviceJob job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            run(job);
+        }
+    }
+
+    private void run(AdviceJob job) {
+        long now = System.nanoTime();
+        Timer.builder("ai.jobs.wait").register(meterRegistry)
+            .record(now - job.getEnqueuedNanos(), TimeUnit.NANOSECONDS);
+        job.markRunning();
+        running.incrementAndGet();
+        String outcome = "done";
+        try {
+            job.markDone(adviceService.generateAdvice(job.getUserId(), job.getScope()));
+        } catch (Exception e) {
+            outcome = "failed";
+            log.warn("Advice job {} failed: {}", job.getId(), e.getMessage());
+            job.markFailed(e.getMessage());
+        } finally {
+            running.decrementAndGet();
+            Timer.builder("ai.jobs.latency").tag("outcome", outcome).register(meterRegistry)
+                .record(System.nanoTime() - job.getEnqueuedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Forget finished jobs older than the retention window.
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.purge-interval-ms:60000}")
+    public void purgeFinished() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().getTime() < cutoff);
+    }
+}
@@ -0,0 +1,212 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.model.AiHistory;
+import com.shanu.backend.model.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Off-peak precompute of AI advice (ai.precompute.cron, default 03:00 daily).
+ *
+ * Users who added or edited transactions, or asked for advice, in the last ai.precompute.active-days
+ * get their ai.precompute.scope advice refreshed through AdviceService.precompute, which skips users
+ * whose data hasn't changed since their stored advice. Daytime /api/ai/advice requests then find
+ * that advice and answer from the database.
+ *
+ * Gemini quota is protected by:
+ * - at most ai.precompute.concurrency users in progress at once
+ * - at most ai.precompute.max-calls-per-minute Gemini calls, evenly spaced
+ * - stopping the run when the circuit breaker is open, after ai.precompute.max-consecutive-failures
+ *   failed calls in a row (quota exhausted, outage), or after ai.precompute.max-run-ms
+ *
+ * Metrics: ai.precompute.users (counter, tag result), ai.precompute.run (timer).
+ */
+@Component
+public class AdvicePrecomputeJob {
+
+    @Value("${ai.precompute.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.precompute.scope:monthly}")
+    private String scope;
+
+    @Value("${ai.precompute.active-days:7}")
+    private int activeDays;
+
+    @Value("${ai.precompute.max-users:1000}")
+    private int maxUsers;
+
+    @Value("${ai.precompute.concurrency:2}")
+    private int concurrency;
+
+    @Value("${ai.precompute.max-calls-per-minute:20}")
+    private int maxCallsPerMinute;
+
+    @Value("${ai.precompute.max-consecutive-failures:5}")
+    private int maxConsecutiveFailures;
+
+    @Value("${ai.precompute.max-run-ms:10800000}")
+    private long maxRunMs;
+
+    @Autowired
+    private AdviceService adviceService;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private static final Logger log = LoggerFactory.getLogger(AdvicePrecomputeJob.class);
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private long nextCallAt; // guarded by this
+
+    /**
+     * Thrown from the pacing hook to end the run early.
+     */
+    private static class StopRun extends RuntimeException {
+        StopRun(String reason) {
+            super(reason);
+        }
+    }
+
+    @Scheduled(cron = "${ai.precompute.cron:0 0 3 * * *}")
+    public void run() {
+        if (!enabled || !aiService.isAiEnabled()) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Advice precompute still running from the previous schedule; skipping");
+            return;
+        }
+        try {
+            Timer.builder("ai.precompute.run").register(meterRegistry).record(this::precomputeAll);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void precomputeAll() {
+        List<String> users = activeUsers();
+        long deadline = System.currentTimeMillis() + maxRunMs;
+        AtomicInteger consecutiveFailures = new AtomicInteger();
+        AtomicInteger computed = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        Semaphore slots = new Semaphore(Math.max(1, concurrency));
+        log.info("Advice precompute: {} active users", users.size());
+
+        Runnable beforeAiCall = () -> {
+            if (stop.get()) throw new StopRun("stopped");
+            if (System.currentTimeMillis() > deadline) throw new StopRun("run exceeded " + maxRunMs + " ms");
+            if (!aiService.isAiAvailable()) throw new StopRun("AI unavailable (circuit open)");
+            if (consecutiveFailures.get() >= maxConsecutiveFailures) {
+                throw new StopRun(consecutiveFailures.get() + " consecutive failures");
+            }
+            awaitCallSlot();
+        };
+
+        int started = 0;
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("advice-precompute-", 0).factory())) {
+            for (String userId : users) {
+                if (stop.get() || System.currentTimeMillis() > deadline) break;
+                slots.acquire();
+                started++;
+                executor.execute(() -> {
+                    try {
+                        AdviceService.PrecomputeResult result = adviceService.precompute(userId, scope, beforeAiCall);
+                        if (result == AdviceService.PrecomputeResult.FAILED) {
+                            consecutiveFailures.incrementAndGet();
+                        } else if (result == AdviceService.PrecomputeResult.COMPUTED) {
+                            consecutiveFailures.set(0);
+                            computed.incrementAndGet();
+                        }
+                        count(result.name().toLowerCase());
+                    } catch (StopRun e) {
+                        if (stop.compareAndSet(false, true)) {
+                            log.warn("Advice precompute stopping early: {}", e.getMessage());
+                        }
+                        count("skipped");
+                    } catch (Exception e) {
+                        consecutiveFailures.incrementAndGet();
+                        log.warn("Advice precompute failed for user {}: {}", userId, e.getMessage());
+                        count("error");
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Advice precompute finished: {} users visited, {} advice generated", started, computed.get());
+    }
+
+    /**
+     * Users with transaction or advice activity in the active window (transaction activity first).
+     */
+    private List<String> activeUsers() {
+        Instant since = Instant.now().minus(Duration.ofDays(activeDays));
+        Set<String> users = new LinkedHashSet<>();
+        Query changedTransactions = new Query(new Criteria().orOperator(
+            Criteria.where("createdAt").gte(Date.from(since)),
+            Criteria.where("updatedAt").gte(Date.from(since))));
+        users.addAll(mongoTemplate.findDistinct(changedTransactions, "userId", Transaction.class, String.class));
+        Query recentAdvice = new Query(Criteria.where("createdAt").gte(LocalDateTime.now().minusDays(activeDays)));
+        users.addAll(mongoTemplate.findDistinct(recentAdvice, "userId", AiHistory.class, String.class));
+        users.remove(null);
+        List<String> list = new ArrayList<>(users);
+        return list.size() > maxUsers ? list.subList(0, maxUsers) : list;
+    }
+
+    /**
+     * Block until the next evenly spaced call slot (max-calls-per-minute across all workers).
+     */
+    private void awaitCallSlot() {
+        long waitMs;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long slot = Math.max(now, nextCallAt);
+            nextCallAt = slot + 60_000L / Math.max(1, maxCallsPerMinute);
+            waitMs = slot - now;
+        }
+        if (waitMs > 0) {
+            try {
+                Thread.sleep(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StopRun("interrupted");
+            }
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("ai.precompute.users", "result", result).increment();
+    }
+}
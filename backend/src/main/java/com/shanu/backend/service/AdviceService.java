@@ -0,0 +1,279 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.client.LlmMetrics;
+import com.shanu.backend.model.AiHistory;
+import com.shanu.backend.model.Transaction;
+import com.shanu.backend.repository.AiHistoryRepository;
+import com.shanu.backend.repository.TransactionRepository;
+import com.shanu.backend.util.FanOut;
+import com.shanu.backend.util.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Builds the advice shown on the AI page: Gemini advice when available, TipService's
+ * rule-based tips otherwise, and records every answer in AiHistory.
+ *
+ * Double-clicks, several open tabs and frontend retries often send the same request
+ * within a second. Requests are coalesced on (userId, scope, prompt hash): while one is
+ * in flight, identical ones wait for it and get the same answer and the same history row.
+ *
+ * AI answers are stored with the key of the prompt they came from. While the user's data
+ * (and so the prompt) is unchanged, the newest such entry younger than ai.advice.current-max-age-ms
+ * is the "current advice" and is served without calling Gemini; AdvicePrecomputeJob fills it
+ * in overnight so daytime requests are mostly reads.
+ */
+@Service
+public class AdviceService {
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private TipService tipService;
+
+    @Autowired
+    private AiHistoryRepository aiHistoryRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private LlmMetrics llmMetrics;
+
+    @Value("${ai.advice.deadline-ms:30000}")
+    private long adviceDeadlineMs;
+
+    @Value("${ai.advice.current-max-age-ms:129600000}")
+    private long currentMaxAgeMs;
+
+    public enum PrecomputeResult { COMPUTED, FRESH, NO_DATA, FAILED }
+
+    private static final Logger log = LoggerFactory.getLogger(AdviceService.class);
+    private final SingleFlight<String, Map<String, Object>> flights = new SingleFlight<>();
+
+    /**
+     * Generate advice for the user's transactions in the given scope
+     * ("all" = full history, anything else = current month).
+     */
+    public Map<String, Object> generateAdvice(String userId, String scope) throws Exception {
+        List<Transaction> transactions = loadTransactions(userId, scope);
+
+        if (transactions.isEmpty()) {
+            return Map.of(
+                "summary", "No transactions found. Start tracking expenses to get personalized advice.",
+                "actions", List.of(),
+                "estimatedSavingsNextMonth", 0,
+                "confidenceScore", 0,
+                "citations", List.of()
+            );
+        }
+
+        // The prompt is derived only from the transaction summary and scope, so its hash
+        // identifies duplicate requests before the AI call and history write
+        String prompt = aiService.buildAdvicePrompt(transactions, scope);
+        String promptKey = aiService.adviceKey(prompt);
+        String key = userId + ":" + scope + ":" + promptKey;
+        return flights.run(key, () -> produceAdvice(userId, scope, transactions, prompt, promptKey));
+    }
+
+    /**
+     * Make sure the user has current AI advice for this scope, calling Gemini only if their data
+     * changed since the stored one. Unlike generateAdvice, never stores a rule-based fallback.
+     * beforeAiCall runs right before the Gemini call (pacing); an exception from it aborts.
+     */
+    public PrecomputeResult precompute(String userId, String scope, Runnable beforeAiCall) {
+        List<Transaction> transactions = loadTransactions(userId, scope);
+        if (transactions.isEmpty()) {
+            return PrecomputeResult.NO_DATA;
+        }
+        String prompt = aiService.buildAdvicePrompt(transactions, scope);
+        String promptKey = aiService.adviceKey(prompt);
+        if (currentAdvice(userId, scope, promptKey) != null) {
+            return PrecomputeResult.FRESH;
+        }
+        beforeAiCall.run();
+        Map<String, Object> aiResponse = aiService.generatePersonalizedAdvice(userId, prompt);
+        if (aiResponse.containsKey("error") || aiResponse.containsKey("parse_error")) {
+            return PrecomputeResult.FAILED;
+        }
+        saveAiAdvice(userId, scope, promptKey, aiResponse);
+        return PrecomputeResult.COMPUTED;
+    }
+
+    /**
+     * "monthly" (or anything but "all") = current month only, "all" = full history.
+     */
+    private List<Transaction> loadTransactions(String userId, String scope) {
+        LocalDate startDate;
+        if ("all".equals(scope)) {
+            // Fetch all transactions (from 100 years ago to get all)
+            startDate = LocalDate.now().minusYears(100);
+        } else {
+            // "monthly" scope - get current month only
+            startDate = LocalDate.now().withDayOfMonth(1);
+        }
+
+        Date start = Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        return transactionRepository.findByUserIdAndDateGreaterThan(userId, start);
+    }
+
+    /**
+     * Newest AI advice generated from exactly this prompt, if it isn't too old.
+     */
+    private AiHistory currentAdvice(String userId, String scope, String promptKey) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(currentMaxAgeMs));
+        return aiHistoryRepository.findFirstByUserIdAndScopeAndPromptKeyAndSourceOrderByCreatedAtDesc(userId, scope, promptKey, "ai")
+            .filter(h -> h.getCreatedAt() != null && h.getCreatedAt().isAfter(cutoff))
+            .orElse(null);
+    }
+
+    private Map<String, Object> produceAdvice(String userId, String scope, List<Transaction> transactions,
+                                              String prompt, String promptKey) throws Exception {
+        // If AI feature is disabled or not configured, return rule-based tips as fallback
+        if (!aiService.isAiEnabled()) {
+            return ruleBasedAdvice(userId, scope, ruleBasedTips(transactions), null, 60, "rule-based");
+        }
+
+        // Same data as the stored advice (typically precomputed overnight): a read, no Gemini call
+        AiHistory current = currentAdvice(userId, scope, promptKey);
+        if (current != null) {
+            return toResponse(current);
+        }
+
+        // Circuit breaker is open (Gemini outage): skip the call entirely
+        if (!aiService.isAiAvailable()) {
+            llmMetrics.recordFallback("advice", "circuit_open");
+            return ruleBasedAdvice(userId, scope, ruleBasedTips(transactions),
+                "AI unavailable — showing rule-based suggestions.", 50, "fallback");
+        }
+
+        // Compute the fallback tips alongside the Gemini call, so a failed call costs no extra latency
+        Map<String, Object> aiResponse = null;
+        List<String> tips;
+        try (FanOut fanOut = FanOut.withDeadline(Duration.ofMillis(adviceDeadlineMs))) {
+            FanOut.Task<List<String>> tipsTask = fanOut.fork(() -> ruleBasedTips(transactions));
+            FanOut.Task<Map<String, Object>> aiTask = fanOut.fork(() -> aiService.generatePersonalizedAdvice(userId, prompt));
+            fanOut.join();
+            tips = tipsTask.get();
+            aiResponse = aiTask.get();
+        } catch (TimeoutException e) {
+            log.warn("AI advice for user {} exceeded {} ms; using rule-based tips", userId, adviceDeadlineMs);
+            llmMetrics.recordFallback("advice", "deadline");
+            tips = ruleBasedTips(transactions);
+        }
+
+        // If AI returned error, fall back to rule-based tips
+        if (aiResponse == null || aiResponse.containsKey("error")) {
+            if (aiResponse != null) llmMetrics.recordFallback("advice", "ai_error");
+            return ruleBasedAdvice(userId, scope, tips,
+                "AI unavailable — showing rule-based suggestions.", 50, "fallback");
+        }
+
+        return saveAiAdvice(userId, scope, promptKey, aiResponse);
+    }
+
+    /**
+     * Record a successful AI answer as the user's current advice for this prompt.
+     */
+    private Map<String, Object> saveAiAdvice(String userId, String scope, String promptKey, Map<String, Object> aiResponse) {
+        // Extract structured response from AI
+        String summary = (String) aiResponse.getOrDefault("summary", "Unable to generate summary");
+        Object actionsObj = aiResponse.getOrDefault("actions", List.of());
+        List<String> actions = new ArrayList<>();
+        if (actionsObj instanceof List) {
+            for (Object o : (List<?>) actionsObj) if (o != null) actions.add(o.toString());
+        }
+
+        Double estimatedSavings = 0.0;
+        Object estObj = aiResponse.getOrDefault("estimatedSavingsNextMonth", 0);
+        if (estObj instanceof Number) estimatedSavings = ((Number) estObj).doubleValue();
+
+        Integer confidenceScore = 50;
+        Object confObj = aiResponse.getOrDefault("confidenceScore", 50);
+        if (confObj instanceof Number) confidenceScore = ((Number) confObj).intValue();
+
+        Object citationsObj = aiResponse.getOrDefault("citations", List.of());
+        List<String> citations = new ArrayList<>();
+        if (citationsObj instanceof List) {
+            for (Object o : (List<?>) citationsObj) if (o != null) citations.add(o.toString());
+        }
+
+        // Save to history
+        AiHistory history = new AiHistory(userId, scope, summary, actions, estimatedSavings, confidenceScore, citations);
+        history.setSource("ai");
+        // An unparseable answer is shown once but never becomes the current advice
+        if (!aiResponse.containsKey("parse_error")) {
+            history.setPromptKey(promptKey);
+        }
+        aiHistoryRepository.save(history);
+
+        return toResponse(history);
+    }
+
+    private static Map<String, Object> toResponse(AiHistory history) {
+        return Map.of(
+            "summary", history.getSummary(),
+            "actions", history.getActions(),
+            "estimatedSavingsNextMonth", history.getEstimatedSavingsNextMonth(),
+            "confidenceScore", history.getConfidenceScore(),
+            "citations", history.getCitations(),
+            "source", "ai"
+        );
+    }
+
+    /**
+     * TipService's rule-based tips for these transactions; never throws, since a
+     * failure here must not cancel the AI call running next to it.
+     */
+    private List<String> ruleBasedTips(List<Transaction> transactions) {
+        List<String> tips = new ArrayList<>();
+        try {
+            Map<String, Object> tipResult = tipService.recommendTips(transactions);
+            Object tipsObj = tipResult.getOrDefault("tips", List.of());
+            if (tipsObj instanceof List) {
+                for (Object o : (List<?>) tipsObj) if (o != null) tips.add(o.toString());
+            }
+        } catch (Exception e) {
+            log.warn("Rule-based tips failed: {}", e.getMessage());
+        }
+        return tips;
+    }
+
+    /**
+     * Build and record advice from rule-based tips.
+     * summary == null means "summarize from the first three tips".
+     */
+    private Map<String, Object> ruleBasedAdvice(String userId, String scope, List<String> tips,
+                                                String summary, Integer confidenceScore, String source) {
+        if (summary == null) {
+            summary = tips.isEmpty() ? "No personalized tips available" : String.join("; ", tips.subList(0, Math.min(3, tips.size())));
+        }
+        List<String> actions = tips;
+        Double estimatedSavings = 0.0;
+        List<String> citations = List.of(source);
+
+        AiHistory history = new AiHistory(userId, scope, summary, actions, estimatedSavings, confidenceScore, citations);
+        history.setSource(source);
+        aiHistoryRepository.save(history);
+
+        return Map.of(
+            "summary", summary,
+            "actions", actions,
+            "estimatedSavingsNextMonth", estimatedSavings,
+            "confidenceScore", confidenceScore,
+            "citations", citations,
+            "source", source
+        );
+    }
+}
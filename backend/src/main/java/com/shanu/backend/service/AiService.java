@@ -4,11 +4,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.shanu.backend.model.Transaction;
+import com.shanu.backend.client.LlmCircuitBreaker;
+import com.shanu.backend.client.GeminiClient;
+import com.shanu.backend.util.JsonObjectExtractor;
+import com.shanu.backend.util.SingleFlight;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,43 +23,76 @@ public class AiService {
     @Value("${ai.enabled:false}")
     private Boolean aiEnabled;
     
-    @Value("${ai.model:gemini-pro}")
-    private String aiModel;
-    
-    @Value("${ai.key:}")
-    private String apiKey;
-    
-    @Value("${ai.baseUrl:https://generativelanguage.googleapis.com/v1beta/models}")
-    private String baseUrl;
+    // Model, endpoint and credentials come from the active LlmProvider (gemini.* with ai.* fallbacks)
+    @Autowired
+    private GeminiClient geminiClient;
+
+    @Autowired
+    private AdviceCache adviceCache;
+
+    @Autowired
+    private LlmCircuitBreaker circuitBreaker;
 
-    private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SingleFlight<String, Map<String, Object>> adviceFlights = new SingleFlight<>();
 
     /**
      * Generate personalized financial advice based on user transactions
      */
     public Map<String, Object> generatePersonalizedAdvice(String userId, List<Transaction> transactions, String scope) {
-        if (!aiEnabled || apiKey == null || apiKey.isBlank()) {
-            log.warn("AI not enabled or API key not configured. aiEnabled={}, apiKey exists={}", aiEnabled, apiKey != null && !apiKey.isBlank());
+        return generatePersonalizedAdvice(userId, buildAdvicePrompt(transactions, scope));
+    }
+
+    /**
+     * Generate advice for an already-built advice prompt (see buildAdvicePrompt).
+     * Concurrent identical requests from the same user share one Gemini call.
+     */
+    public Map<String, Object> generatePersonalizedAdvice(String userId, String prompt) {
+        if (!isAiEnabled()) {
+            log.warn("AI not enabled or LLM provider not configured. aiEnabled={}", aiEnabled);
             return Map.of("error", "AI not enabled or API key not configured");
         }
 
-        log.info("Generating AI advice for user {} with {} transactions", userId, transactions.size());
-
-        // Summarize transactions without PII
-        Map<String, Object> summary = summarizeTransactions(transactions);
-        log.info("Transaction summary: {}", summary);
-        
-        String prompt = buildAdvicePrompt(summary, scope);
+        // Same summary -> byte-identical prompt -> reuse the previous answer
+        String cacheKey = adviceKey(prompt);
+        Map<String, Object> cached = adviceCache.get(userId, cacheKey);
+        if (cached != null) {
+            log.info("Serving cached AI advice for user {}", userId);
+            return cached;
+        }
         
         try {
-            return callGeminiApi(prompt);
+            return adviceFlights.run(userId + ":" + cacheKey, () -> {
+                log.info("Generating AI advice for user {}", userId);
+                Map<String, Object> advice = callGeminiApi(userId, prompt);
+                // Don't cache the placeholder produced when the model's output couldn't be parsed
+                if (!advice.containsKey("parse_error")) {
+                    adviceCache.put(userId, cacheKey, advice);
+                }
+                return advice;
+            });
         } catch (Exception e) {
             log.error("Failed to call Gemini API", e);
             return Map.of("error", "Failed to call Gemini API: " + e.getMessage());
         }
     }
 
+    /**
+     * Build the (PII-free) advice prompt for these transactions.
+     */
+    public String buildAdvicePrompt(List<Transaction> transactions, String scope) {
+        Map<String, Object> summary = summarizeTransactions(transactions);
+        log.debug("Transaction summary: {}", summary);
+        return buildAdvicePrompt(summary, scope);
+    }
+
+    /**
+     * Content hash identifying an advice prompt for the configured model.
+     */
+    public String adviceKey(String prompt) {
+        return adviceCache.key(geminiClient.model(), prompt);
+    }
+
     /**
      * Analyze spending patterns from transaction history
         Double totalExpense = 0.0;
@@ -87,7 +122,7 @@ public class AiService {
      * Predict potential savings based on monthly totals
      */
     public Map<String, Object> predictSavings(String userId, Map<String, Double> monthlyTotals) {
-        if (!aiEnabled || apiKey == null || apiKey.isBlank()) {
+        if (!isAiEnabled()) {
             return Map.of("error", "AI not enabled");
         }
 
@@ -98,40 +133,19 @@ public class AiService {
             "Respond ONLY with valid JSON.";
 
         try {
-            return callGeminiApi(prompt);
+            return callGeminiApi(userId, prompt);
         } catch (Exception e) {
             return Map.of("error", "Failed to predict savings: " + e.getMessage());
         }
     }
 
     /**
-     * Call Gemini API and parse JSON response
+     * Call the LLM (through GeminiClient, so retries, circuit breaker and provider selection apply)
+     * and parse its JSON answer. Token usage is attributed to userId.
      */
-    private Map<String, Object> callGeminiApi(String prompt) throws Exception {
-        String url = baseUrl + "/" + aiModel + ":generateContent?key=" + apiKey;
-        log.info("Calling Gemini API at: {}", url);
+    private Map<String, Object> callGeminiApi(String userId, String prompt) throws Exception {
         log.debug("Prompt being sent: {}", prompt);
-
-        // Build request
-        Map<String, Object> request = new HashMap<>();
-        Map<String, Object> contents = new HashMap<>();
-        Map<String, String> part = new HashMap<>();
-        part.put("text", prompt);
-        contents.put("parts", List.of(part));
-        request.put("contents", List.of(contents));
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Content-Type", "application/json");
-
-        HttpEntity<String> entity = new HttpEntity<>(objectMapper.writeValueAsString(request), headers);
-
-        // Call API
-        String response = restTemplate.postForObject(url, entity, String.class);
-        log.debug("Gemini API response: {}", response);
-
-        // Parse response
-        JsonNode root = objectMapper.readTree(response);
-        String generatedText = root.at("/candidates/0/content/parts/0/text").asText("");
+        String generatedText = geminiClient.callGemini(userId, prompt);
         log.debug("Extracted text from response: {}", generatedText);
 
         // Extract JSON from response
@@ -142,24 +156,14 @@ public class AiService {
      * Extract JSON from LLM response (handles markdown code blocks and wrapped text)
      */
     private Map<String, Object> parseJsonFromResponse(String response) throws Exception {
-        // Remove markdown code blocks if present
-        String cleaned = response
-            .replaceAll("```json", "")
-            .replaceAll("```", "")
-            .trim();
-
-        // Try to extract JSON object if response has extra text
-        // Look for first { and last }
-        int jsonStart = cleaned.indexOf('{');
-        int jsonEnd = cleaned.lastIndexOf('}');
-        
-        if (jsonStart >= 0 && jsonEnd > jsonStart) {
-            cleaned = cleaned.substring(jsonStart, jsonEnd + 1);
-            log.debug("Extracted JSON substring: {}", cleaned);
-        }
+        // First complete JSON object, fenced or wrapped in prose, found in a single pass
+        JsonNode node = JsonObjectExtractor.extractFirst(response);
 
         try {
-            Map<String, Object> result = objectMapper.readValue(cleaned, new TypeReference<Map<String, Object>>() {});
+            if (node == null) {
+                throw new IllegalArgumentException("no JSON object found");
+            }
+            Map<String, Object> result = objectMapper.convertValue(node, new TypeReference<Map<String, Object>>() {});
             log.info("Successfully parsed AI response as JSON");
             return result;
         } catch (Exception e) {
@@ -259,6 +263,14 @@ public class AiService {
      * Check if AI is enabled
      */
     public Boolean isAiEnabled() {
-        return aiEnabled && apiKey != null && !apiKey.isBlank();
+        return aiEnabled && geminiClient.isConfigured();
+    }
+
+    /**
+     * AI is enabled and the circuit breaker would currently let a call through.
+     * When false, callers should use their rule-based fallback right away.
+     */
+    public boolean isAiAvailable() {
+        return isAiEnabled() && circuitBreaker.isCallPermitted();
     }
 }
@@ -2,11 +2,11 @@ package com.shanu.backend.service;
 
 import com.shanu.backend.model.User;
 import com.shanu.backend.model.AuthResponse;
+import com.shanu.backend.model.EmailOutbox;
 import com.shanu.backend.repository.UserRepository;
 import com.shanu.backend.security.JwtUtil;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
@@ -28,7 +28,7 @@ public class AuthService {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailOutboxDispatcher emailOutboxDispatcher;
 
     private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
 
@@ -50,19 +50,16 @@ public class AuthService {
         String verificationToken = UUID.randomUUID().toString();
         user.setVerificationToken(verificationToken);
         
+        // Assign the id up front so the outbox row can reference the user.
+        // The outbox row is written first: if the user insert fails, the dispatcher
+        // finds no matching user and cancels the email instead of sending it.
+        user.setId(new ObjectId().toHexString());
+        queueVerificationEmail(user);
+
         // Save user to database
         User savedUser = userRepository.save(user);
         logger.info("User saved with ID: {}", savedUser.getId());
         
-        // Send verification email
-        try {
-            sendVerificationEmail(savedUser);
-            logger.info("Verification email sent to: {}", user.getEmail());
-        } catch (Exception e) {
-            logger.error("Failed to send verification email to {}: ", user.getEmail(), e);
-            // Don't fail the registration if email fails, but log it
-        }
-        
         return savedUser;
     }
 
@@ -121,25 +118,24 @@ public class AuthService {
         return user;
     }
 
-    private void sendVerificationEmail(User user) {
-        try {
-            String verifyUrl = "http://localhost:5173/verify-email?token=" + user.getVerificationToken();
-
-            SimpleMailMessage mail = new SimpleMailMessage();
-            mail.setTo(user.getEmail());
-            mail.setSubject("Verify your email - BudgetPilot");
-            mail.setText("Welcome to BudgetPilot!\n\n" +
-                    "Please click the link below to verify your email:\n" +
-                    verifyUrl + "\n\n" +
-                    "This link will expire in 24 hours.\n\n" +
-                    "If you didn't request this, please ignore this email.\n\n" +
-                    "Best regards,\nBudgetPilot Team");
-            
-            mailSender.send(mail);
-            logger.info("Verification email sent successfully to: {}", user.getEmail());
-        } catch (Exception e) {
-            logger.error("Error sending verification email to {}: ", user.getEmail(), e);
-            throw new RuntimeException("Failed to send verification email: " + e.getMessage());
-        }
+    // Verification email is delivered asynchronously by EmailOutboxDispatcher
+    private void queueVerificationEmail(User user) {
+        String verifyUrl = "http://localhost:5173/verify-email?token=" + user.getVerificationToken();
+
+        EmailOutbox mail = new EmailOutbox(
+                "verify-email:" + user.getVerificationToken(),
+                user.getId(),
+                user.getEmail(),
+                "Verify your email - BudgetPilot",
+                "Welcome to BudgetPilot!\n\n" +
+                "Please click the link below to verify your email:\n" +
+                verifyUrl + "\n\n" +
+                "This link will expire in 24 hours.\n\n" +
+                "If you didn't request this, please ignore this email.\n\n" +
+                "Best regards,\nBudgetPilot Team");
+        mail.setVerificationToken(user.getVerificationToken());
+
+        emailOutboxDispatcher.enqueue(mail);
+        logger.info("Verification email queued for: {}", user.getEmail());
     }
 }
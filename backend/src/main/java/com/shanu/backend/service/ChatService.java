@@ -3,19 +3,22 @@ package com.shanu.backend.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shanu.backend.client.GeminiClient;
+import com.shanu.backend.client.LlmMetrics;
 import com.shanu.backend.model.Conversation;
+import com.shanu.backend.model.ConversationSummary;
 import com.shanu.backend.model.Message;
 import com.shanu.backend.model.Transaction;
 import com.shanu.backend.repository.ConversationRepository;
+import com.shanu.backend.util.FanOut;
+import com.shanu.backend.util.JsonObjectExtractor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,8 +29,11 @@ import org.slf4j.LoggerFactory;
  * Features:
  * - Starts new conversations with system prompt
  * - Handles user messages and routes to Gemini
+ * - Streams assistant replies token-by-token (streamGenerateContent) for SSE clients
  * - Parses JSON responses and extracts options
  * - Maintains conversation state (meta) for flow control
+ * - Keeps prompts under a token budget with a rolling summary of older turns (PromptBudgetManager)
+ * - Reads and appends active conversations through a write-behind cache (ConversationCache)
  * - Simple in-memory rate limiting (TODO: use Redis for production)
  * 
  * Environment variables:
@@ -45,6 +51,21 @@ public class ChatService {
 
     @Autowired
     private TransactionService transactionService;
+
+    @Autowired
+    private FinancialContextCache financialContextCache;
+
+    @Autowired
+    private PromptBudgetManager promptBudgetManager;
+
+    @Autowired
+    private ConversationSummarizer conversationSummarizer;
+
+    @Autowired
+    private ConversationCache conversationCache;
+
+    @Autowired
+    private LlmMetrics llmMetrics;
     
     @Value("${chat.system-prompt:You are BudgetPilot, a financial advisor. When given a user's financial context, you MUST return a JSON object inside a code block labeled ```json with this exact schema:\r\n" + //
                 "\r\n" + //
@@ -68,9 +89,17 @@ public class ChatService {
     
     @Value("${chat.rate-limit.per-sec:2}")
     private int rateLimitPerSec;
+
+    @Value("${chat.lookup-deadline-ms:5000}")
+    private long lookupDeadlineMs;
+
+    @Value("${chat.resume.max-messages:200}")
+    private int resumeMaxMessages;
     
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final ConcurrentHashMap<String, Long> userRequestTimestamps = new ConcurrentHashMap<>();
+    // userId -> requests in the one-second window that started with the user's first request in it
+    private record RateWindow(long start, int count) {}
+    private final ConcurrentHashMap<String, RateWindow> userRequestTimestamps = new ConcurrentHashMap<>();
     private static final Logger log = LoggerFactory.getLogger(ChatService.class);
 
     /**
@@ -87,7 +116,7 @@ public class ChatService {
         
         // Call Gemini for initial greeting
         String systemAndPrompt = systemPrompt + "\n\nUser is starting a new conversation. Greet them and ask what they need help with.";
-        String geminiResponse = geminiClient.callGemini(systemAndPrompt);
+        String geminiResponse = geminiClient.callGemini(userId, systemAndPrompt);
         
         Map<String, Object> assistantData = parseGeminiResponse(geminiResponse);
         Message assistantMessage = new Message("assistant", 
@@ -104,78 +133,81 @@ public class ChatService {
             assistantMessage.setMetadata(meta);
         }
         
-        conversation.getMessages().add(assistantMessage);
-        return conversationRepository.save(conversation);
+        conversation.addMessage(assistantMessage);
+        conversation.updateSummary();
+        Conversation saved = conversationRepository.save(conversation);
+        conversationCache.put(saved);
+        return saved;
     }
 
     /**
      * Build a comprehensive transaction context for the user.
      * Includes: total income, total expense, category breakdown, recent transactions, budget status.
+     * Served from FinancialContextCache until the user's transactions change.
      */
     private String buildTransactionContext(String userId) {
+        return financialContextCache.get(userId, () -> renderTransactionContext(userId));
+    }
+
+    private String renderTransactionContext(String userId) {
         List<Transaction> transactions = transactionService.getTransactionsByUser(userId);
         
         if (transactions == null || transactions.isEmpty()) {
             return "User has no transaction data yet.";
         }
         
-        StringBuilder context = new StringBuilder();
-        
-        // Calculate totals
+        // One pass: totals, per-category expense, and the 5 most recent transactions
+        // (min-heap on date, so the oldest of the current top 5 is evicted first)
         double totalIncome = 0;
         double totalExpense = 0;
+        Map<String, Double> categoryTotals = new HashMap<>();
+        PriorityQueue<Transaction> recent = new PriorityQueue<>(6, Comparator.comparing(ChatService::dateOrEpoch));
         
         for (Transaction txn : transactions) {
+            double amount = txn.getAmount() != null ? txn.getAmount() : 0.0;
             if ("income".equalsIgnoreCase(txn.getType())) {
-                totalIncome += txn.getAmount();
+                totalIncome += amount;
             } else if ("expense".equalsIgnoreCase(txn.getType())) {
-                totalExpense += txn.getAmount();
+                totalExpense += amount;
+                String category = txn.getCategory() != null ? txn.getCategory() : "Uncategorized";
+                categoryTotals.merge(category, amount, Double::sum);
             }
+            recent.offer(txn);
+            if (recent.size() > 5) recent.poll();
         }
         
         double netSavings = totalIncome - totalExpense;
+        StringBuilder context = new StringBuilder(1024);
         
         // Add summary
         context.append("FINANCIAL SUMMARY:\n");
-        context.append(String.format("- Total Income: ₹%.2f\n", totalIncome));
-        context.append(String.format("- Total Expense: ₹%.2f\n", totalExpense));
-        context.append(String.format("- Net Savings: ₹%.2f\n", netSavings));
-        context.append(String.format("- Savings Rate: %.1f%%\n", totalIncome > 0 ? (netSavings / totalIncome * 100) : 0));
-        
-        // Category breakdown for expenses
-        Map<String, Double> categoryTotals = new HashMap<>();
-        for (Transaction txn : transactions) {
-            if ("expense".equalsIgnoreCase(txn.getType())) {
-                String category = txn.getCategory() != null ? txn.getCategory() : "Uncategorized";
-                categoryTotals.put(category, categoryTotals.getOrDefault(category, 0.0) + txn.getAmount());
-            }
+        appendFixed(context.append("- Total Income: ₹"), totalIncome, 2).append('\n');
+        appendFixed(context.append("- Total Expense: ₹"), totalExpense, 2).append('\n');
+        appendFixed(context.append("- Net Savings: ₹"), netSavings, 2).append('\n');
+        appendFixed(context.append("- Savings Rate: "), totalIncome > 0 ? (netSavings / totalIncome * 100) : 0, 1).append("%\n");
+        
+        // Top 5 expense categories by amount (min-heap of size 5 instead of sorting every category)
+        PriorityQueue<Map.Entry<String, Double>> topCategories = new PriorityQueue<>(6, Map.Entry.comparingByValue());
+        for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
+            topCategories.offer(entry);
+            if (topCategories.size() > 5) topCategories.poll();
         }
         
-        // Sort by amount (descending)
-        List<Map.Entry<String, Double>> sortedCategories = categoryTotals.entrySet().stream()
-            .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-            .collect(Collectors.toList());
-        
-        if (!sortedCategories.isEmpty()) {
+        if (!topCategories.isEmpty()) {
+            List<Map.Entry<String, Double>> sortedCategories = new ArrayList<>(topCategories);
+            sortedCategories.sort(Map.Entry.<String, Double>comparingByValue().reversed());
             context.append("\nEXPENSE BY CATEGORY (Top):\n");
-            int count = 0;
             for (Map.Entry<String, Double> entry : sortedCategories) {
-                if (count >= 5) break; // Top 5 categories
                 double percentage = (entry.getValue() / totalExpense) * 100;
-                context.append(String.format("- %s: ₹%.2f (%.1f%%)\n", entry.getKey(), entry.getValue(), percentage));
-                count++;
+                context.append("- ").append(entry.getKey()).append(": ₹");
+                appendFixed(context, entry.getValue(), 2).append(" (");
+                appendFixed(context, percentage, 1).append("%)\n");
             }
         }
         
-        // Recent transactions (last 5)
-        List<Transaction> recentTxns = transactions.stream()
-                .sorted((a, b) -> {
-                    java.util.Date dateA = a.getDate() != null ? a.getDate() : new java.util.Date(0);
-                    java.util.Date dateB = b.getDate() != null ? b.getDate() : new java.util.Date(0);
-                return dateB.compareTo(dateA);
-            })
-            .limit(5)
-            .collect(Collectors.toList());
+        // Recent transactions (last 5), newest first
+        List<Transaction> recentTxns = new ArrayList<>(recent);
+        recentTxns.sort(Comparator.comparing(ChatService::dateOrEpoch).reversed());
         
         if (!recentTxns.isEmpty()) {
             context.append("\nRECENT TRANSACTIONS:\n");
@@ -183,7 +215,9 @@ public class ChatService {
                 String type = txn.getType() != null ? txn.getType().toUpperCase() : "UNKNOWN";
                 String category = txn.getCategory() != null ? txn.getCategory() : "Uncategorized";
                 String description = txn.getDescription() != null ? txn.getDescription() : "(no description)";
-                context.append(String.format("- [%s] %s: ₹%.2f - %s\n", type, category, txn.getAmount(), description));
+                context.append("- [").append(type).append("] ").append(category).append(": ₹");
+                appendFixed(context, txn.getAmount() != null ? txn.getAmount() : 0.0, 2)
+                    .append(" - ").append(description).append('\n');
             }
         }
         
@@ -191,15 +225,105 @@ public class ChatService {
         return context.toString();
     }
 
+    private static Date dateOrEpoch(Transaction txn) {
+        return txn.getDate() != null ? txn.getDate() : new Date(0);
+    }
+
+    private static final long[] POW10 = {1, 10, 100, 1000};
+
+    /**
+     * Append value rounded half-up to the given number of decimals (0-3), like "%.Nf"
+     * but without Formatter's parsing and locale lookup on every call.
+     */
+    static StringBuilder appendFixed(StringBuilder sb, double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return sb.append(value);
+        }
+        long scaled = Math.round(Math.abs(value) * POW10[decimals]);
+        if (value < 0 && scaled != 0) sb.append('-');
+        sb.append(scaled / POW10[decimals]);
+        if (decimals > 0) {
+            String frac = Long.toString(scaled % POW10[decimals]);
+            sb.append('.');
+            for (int i = frac.length(); i < decimals; i++) sb.append('0');
+            sb.append(frac);
+        }
+        return sb;
+    }
+
     /**
      * Handle a user message in an existing conversation.
      * Validates ownership, appends message, calls Gemini with transaction context, parses response, saves.
+     * afterSeq is the seq of the last message the client has (null: it has everything before this turn);
+     * the response carries only the messages after it, not the whole conversation.
+     */
+    public Map<String, Object> handleUserMessage(String conversationId, String userId, String text, String option, Long afterSeq) throws Exception {
+        // The conversation and the transaction context are independent reads: fetch them side by side
+        Conversation conversation;
+        String transactionContext;
+        try (FanOut fanOut = FanOut.withDeadline(Duration.ofMillis(lookupDeadlineMs))) {
+            FanOut.Task<Conversation> turn = fanOut.fork(() -> prepareTurn(conversationId, userId, text, option));
+            FanOut.Task<String> context = fanOut.fork(() -> buildTransactionContext(userId));
+            fanOut.join();
+            conversation = turn.get();
+            transactionContext = context.get();
+        }
+        String promptStr = buildChatPrompt(conversation, transactionContext);
+
+        // Call Gemini with full context
+        Map<String, Object> assistantData;
+        try {
+            // DEBUG: log prompt summary (no secrets)
+            log.debug("[ChatService] Gemini prompt length={}, first1kChars=\"{}\"", promptStr.length(), promptStr.substring(0, Math.min(1000, promptStr.length())));
+            String geminiResponse = geminiClient.callGemini(userId, promptStr);
+            // Parse response (both JSON and plain text supported)
+            assistantData = parseGeminiResponse(geminiResponse);
+        } catch (Exception e) {
+            return recordFailedReply(conversation, e, afterSeq);
+        }
+
+        return recordReply(conversation, assistantData, afterSeq);
+    }
+
+    /**
+     * Validate and append the user's message for a streamed turn.
+     * Runs on the request thread so auth/validation errors are reported as normal HTTP errors.
      */
-    public Map<String, Object> handleUserMessage(String conversationId, String userId, String text, String option) throws Exception {
+    public Conversation beginStreamingTurn(String conversationId, String userId, String text, String option) {
+        return prepareTurn(conversationId, userId, text, option);
+    }
+
+    /**
+     * Stream the assistant reply for a turn started with beginStreamingTurn.
+     * Partial text goes to the listener as it arrives; the final assistant Message is persisted
+     * once the stream completes, exactly like the non-streaming path.
+     */
+    public void streamReply(Conversation conversation, String userId, Long afterSeq, ChatStreamListener listener) {
+        try {
+            String promptStr = buildChatPrompt(conversation, buildTransactionContext(userId));
+            // Parse the JSON answer as it streams in, so nothing is left to scan when the stream ends
+            JsonObjectExtractor extractor = new JsonObjectExtractor(objectMapper);
+            String fullText = geminiClient.streamGemini(userId, promptStr, delta -> {
+                extractor.feed(delta);
+                listener.onToken(delta);
+            });
+            listener.onComplete(recordReply(conversation, toAssistantData(extractor.result(), fullText), afterSeq));
+        } catch (Exception e) {
+            log.warn("[ChatService] Streamed turn failed for conversation {}: {}", conversation.getId(), e.getMessage());
+            try {
+                recordFailedReply(conversation, e, afterSeq);
+            } catch (Exception saveError) {
+                log.error("[ChatService] Could not persist failed streamed turn", saveError);
+            }
+            listener.onError(e);
+        }
+    }
+
+    private Conversation prepareTurn(String conversationId, String userId, String text, String option) {
         checkRateLimit(userId);
         
-        // Fetch conversation
-        Optional<Conversation> convOpt = conversationRepository.findById(conversationId);
+        // Fetch conversation (a private copy; active ones come from ConversationCache)
+        Optional<Conversation> convOpt = conversationCache.get(conversationId);
         if (convOpt.isEmpty()) {
             throw new IllegalArgumentException("Conversation not found: " + conversationId);
         }
@@ -218,13 +342,15 @@ public class ChatService {
         }
         
         Message userMessage = new Message("user", userText);
-        conversation.getMessages().add(userMessage);
-        
+        conversation.setStoredMessageCount(conversation.getMessages().size());
+        conversation.addMessage(userMessage);
+        return conversation;
+    }
+
+    private String buildChatPrompt(Conversation conversation, String transactionContext) {
         // Build prompt with transaction context
         StringBuilder prompt = new StringBuilder(systemPrompt);
         prompt.append("\n\n=== USER'S FINANCIAL DATA ===\n");
-        // Get and include transaction context
-        String transactionContext = buildTransactionContext(userId);
         prompt.append(transactionContext);
 
         // === INSTRUCTION BLOCK FOR ASSISTANT ===
@@ -252,43 +378,32 @@ public class ChatService {
         );
         prompt.append("\n=== CONVERSATION HISTORY ===\n");
         
-        // Include last 15 messages for context
-        int startIdx = Math.max(0, conversation.getMessages().size() - 15);
-        for (int i = startIdx; i < conversation.getMessages().size(); i++) {
-            Message msg = conversation.getMessages().get(i);
-            prompt.append(msg.getRole().toUpperCase()).append(": ").append(msg.getText()).append("\n");
-        }
-        
-        // Call Gemini with full context
-        Map<String, Object> assistantData;
-        String geminiResponse;
-        try {
-            // DEBUG: log prompt summary (no secrets)
-            String promptStr = prompt.toString();
-            log.debug("[ChatService] Gemini prompt length={}, first1kChars=\"{}\"", promptStr.length(), promptStr.substring(0, Math.min(1000, promptStr.length())));
-            geminiResponse = geminiClient.callGemini(promptStr);
-            // Parse response (both JSON and plain text supported)
-            assistantData = parseGeminiResponse(geminiResponse);
-        } catch (Exception e) {
-            // On failure, prepare a helpful assistant message containing the error
-            String errText = "Error contacting Gemini: " + e.getMessage();
-            Message errorAssistant = new Message("assistant", "❌ " + errText + "\n\nPlease try again later.");
-            Map<String, Object> meta = new HashMap<>();
-            meta.put("source", "gemini");
-            meta.put("error", e.getMessage());
-            errorAssistant.setMetadata(meta);
-            conversation.getMessages().add(errorAssistant);
-            conversation.setUpdatedAt(LocalDateTime.now());
-            if (conversation.getMeta() == null) conversation.setMeta(new HashMap<>());
-            conversation.getMeta().put("last_error", e.getMessage());
-            conversationRepository.save(conversation);
+        // Rolling summary + as many recent messages as the token budget allows
+        prompt.append(promptBudgetManager.renderHistory(conversation, PromptBudgetManager.estimateTokens(prompt)));
+        log.debug("[ChatService] Prompt for conversation {} ~{} tokens", conversation.getId(), PromptBudgetManager.estimateTokens(prompt));
+        return prompt.toString();
+    }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("assistantMessage", errorAssistant);
-            response.put("conversation", conversation);
-            return response;
-        }
+    private Map<String, Object> recordFailedReply(Conversation conversation, Exception e, Long afterSeq) {
+        llmMetrics.recordFallback("chat", e.getClass().getSimpleName());
+        // On failure, prepare a helpful assistant message containing the error
+        String errText = "Error contacting Gemini: " + e.getMessage();
+        Message errorAssistant = new Message("assistant", "❌ " + errText + "\n\nPlease try again later.");
+        Map<String, Object> meta = new HashMap<>();
+        meta.put("source", "gemini");
+        meta.put("error", e.getMessage());
+        errorAssistant.setMetadata(meta);
+        conversation.addMessage(errorAssistant);
+        conversation.setUpdatedAt(LocalDateTime.now());
+        if (conversation.getMeta() == null) conversation.setMeta(new HashMap<>());
+        conversation.getMeta().put("last_error", e.getMessage());
+        long turnStart = conversation.getStoredMessageCount();
+        persistTurn(conversation, Collections.singletonMap("last_error", e.getMessage()));
+
+        return turnResponse(conversation, errorAssistant, turnStart, afterSeq);
+    }
 
+    private Map<String, Object> recordReply(Conversation conversation, Map<String, Object> assistantData, Long afterSeq) {
         Message assistantMessage = new Message("assistant", 
             (String) (assistantData != null ? assistantData.getOrDefault("text", "I understand. How can I assist further?") : "I understand. How can I assist further?"));
 
@@ -302,30 +417,65 @@ public class ChatService {
         metadata.put("source", "gemini");
         assistantMessage.setMetadata(metadata);
         
-        conversation.getMessages().add(assistantMessage);
+        conversation.addMessage(assistantMessage);
         conversation.setUpdatedAt(LocalDateTime.now());
         
         // Update meta state
         if (conversation.getMeta() == null) {
             conversation.setMeta(new HashMap<>());
         }
-        conversation.getMeta().put("last_updated", LocalDateTime.now().toString());
-        
-        conversationRepository.save(conversation);
+        String lastUpdated = LocalDateTime.now().toString();
+        conversation.getMeta().put("last_updated", lastUpdated);
+
+        long turnStart = conversation.getStoredMessageCount();
+        persistTurn(conversation, Map.of("last_updated", lastUpdated));
+
+        // Fold turns that left the prompt window into the rolling summary (async)
+        conversationSummarizer.refreshIfNeeded(conversation);
         
-        // Return response
+        return turnResponse(conversation, assistantMessage, turnStart, afterSeq);
+    }
+
+    /**
+     * Response of a turn: the new assistant message plus the messages the client hasn't seen
+     * (everything after afterSeq, and at least this turn's user and assistant messages), so the
+     * payload doesn't grow with the conversation. Clients that fell further behind use fetchMessagesAfter.
+     */
+    private Map<String, Object> turnResponse(Conversation conversation, Message assistantMessage, long turnStart, Long afterSeq) {
+        long from = afterSeq != null ? Math.max(0, Math.min(afterSeq, turnStart)) : turnStart;
+        if (turnStart - from > resumeMaxMessages) {
+            from = turnStart;
+        }
         Map<String, Object> response = new HashMap<>();
+        response.put("conversationId", conversation.getId());
         response.put("assistantMessage", assistantMessage);
-        response.put("conversation", conversation);
-        
+        response.put("messages", conversation.messagesAfter(from));
+        response.put("lastSeq", conversation.getLastSeq());
         return response;
     }
 
+    /**
+     * Write the messages added since the conversation was loaded ($push) and the changed meta keys,
+     * through ConversationCache (now or write-behind, per its write mode).
+     * Only touching these fields also keeps the summarizer's concurrent meta writes intact.
+     */
+    private void persistTurn(Conversation conversation, Map<String, Object> metaUpdates) {
+        List<Message> messages = conversation.getMessages();
+        List<Message> added = new ArrayList<>(messages.subList(conversation.getStoredMessageCount(), messages.size()));
+        if (!conversationCache.append(conversation.getId(), conversation.getStoredMessageCount(), added, metaUpdates, conversation.getUpdatedAt())) {
+            if (!conversationRepository.existsById(conversation.getId())) {
+                throw new IllegalArgumentException("Conversation not found: " + conversation.getId());
+            }
+            throw new IllegalStateException("Conversation was updated by another request; reload it and try again");
+        }
+        conversation.setStoredMessageCount(messages.size());
+    }
+
     /**
      * Fetch a conversation by ID (ownership validated by caller).
      */
     public Conversation fetchConversation(String conversationId, String userId) {
-        Optional<Conversation> convOpt = conversationRepository.findById(conversationId);
+        Optional<Conversation> convOpt = conversationCache.get(conversationId);
         if (convOpt.isEmpty()) {
             throw new IllegalArgumentException("Conversation not found");
         }
@@ -338,6 +488,38 @@ public class ChatService {
         return conversation;
     }
 
+    /**
+     * Resume after a reconnect: the messages after afterSeq (at most limit, oldest first) and the
+     * conversation's lastSeq. Only the requested slice of the history is read from the database.
+     */
+    public Map<String, Object> fetchMessagesAfter(String conversationId, String userId, long afterSeq, int limit) {
+        long from = Math.max(0, afterSeq);
+        int pageSize = Math.max(1, Math.min(limit, resumeMaxMessages));
+        // Active conversations may have turns the write-behind cache hasn't flushed yet
+        Conversation cached = conversationCache.getIfPresent(conversationId);
+        Conversation conversation = cached != null
+            ? sliceAfter(cached, from, pageSize)
+            : conversationRepository.findMessagesAfter(conversationId, from, pageSize);
+        if (conversation == null) {
+            throw new IllegalArgumentException("Conversation not found");
+        }
+        if (!userId.equals(conversation.getUserId())) {
+            throw new SecurityException("Unauthorized");
+        }
+
+        List<Message> messages = conversation.getMessages() != null ? conversation.getMessages() : List.of();
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i).getSeq() == null) messages.get(i).setSeq(from + i + 1);
+        }
+        long lastSeq = conversation.getMessageCount() != null ? conversation.getMessageCount() : from + messages.size();
+        Map<String, Object> response = new HashMap<>();
+        response.put("conversationId", conversationId);
+        response.put("messages", messages);
+        response.put("lastSeq", lastSeq);
+        response.put("hasMore", from + messages.size() < lastSeq);
+        return response;
+    }
+
     /**
      * List conversations for a user.
      */
@@ -345,94 +527,106 @@ public class ChatService {
         return conversationRepository.findByUserIdOrderByUpdatedAtDesc(userId);
     }
 
+    /**
+     * One page of the user's conversation summaries, newest first.
+     * cursor is the nextCursor of the previous page (null for the first page).
+     */
+    public ConversationPage listConversationSummaries(String userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, 100));
+        LocalDateTime beforeUpdatedAt = null;
+        String beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+                beforeUpdatedAt = LocalDateTime.parse(parts[0]);
+                beforeId = parts[1];
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        // One extra row tells whether there is a next page
+        List<Conversation> rows = conversationRepository.findSummaries(userId, beforeUpdatedAt, beforeId, pageSize + 1);
+        boolean more = rows.size() > pageSize;
+        List<ConversationSummary> page = new ArrayList<>(Math.min(rows.size(), pageSize));
+        for (Conversation row : rows.subList(0, Math.min(rows.size(), pageSize))) {
+            page.add(ConversationSummary.of(row));
+        }
+        String nextCursor = null;
+        if (more) {
+            ConversationSummary last = page.get(page.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (last.updatedAt() + "|" + last.id()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new ConversationPage(page, nextCursor);
+    }
+
+    private static Conversation sliceAfter(Conversation conversation, long afterSeq, int limit) {
+        List<Message> after = conversation.messagesAfter(afterSeq);
+        // messageCount keeps the full count, like the $slice projection
+        conversation.setMessages(after.size() > limit ? new ArrayList<>(after.subList(0, limit)) : after);
+        return conversation;
+    }
+
+    public record ConversationPage(List<ConversationSummary> conversations, String nextCursor) {}
+
     /**
      * Parse Gemini JSON response.
      * Attempts to extract JSON from code-fenced blocks first, then parse directly.
      * Falls back to plain text if JSON parsing fails.
      */
     private Map<String, Object> parseGeminiResponse(String response) {
+        // First complete JSON object, fenced (```json ... ```) or bare, found in a single pass
+        return toAssistantData(JsonObjectExtractor.extractFirst(response), response);
+    }
+
+    /**
+     * Map the model's JSON answer (or, if it had none, its raw text) to the assistant message data.
+     */
+    private Map<String, Object> toAssistantData(JsonNode node, String response) {
         Map<String, Object> result = new HashMap<>();
-        // Try to extract JSON from code-fenced block (```json ... ```)
-        Pattern jsonBlockPattern = Pattern.compile("```json\\s*([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = jsonBlockPattern.matcher(response);
-        List<String> jsonCandidates = new ArrayList<>();
-        while (matcher.find()) {
-            String block = matcher.group(1).trim();
-            if (!block.isEmpty()) jsonCandidates.add(block);
-        }
-        // If no code-fenced JSON, try to find raw JSON object in text
-        if (jsonCandidates.isEmpty()) {
-            Pattern rawJsonPattern = Pattern.compile("\\{[\\s\\S]*\\}");
-            Matcher rawMatcher = rawJsonPattern.matcher(response);
-            while (rawMatcher.find()) {
-                String block = rawMatcher.group().trim();
-                if (!block.isEmpty()) jsonCandidates.add(block);
-            }
+        if (node == null) {
+            // If no JSON was found, return original response as text
+            log.warn("[parseGeminiResponse] No valid JSON found in Gemini response. Returning raw text.");
+            result.put("text", response);
+            return result;
         }
-        // Try parsing each candidate
-        for (String json : jsonCandidates) {
-            try {
-                JsonNode node = objectMapper.readTree(json);
-                // Always extract all fields for schema
-                // if (node.has("summary")) result.put("summary", node.get("summary").asText());
-                // if (node.has("top_expense_categories")) result.put("top_expense_categories", node.get("top_expense_categories"));
-                // if (node.has("budget_suggestions")) result.put("budget_suggestions", node.get("budget_suggestions"));
-                // if (node.has("actionable_steps")) result.put("actionable_steps", node.get("actionable_steps"));
-                // if (node.has("confidence")) result.put("confidence", node.get("confidence").asDouble());
-                // // For legacy/other bots
-                // if (node.has("text")) result.put("text", node.get("text").asText());
-                // if (node.has("options") && node.get("options").isArray()) {
-                //     List<String> options = new ArrayList<>();
-                //     node.get("options").forEach(opt -> options.add(opt.asText()));
-                //     result.put("options", options);
-                // }
-                // // If nothing else, set text to summary or fallback
-                // if (!result.containsKey("text")) {
-                //     if (node.has("summary")) result.put("text", node.get("summary").asText());
-                //     else result.put("text", json);
-                // }
-                // after you parse node = objectMapper.readTree(jsonToParse);
-String displayText = null;
-if (node.has("summary") && !node.get("summary").isNull()) {
-    displayText = node.get("summary").asText();
-} else if (node.has("message") && !node.get("message").isNull()) {
-    // some responses use "message"
-    displayText = node.get("message").asText();
-} else {
-    // fallback: pretty-print JSON but mark as structured
-    displayText = "Structured response (see details).";
-}
 
-// Put human-friendly display text
-result.put("text", displayText);
+        String displayText;
+        if (node.has("summary") && !node.get("summary").isNull()) {
+            displayText = node.get("summary").asText();
+        } else if (node.has("message") && !node.get("message").isNull()) {
+            // some responses use "message"
+            displayText = node.get("message").asText();
+        } else if (node.has("text") && !node.get("text").isNull()) {
+            // greeting / guided-flow replies use "text"
+            displayText = node.get("text").asText();
+        } else {
+            // fallback: pretty-print JSON but mark as structured
+            displayText = "Structured response (see details).";
+        }
 
-// Preserve structured content in metadata for frontend use
-result.put("rawJson", node); // keep JsonNode so controller can add to message metadata
+        // Put human-friendly display text
+        result.put("text", displayText);
 
-// Also extract commonly used lists (if present)
-if (node.has("options") && node.get("options").isArray()) {
-    List<String> options = new ArrayList<>();
-    node.get("options").forEach(opt -> options.add(opt.asText()));
-    result.put("options", options);
-}
-if (node.has("top_expense_categories")) {
-    result.put("top_expense_categories", node.get("top_expense_categories"));
-}
-if (node.has("budget_suggestions")) {
-    result.put("budget_suggestions", node.get("budget_suggestions"));
-}
-if (node.has("confidence")) {
-    result.put("confidence", node.get("confidence").asDouble());
-}
+        // Preserve structured content in metadata for frontend use
+        result.put("rawJson", node); // keep JsonNode so controller can add to message metadata
 
-                return result;
-            } catch (Exception e) {
-                log.warn("[parseGeminiResponse] Failed to parse candidate JSON: {}...\nError: {}", json.substring(0, Math.min(120, json.length())), e.getMessage());
-            }
+        // Also extract commonly used lists (if present)
+        if (node.has("options") && node.get("options").isArray()) {
+            List<String> options = new ArrayList<>();
+            node.get("options").forEach(opt -> options.add(opt.asText()));
+            result.put("options", options);
+        }
+        if (node.has("top_expense_categories")) {
+            result.put("top_expense_categories", node.get("top_expense_categories"));
+        }
+        if (node.has("budget_suggestions")) {
+            result.put("budget_suggestions", node.get("budget_suggestions"));
+        }
+        if (node.has("confidence")) {
+            result.put("confidence", node.get("confidence").asDouble());
         }
-        // If all parsing fails, return original response as text
-        log.warn("[parseGeminiResponse] No valid JSON found in Gemini response. Returning raw text.");
-        result.put("text", response);
         return result;
     }
 
@@ -446,19 +640,24 @@ if (node.has("confidence")) {
         long now = System.currentTimeMillis();
         long oneSecondAgo = now - 1000;
         
-        // Remove old timestamps
-        userRequestTimestamps.entrySet().removeIf(entry -> entry.getValue() < oneSecondAgo);
+        // Remove old windows
+        userRequestTimestamps.entrySet().removeIf(entry -> entry.getValue().start() < oneSecondAgo);
         
-        // Count requests in last second
-        String key = userId + "_" + (now / 1000);
-        long count = userRequestTimestamps.values().stream()
-            .filter(ts -> ts >= oneSecondAgo)
-            .count();
+        // Count this request in the user's window, unless the window is full
+        boolean[] limited = {false};
+        userRequestTimestamps.compute(userId, (key, window) -> {
+            if (window == null || window.start() < oneSecondAgo) {
+                return new RateWindow(now, 1);
+            }
+            if (window.count() >= rateLimitPerSec) {
+                limited[0] = true;
+                return window;
+            }
+            return new RateWindow(window.start(), window.count() + 1);
+        });
         
-        if (count >= rateLimitPerSec) {
+        if (limited[0]) {
             throw new RuntimeException("Rate limit exceeded: max " + rateLimitPerSec + " requests per second");
         }
-        
-        userRequestTimestamps.put(key, now);
     }
 }
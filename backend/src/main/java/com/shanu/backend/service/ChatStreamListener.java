@@ -0,0 +1,25 @@
+package com.shanu.backend.service;
+
+import java.util.Map;
+
+/**
+ * Receives the progress of a streamed chat turn.
+ * Implemented by the transport (SSE emitter, WebSocket session) that forwards it to the browser.
+ */
+public interface ChatStreamListener {
+
+    /**
+     * A fragment of the assistant's raw answer, in arrival order.
+     */
+    void onToken(String delta);
+
+    /**
+     * The turn finished and was persisted. Same shape as ChatService.handleUserMessage's response.
+     */
+    void onComplete(Map<String, Object> response);
+
+    /**
+     * The turn failed; an error assistant message has already been persisted when possible.
+     */
+    void onError(Exception e);
+}
@@ -0,0 +1,407 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.model.Conversation;
+import com.shanu.backend.model.Message;
+import com.shanu.backend.repository.ConversationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of active conversations, so a chat session doesn't re-read its whole document
+ * from MongoDB on every turn.
+ *
+ * Callers always get a private copy; turns are applied with append(), which (like the $push it
+ * replaces) only succeeds if the conversation still has the number of messages the turn started from.
+ *
+ * Durability (chat.conversation-cache.write-mode):
+ * - write-behind (default): append() returns once the cached copy is updated. A flusher writes the
+ *   messages each conversation gained since its last flush, in order, as one $push every
+ *   chat.conversation-cache.flush-interval-ms. A hard crash (kill -9, OOM, host loss) loses at most
+ *   the turns acknowledged within the last flush interval; a graceful shutdown flushes everything.
+ *   A conversation with more than max-pending-messages unflushed is flushed by the appending turn.
+ * - write-through: append() writes to MongoDB before returning, so nothing acknowledged is lost;
+ *   reads are still served from memory, and aren't held up by a write in progress.
+ *
+ * Conversations idle for idle-evict-ms are evicted once flushed; beyond max-entries the least
+ * recently used flushed ones go first. The cache assumes a conversation is served by one instance
+ * (sticky sessions): if its stored messages change elsewhere, pending messages are renumbered after
+ * the stored ones and the entry is dropped.
+ *
+ * Metrics: chat.conversation.cache (counter, tag result=hit|miss), chat.conversation.cache.flush
+ * (counter, tag result=ok|conflict|error), chat.conversation.cache.size and .pending (gauges).
+ */
+@Component
+public class ConversationCache {
+
+    public enum WriteMode { WRITE_BEHIND, WRITE_THROUGH }
+
+    @Value("${chat.conversation-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.conversation-cache.write-mode:write-behind}")
+    private String writeModeName;
+
+    @Value("${chat.conversation-cache.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${chat.conversation-cache.idle-evict-ms:600000}")
+    private long idleEvictMs;
+
+    @Value("${chat.conversation-cache.max-pending-messages:200}")
+    private int maxPendingMessages;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationCache.class);
+
+    private WriteMode writeMode = WriteMode.WRITE_BEHIND;
+    private Counter hits;
+    private Counter misses;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * One cached conversation. All fields are guarded by the entry's monitor, except that a flush
+     * or write-through append holds the monitor only around its snapshot/check and its update,
+     * not during the database write.
+     */
+    private static final class Entry {
+        final Conversation conversation;
+        // Serializes flushes and write-through appends of this entry; separate from the entry
+        // monitor so reads (and write-behind appends) aren't blocked while one waits on MongoDB
+        final Object flushLock = new Object();
+        int persistedCount;                                   // messages known to be in MongoDB
+        final Map<String, Object> pendingMeta = new HashMap<>();
+        LocalDateTime pendingUpdatedAt;
+        long lastAccess = System.currentTimeMillis();
+        boolean evicted;
+
+        Entry(Conversation conversation) {
+            this.conversation = conversation;
+            this.persistedCount = conversation.getMessages().size();
+        }
+
+        boolean isDirty() {
+            return conversation.getMessages().size() > persistedCount || !pendingMeta.isEmpty();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        writeMode = WriteMode.valueOf(writeModeName.trim().toUpperCase().replace('-', '_'));
+        hits = meterRegistry.counter("chat.conversation.cache", "result", "hit");
+        misses = meterRegistry.counter("chat.conversation.cache", "result", "miss");
+        meterRegistry.gauge("chat.conversation.cache.size", entries, Map::size);
+        meterRegistry.gauge("chat.conversation.cache.pending", this, ConversationCache::pendingMessages);
+    }
+
+    /**
+     * A copy of the conversation, from memory or loaded from MongoDB (and cached).
+     */
+    public Optional<Conversation> get(String conversationId) {
+        if (!enabled) {
+            return conversationRepository.findById(conversationId).map(c -> {
+                c.numberMessages();
+                return c;
+            });
+        }
+        Entry entry = entries.get(conversationId);
+        if (entry != null) {
+            synchronized (entry) {
+                if (!entry.evicted) {
+                    hits.increment();
+                    entry.lastAccess = System.currentTimeMillis();
+                    return Optional.of(copy(entry.conversation));
+                }
+            }
+        }
+        misses.increment();
+
+        Optional<Conversation> loaded = conversationRepository.findById(conversationId);
+        if (loaded.isEmpty()) return loaded;
+        Conversation conversation = loaded.get();
+        if (conversation.getMessages() == null) conversation.setMessages(new ArrayList<>());
+        conversation.numberMessages();
+        conversation.updateSummary();
+        Entry existing = entries.putIfAbsent(conversationId, new Entry(conversation));
+        if (existing != null) {
+            // Another request loaded it first; theirs may already have newer turns
+            synchronized (existing) {
+                if (!existing.evicted) return Optional.of(copy(existing.conversation));
+            }
+        }
+        return Optional.of(copy(conversation));
+    }
+
+    /**
+     * A copy of the conversation if it is cached, without loading it.
+     */
+    public Conversation getIfPresent(String conversationId) {
+        Entry entry = enabled ? entries.get(conversationId) : null;
+        if (entry == null) return null;
+        synchronized (entry) {
+            return entry.evicted ? null : copy(entry.conversation);
+        }
+    }
+
+    /**
+     * Cache a conversation that was just saved.
+     */
+    public void put(Conversation conversation) {
+        if (!enabled || conversation.getId() == null) return;
+        Conversation cached = copy(conversation);
+        cached.numberMessages();
+        Entry previous = entries.put(conversation.getId(), new Entry(cached));
+        if (previous != null) {
+            synchronized (previous) {
+                previous.evicted = true;
+            }
+        }
+    }
+
+    /**
+     * Apply a turn: append messages and set the given meta.* keys, if the conversation still has
+     * expectedCount messages. Written to MongoDB now or by the flusher, depending on the write mode.
+     *
+     * @return false if the conversation doesn't exist or gained messages since expectedCount
+     */
+    public boolean append(String conversationId, int expectedCount, List<Message> messages, Map<String, Object> metaUpdates, LocalDateTime updatedAt) {
+        Entry entry = enabled ? entries.get(conversationId) : null;
+        if (entry == null) {
+            return conversationRepository.appendMessages(conversationId, expectedCount, messages, metaUpdates, updatedAt);
+        }
+        if (writeMode == WriteMode.WRITE_THROUGH) {
+            return appendThrough(conversationId, entry, expectedCount, messages, metaUpdates, updatedAt);
+        }
+        boolean flushNow;
+        synchronized (entry) {
+            if (entry.evicted) {
+                return conversationRepository.appendMessages(conversationId, expectedCount, messages, metaUpdates, updatedAt);
+            }
+            if (entry.conversation.getMessages().size() != expectedCount) {
+                return false;
+            }
+            if (metaUpdates != null) entry.pendingMeta.putAll(metaUpdates);
+            entry.pendingUpdatedAt = updatedAt;
+            apply(entry, messages, metaUpdates, updatedAt);
+            flushNow = entry.conversation.getMessages().size() - entry.persistedCount > maxPendingMessages;
+        }
+        if (flushNow) {
+            flush(conversationId, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Write-through append. Writes of one entry are serialized on its flushLock; the entry monitor
+     * is only held to check and then apply the turn, so reads aren't blocked on the database write.
+     */
+    private boolean appendThrough(String conversationId, Entry entry, int expectedCount, List<Message> messages, Map<String, Object> metaUpdates, LocalDateTime updatedAt) {
+        synchronized (entry.flushLock) {
+            synchronized (entry) {
+                if (entry.evicted) {
+                    return conversationRepository.appendMessages(conversationId, expectedCount, messages, metaUpdates, updatedAt);
+                }
+                if (entry.conversation.getMessages().size() != expectedCount) {
+                    return false;
+                }
+            }
+            boolean written = conversationRepository.appendMessages(conversationId, expectedCount, messages, metaUpdates, updatedAt);
+            synchronized (entry) {
+                if (!written) {
+                    // Changed outside this cache: forget our copy, the next read reloads it
+                    evict(conversationId, entry);
+                } else if (!entry.evicted) {
+                    apply(entry, messages, metaUpdates, updatedAt);
+                    entry.persistedCount = entry.conversation.getMessages().size();
+                }
+            }
+            return written;
+        }
+    }
+
+    // Caller holds the entry monitor
+    private static void apply(Entry entry, List<Message> messages, Map<String, Object> metaUpdates, LocalDateTime updatedAt) {
+        Conversation conversation = entry.conversation;
+        conversation.getMessages().addAll(messages);
+        if (metaUpdates != null) {
+            if (conversation.getMeta() == null) conversation.setMeta(new HashMap<>());
+            conversation.getMeta().putAll(metaUpdates);
+        }
+        conversation.setUpdatedAt(updatedAt);
+        conversation.updateSummary();
+        entry.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Merge meta keys that were already written to MongoDB by someone else (the summarizer).
+     */
+    public void applyPersistedMeta(String conversationId, Map<String, Object> metaUpdates) {
+        Entry entry = enabled ? entries.get(conversationId) : null;
+        if (entry == null) return;
+        synchronized (entry) {
+            if (entry.conversation.getMeta() == null) entry.conversation.setMeta(new HashMap<>());
+            entry.conversation.getMeta().putAll(metaUpdates);
+        }
+    }
+
+    /**
+     * Flush every dirty conversation, then evict idle and surplus ones.
+     */
+    @Scheduled(fixedDelayString = "${chat.conversation-cache.flush-interval-ms:250}")
+    public void flushAndEvict() {
+        if (!enabled) return;
+        entries.forEach(this::flush);
+
+        long idleBefore = System.currentTimeMillis() - idleEvictMs;
+        entries.forEach((id, entry) -> {
+            synchronized (entry) {
+                if (entry.lastAccess < idleBefore && !entry.isDirty()) evict(id, entry);
+            }
+        });
+        int surplus = entries.size() - maxEntries;
+        if (surplus > 0) {
+            List<Map.Entry<String, Entry>> byAge = new ArrayList<>(entries.entrySet());
+            byAge.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (Map.Entry<String, Entry> e : byAge) {
+                if (surplus <= 0) break;
+                synchronized (e.getValue()) {
+                    if (!e.getValue().isDirty()) {
+                        evict(e.getKey(), e.getValue());
+                        surplus--;
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        if (!enabled) return;
+        entries.forEach(this::flush);
+        int pending = pendingMessages();
+        if (pending > 0) {
+            log.error("Shutting down with {} chat messages not written to MongoDB", pending);
+        }
+    }
+
+    /**
+     * Write what the entry gained since its last flush, as one $push. Flushes of one entry are
+     * serialized on its flushLock (scheduler, over-full appenders and shutdown).
+     */
+    private void flush(String conversationId, Entry entry) {
+        synchronized (entry.flushLock) {
+            List<Message> messages;
+            Map<String, Object> meta;
+            LocalDateTime updatedAt;
+            int expectedCount;
+            synchronized (entry) {
+                if (entry.evicted || !entry.isDirty()) return;
+                List<Message> all = entry.conversation.getMessages();
+                expectedCount = entry.persistedCount;
+                messages = new ArrayList<>(all.subList(expectedCount, all.size()));
+                meta = new HashMap<>(entry.pendingMeta);
+                updatedAt = entry.pendingUpdatedAt != null ? entry.pendingUpdatedAt : entry.conversation.getUpdatedAt();
+                entry.pendingMeta.clear();
+            }
+            try {
+                if (conversationRepository.appendMessages(conversationId, expectedCount, messages, meta, updatedAt)) {
+                    synchronized (entry) {
+                        entry.persistedCount = expectedCount + messages.size();
+                    }
+                    count("ok");
+                } else {
+                    count("conflict");
+                    recoverConflict(conversationId, entry, messages, meta, updatedAt);
+                }
+            } catch (RuntimeException e) {
+                count("error");
+                log.warn("Could not flush conversation {} ({} messages), will retry: {}", conversationId, messages.size(), e.getMessage());
+                synchronized (entry) {
+                    // Keys set again since the snapshot are newer; keep those
+                    meta.forEach(entry.pendingMeta::putIfAbsent);
+                }
+            }
+        }
+    }
+
+    /**
+     * The stored conversation changed underneath us (or was deleted). Append the pending messages
+     * after whatever is stored now, renumbered, and stop caching the conversation.
+     */
+    private void recoverConflict(String conversationId, Entry entry, List<Message> messages, Map<String, Object> meta, LocalDateTime updatedAt) {
+        synchronized (entry) {
+            // Turns that arrived during the failed write are pending too
+            List<Message> all = entry.conversation.getMessages();
+            messages = new ArrayList<>(all.subList(entry.persistedCount, all.size()));
+            entry.pendingMeta.forEach(meta::put);
+            evict(conversationId, entry);
+        }
+        Optional<Conversation> stored = conversationRepository.findById(conversationId);
+        if (stored.isEmpty()) {
+            log.warn("Conversation {} was deleted; dropping {} unflushed messages", conversationId, messages.size());
+            return;
+        }
+        Conversation current = stored.get();
+        current.numberMessages();
+        int storedCount = current.getMessages().size();
+        messages.forEach(current::addMessage);
+        log.warn("Conversation {} changed outside the cache; appending {} messages after seq {}", conversationId, messages.size(), storedCount);
+        if (!conversationRepository.appendMessages(conversationId, storedCount, messages, meta, updatedAt)) {
+            log.error("Conversation {} changed again during recovery; {} messages not written", conversationId, messages.size());
+        }
+    }
+
+    private void evict(String conversationId, Entry entry) {
+        entry.evicted = true;
+        entries.remove(conversationId, entry);
+    }
+
+    private int pendingMessages() {
+        int pending = 0;
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                pending += entry.conversation.getMessages().size() - entry.persistedCount;
+            }
+        }
+        return pending;
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("chat.conversation.cache.flush", "result", result).increment();
+    }
+
+    private static Conversation copy(Conversation source) {
+        Conversation copy = new Conversation(source.getUserId(), source.getTitle());
+        copy.setId(source.getId());
+        copy.setMessages(source.getMessages() != null ? new ArrayList<>(source.getMessages()) : new ArrayList<>());
+        copy.setMeta(source.getMeta() != null ? new HashMap<>(source.getMeta()) : new HashMap<>());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        copy.setMessageCount(source.getMessageCount());
+        copy.setLastMessagePreview(source.getLastMessagePreview());
+        copy.setStoredMessageCount(copy.getMessages().size());
+        return copy;
+    }
+}
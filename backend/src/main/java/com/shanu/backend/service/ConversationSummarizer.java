@@ -0,0 +1,115 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.client.GeminiClient;
+import com.shanu.backend.model.Conversation;
+import com.shanu.backend.model.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Maintains the rolling summary of older chat turns used by PromptBudgetManager.
+ *
+ * After a reply is recorded, if enough messages have fallen out of the raw history window,
+ * a background task asks Gemini to fold them into the existing summary and writes the result
+ * to meta.history_summary / meta.history_summary_upto with a targeted $set, never blocking
+ * the chat turn. At most one refresh per conversation runs at a time, and a refresh never
+ * moves the summary backwards.
+ */
+@Service
+public class ConversationSummarizer {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationSummarizer.class);
+
+    @Autowired
+    private PromptBudgetManager promptBudgetManager;
+
+    @Autowired
+    private GeminiClient geminiClient;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ExecutorService llmExecutor;
+
+    @Autowired
+    private ConversationCache conversationCache;
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public void refreshIfNeeded(Conversation conversation) {
+        if (conversation.getId() == null || !promptBudgetManager.needsSummaryRefresh(conversation)) {
+            return;
+        }
+        if (!refreshing.add(conversation.getId())) {
+            return;
+        }
+
+        // Snapshot on the caller's thread; the conversation object keeps being used by the request
+        String conversationId = conversation.getId();
+        String userId = conversation.getUserId();
+        int from = PromptBudgetManager.summarizedUpTo(conversation);
+        int to = promptBudgetManager.summaryTarget(conversation);
+        String previous = PromptBudgetManager.summary(conversation);
+        List<Message> slice = new ArrayList<>(conversation.getMessages().subList(Math.min(from, to), to));
+
+        try {
+            llmExecutor.execute(() -> {
+                try {
+                    String summary = summarize(userId, previous, slice);
+                    Query query = new Query(Criteria.where("_id").is(conversationId)
+                        .orOperator(
+                            Criteria.where("meta." + PromptBudgetManager.META_SUMMARY_UPTO).exists(false),
+                            Criteria.where("meta." + PromptBudgetManager.META_SUMMARY_UPTO).lt(to)));
+                    Update update = new Update()
+                        .set("meta." + PromptBudgetManager.META_SUMMARY, summary)
+                        .set("meta." + PromptBudgetManager.META_SUMMARY_UPTO, to);
+                    if (mongoTemplate.updateFirst(query, update, Conversation.class).getModifiedCount() > 0) {
+                        conversationCache.applyPersistedMeta(conversationId, Map.of(
+                            PromptBudgetManager.META_SUMMARY, summary,
+                            PromptBudgetManager.META_SUMMARY_UPTO, to));
+                    }
+                    log.debug("Summarized messages {}..{} of conversation {}", from, to, conversationId);
+                } catch (Exception e) {
+                    log.warn("Conversation summary refresh failed for {}: {}", conversationId, e.getMessage());
+                } finally {
+                    refreshing.remove(conversationId);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(conversationId);
+            log.warn("Could not schedule conversation summary refresh: {}", e.getMessage());
+        }
+    }
+
+    private String summarize(String userId, String previous, List<Message> messages) throws Exception {
+        StringBuilder prompt = new StringBuilder(
+            "Summarize this conversation between a user and BudgetPilot, a financial advisor, for use as context " +
+            "in later turns. Keep the user's goals, decisions, figures and open questions. Write plain text, " +
+            "at most 120 words, no JSON, no markdown.\n\n");
+        if (previous != null && !previous.isBlank()) {
+            prompt.append("Summary so far:\n").append(previous).append("\n\n");
+        }
+        prompt.append("New messages:\n");
+        for (Message msg : messages) {
+            prompt.append(msg.getRole().toUpperCase()).append(": ").append(msg.getText()).append("\n");
+        }
+
+        String summary = geminiClient.callGemini(userId, prompt.toString()).trim();
+        int max = promptBudgetManager.summaryMaxChars();
+        return summary.length() > max ? summary.substring(0, max) : summary;
+    }
+}
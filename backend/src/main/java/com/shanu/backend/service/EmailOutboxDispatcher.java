@@ -0,0 +1,253 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.model.EmailOutbox;
+import com.shanu.backend.model.User;
+import com.shanu.backend.repository.EmailOutboxRepository;
+import com.shanu.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * EmailOutboxDispatcher - Queues emails in the email_outbox collection and delivers them in the background.
+ *
+ * Features:
+ * - enqueue() is a single Mongo insert, so callers (registration) never wait on SMTP
+ * - Pending rows are claimed atomically (findAndModify) so two instances never send the same row
+ * - Each batch is sent with one JavaMailSender.send(...) call, i.e. over one SMTP connection
+ * - Failed rows are retried with exponential backoff + jitter until max attempts, then marked FAILED
+ * - Verification emails are skipped if the user is already verified or no longer exists
+ *
+ * Delivery is at-least-once: if the process dies after the SMTP server accepted a message but before
+ * the row is marked SENT, the row is re-sent once its lease expires.
+ *
+ * To test locally, point spring.mail.host/spring.mail.port at an SMTP stand-in (MailHog, GreenMail, smtp4dev).
+ *
+ * Properties (defaults in brackets):
+ * - mail.outbox.batch-size [50]
+ * - mail.outbox.poll-interval-ms [2000]
+ * - mail.outbox.max-attempts [8]
+ * - mail.outbox.backoff-base-ms [30000], mail.outbox.backoff-max-ms [3600000]
+ * - mail.outbox.lease-ms [120000]: how long a claimed row is owned by one dispatcher
+ * - mail.outbox.orphan-grace-ms [300000]: how long to wait for the owning user document to appear
+ */
+@Service
+public class EmailOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.backoff-base-ms:30000}")
+    private long backoffBaseMs;
+
+    @Value("${mail.outbox.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
+    @Value("${mail.outbox.lease-ms:120000}")
+    private long leaseMs;
+
+    @Value("${mail.outbox.orphan-grace-ms:300000}")
+    private long orphanGraceMs;
+
+    /**
+     * Queue an email for delivery. Idempotent on dedupeKey: queueing the same key twice keeps the first row.
+     */
+    public EmailOutbox enqueue(EmailOutbox email) {
+        try {
+            return emailOutboxRepository.insert(email);
+        } catch (DuplicateKeyException e) {
+            logger.info("Email with dedupeKey {} already queued", email.getDedupeKey());
+            return emailOutboxRepository.findByDedupeKey(email.getDedupeKey()).orElse(email);
+        }
+    }
+
+    /**
+     * Drain due outbox rows in batches. Runs on the scheduler thread, never on a request thread.
+     */
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:2000}")
+    public void dispatchPending() {
+        // Bound the work per tick so a large backlog doesn't starve other scheduled jobs
+        for (int round = 0; round < 10; round++) {
+            List<EmailOutbox> batch = claimBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+            sendBatch(batch);
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private List<EmailOutbox> claimBatch() {
+        List<EmailOutbox> claimed = new ArrayList<>();
+        Date now = new Date();
+        Query due = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(EmailOutbox.STATUS_PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(EmailOutbox.STATUS_SENDING).and("leaseUntil").lt(now)))
+            .with(Sort.by(Sort.Direction.ASC, "nextAttemptAt"));
+        Update claim = new Update()
+            .set("status", EmailOutbox.STATUS_SENDING)
+            .set("leaseUntil", new Date(now.getTime() + leaseMs))
+            .inc("attempts", 1);
+
+        while (claimed.size() < batchSize) {
+            EmailOutbox row = mongoTemplate.findAndModify(due, claim,
+                FindAndModifyOptions.options().returnNew(true), EmailOutbox.class);
+            if (row == null) break;
+            claimed.add(row);
+        }
+        return claimed;
+    }
+
+    private void sendBatch(List<EmailOutbox> batch) {
+        List<EmailOutbox> deliverable = new ArrayList<>();
+        for (EmailOutbox row : batch) {
+            if (isStillWanted(row)) {
+                deliverable.add(row);
+            }
+        }
+        if (deliverable.isEmpty()) return;
+
+        SimpleMailMessage[] messages = new SimpleMailMessage[deliverable.size()];
+        for (int i = 0; i < deliverable.size(); i++) {
+            EmailOutbox row = deliverable.get(i);
+            SimpleMailMessage mail = new SimpleMailMessage();
+            mail.setTo(row.getTo());
+            mail.setSubject(row.getSubject());
+            mail.setText(row.getBody());
+            messages[i] = mail;
+        }
+
+        Map<Object, Exception> failed = Collections.emptyMap();
+        try {
+            // JavaMailSenderImpl opens one transport for the whole array
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                // Connection-level failure before any message was attempted
+                failed = new IdentityHashMap<>();
+                for (SimpleMailMessage m : messages) failed.put(m, e);
+            }
+        } catch (MailException e) {
+            logger.warn("SMTP batch of {} failed: {}", messages.length, e.getMessage());
+            failed = new IdentityHashMap<>();
+            for (SimpleMailMessage m : messages) failed.put(m, e);
+        }
+
+        for (int i = 0; i < deliverable.size(); i++) {
+            EmailOutbox row = deliverable.get(i);
+            Exception error = failed.get(messages[i]);
+            if (error == null) {
+                markSent(row);
+            } else {
+                scheduleRetry(row, error.getMessage());
+            }
+        }
+        logger.info("Email outbox batch done: {} sent, {} failed", deliverable.size() - failed.size(), failed.size());
+    }
+
+    /**
+     * Verification emails are only useful while the user exists and is still unverified.
+     */
+    private boolean isStillWanted(EmailOutbox row) {
+        if (row.getVerificationToken() == null || row.getUserId() == null) {
+            return true;
+        }
+        Optional<User> userOpt = userRepository.findById(row.getUserId());
+        if (userOpt.isEmpty()) {
+            // The outbox row is written before the user; give the user insert time to land
+            if (System.currentTimeMillis() - row.getCreatedAt().getTime() > orphanGraceMs) {
+                finish(row, EmailOutbox.STATUS_CANCELLED, "User no longer exists");
+            } else {
+                release(row, 5000);
+            }
+            return false;
+        }
+        User user = userOpt.get();
+        if (user.isEmailVerified() || !row.getVerificationToken().equals(user.getVerificationToken())) {
+            finish(row, EmailOutbox.STATUS_CANCELLED, "Verification no longer pending");
+            return false;
+        }
+        return true;
+    }
+
+    private void markSent(EmailOutbox row) {
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(row.getId()).and("status").is(EmailOutbox.STATUS_SENDING)),
+            new Update().set("status", EmailOutbox.STATUS_SENT).set("sentAt", new Date()).unset("leaseUntil").unset("lastError"),
+            EmailOutbox.class);
+    }
+
+    private void scheduleRetry(EmailOutbox row, String error) {
+        if (row.getAttempts() >= maxAttempts) {
+            logger.error("Giving up on email {} to {} after {} attempts: {}", row.getId(), row.getTo(), row.getAttempts(), error);
+            finish(row, EmailOutbox.STATUS_FAILED, error);
+            return;
+        }
+        long backoff = Math.min(backoffMaxMs, backoffBaseMs * (1L << Math.min(20, row.getAttempts() - 1)));
+        long jitter = (long) (Math.random() * backoff * 0.2);
+        logger.warn("Email {} attempt {} failed, retrying in {} ms: {}", row.getId(), row.getAttempts(), backoff + jitter, error);
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(row.getId()).and("status").is(EmailOutbox.STATUS_SENDING)),
+            new Update().set("status", EmailOutbox.STATUS_PENDING)
+                .set("nextAttemptAt", new Date(System.currentTimeMillis() + backoff + jitter))
+                .set("lastError", error)
+                .unset("leaseUntil"),
+            EmailOutbox.class);
+    }
+
+    /**
+     * Put a claimed row back without counting the attempt.
+     */
+    private void release(EmailOutbox row, long delayMs) {
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(row.getId()).and("status").is(EmailOutbox.STATUS_SENDING)),
+            new Update().set("status", EmailOutbox.STATUS_PENDING)
+                .set("nextAttemptAt", new Date(System.currentTimeMillis() + delayMs))
+                .inc("attempts", -1)
+                .unset("leaseUntil"),
+            EmailOutbox.class);
+    }
+
+    private void finish(EmailOutbox row, String status, String reason) {
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(row.getId())),
+            new Update().set("status", status).set("lastError", reason).unset("leaseUntil"),
+            EmailOutbox.class);
+    }
+}
@@ -0,0 +1,113 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.event.TransactionChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Per-user cache of the rendered "USER'S FINANCIAL DATA" block that ChatService puts in every prompt.
+ *
+ * The block only changes when the user's transactions change, so it is rebuilt on the first chat
+ * turn after a TransactionChangedEvent and served from memory otherwise. A build that races with
+ * an invalidation is returned to its caller but not stored.
+ *
+ * Each user's invalidation counter lives in their LRU slot, so it is dropped with the slot and the
+ * cache holds at most chat.context-cache.max-entries users. A build whose slot was evicted while it
+ * ran is not stored either.
+ *
+ * Metrics: chat.context.cache (counter, tag result=hit|miss).
+ */
+@Component
+public class FinancialContextCache {
+
+    @Value("${chat.context-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.context-cache.ttl-ms:900000}")
+    private long ttlMs;
+
+    @Value("${chat.context-cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter hits;
+    private Counter misses;
+
+    private record Entry(String context, long expiresAt) {}
+
+    // Guarded by entries. generation is bumped on every invalidation, so a build that started
+    // earlier can tell it is stale; entry is null until built and after an invalidation
+    private static final class Slot {
+        long generation;
+        Entry entry;
+    }
+
+    // Guarded by itself; access-ordered for LRU eviction
+    private final LinkedHashMap<String, Slot> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Slot> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    @PostConstruct
+    void init() {
+        hits = meterRegistry.counter("chat.context.cache", "result", "hit");
+        misses = meterRegistry.counter("chat.context.cache", "result", "miss");
+    }
+
+    /**
+     * The cached context for the user, or the loader's result (cached for next time).
+     */
+    public String get(String userId, Supplier<String> loader) {
+        if (!enabled) return loader.get();
+
+        Slot slot;
+        long generation;
+        synchronized (entries) {
+            slot = entries.computeIfAbsent(userId, k -> new Slot());
+            Entry entry = slot.entry;
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                hits.increment();
+                return entry.context();
+            }
+            generation = slot.generation;
+        }
+        misses.increment();
+
+        String context = loader.get();
+        synchronized (entries) {
+            if (entries.get(userId) == slot && slot.generation == generation) {
+                slot.entry = new Entry(context, System.currentTimeMillis() + ttlMs);
+            }
+        }
+        return context;
+    }
+
+    public void invalidate(String userId) {
+        synchronized (entries) {
+            // No slot: nothing cached and no build in flight that could still store
+            Slot slot = entries.get(userId);
+            if (slot != null) {
+                slot.generation++;
+                slot.entry = null;
+            }
+        }
+    }
+
+    @EventListener
+    public void onTransactionsChanged(TransactionChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+}
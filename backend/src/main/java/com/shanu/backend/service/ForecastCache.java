@@ -0,0 +1,234 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.event.TransactionChangedEvent;
+import com.shanu.backend.model.Forecast;
+import com.shanu.backend.model.Transaction;
+import com.shanu.backend.repository.ForecastRepository;
+import com.shanu.backend.repository.TransactionRepository;
+import com.shanu.backend.util.Hashing;
+import com.shanu.backend.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Next-month forecasts, computed once per change of the user's data instead of on every GET.
+ *
+ * Each user has one stored forecast per forecast month (upserted, never re-inserted), tagged with a
+ * data version: a hash of the model settings and the count and newest createdAt/updatedAt of the
+ * transactions in the history window. Lookups, cheapest first:
+ * - memory, while the user's generation (bumped by TransactionChangedEvent) is unchanged and the
+ *   entry is younger than forecast.cache.ttl-ms (which bounds staleness across instances);
+ * - the stored forecast, if its data version matches (one aggregation, no transactions loaded);
+ * - otherwise a recompute, stored and cached.
+ *
+ * A transaction change drops the user's entry and schedules a recompute forecast.recompute.delay-ms
+ * later, so a burst of edits (an import) costs one computation and the next page view is a hit.
+ * The change counter (generation) lives in the user's LRU slot, so it is evicted with it and memory
+ * stays bounded by forecast.cache.max-entries.
+ *
+ * Metrics: analytics.forecast.cache (counter, tag result=hit|stored|computed).
+ */
+@Component
+public class ForecastCache {
+
+    @Value("${forecast.cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    @Value("${forecast.cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${forecast.recompute.enabled:true}")
+    private boolean recomputeEnabled;
+
+    @Value("${forecast.recompute.delay-ms:5000}")
+    private long recomputeDelayMs;
+
+    @Autowired
+    private ForecastService forecastService;
+
+    @Autowired
+    private ForecastRepository forecastRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ExecutorService llmExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private static final Logger log = LoggerFactory.getLogger(ForecastCache.class);
+
+    private record Entry(Forecast forecast, long expiresAt) {}
+
+    // Guarded by entries. generation is bumped on every change, so a computation that started
+    // earlier can tell it is stale; entry is null until loaded and after a change
+    private static final class Slot {
+        long generation;
+        Entry entry;
+    }
+
+    // Guarded by itself; access-ordered for LRU eviction (a user's generation goes with their slot)
+    private final LinkedHashMap<String, Slot> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Slot> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    // userId -> time the debounced recompute is due
+    private final Map<String, Long> pendingRecomputes = new ConcurrentHashMap<>();
+
+    private final SingleFlight<String, Forecast> flights = new SingleFlight<>();
+
+    /**
+     * The user's forecast for next month, from memory, the database or a fresh computation.
+     */
+    public Forecast get(String userId) throws Exception {
+        LocalDateTime forecastMonth = nextForecastMonth();
+        Slot slot;
+        long generation;
+        synchronized (entries) {
+            slot = entries.computeIfAbsent(userId, k -> new Slot());
+            Entry entry = slot.entry;
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()
+                    && forecastMonth.equals(entry.forecast().getForecastMonth())) {
+                count("hit");
+                return entry.forecast();
+            }
+            generation = slot.generation;
+        }
+        // Concurrent misses for one user (page view + background recompute) share one load
+        return flights.run(userId, () -> load(userId, forecastMonth, slot, generation));
+    }
+
+    /**
+     * The user's transactions in the forecast history window (forecast.history-months).
+     */
+    public List<Transaction> loadHistory(String userId) {
+        return transactionRepository.findByUserIdAndDateGreaterThanEqual(userId, historyStart());
+    }
+
+    private Forecast load(String userId, LocalDateTime forecastMonth, Slot slot, long generation) {
+        String version = dataVersion(userId);
+        Forecast stored = forecastRepository.findByUserIdAndForecastMonth(userId, forecastMonth);
+        Forecast forecast;
+        if (stored != null && version.equals(stored.getDataVersion())) {
+            count("stored");
+            forecast = stored;
+        } else {
+            count("computed");
+            forecast = compute(userId, forecastMonth, version);
+            forecastRepository.upsert(forecast);
+        }
+        synchronized (entries) {
+            // Not if the user changed data meanwhile, or the slot was evicted (its generation is gone)
+            if (entries.get(userId) == slot && slot.generation == generation) {
+                slot.entry = new Entry(forecast, System.currentTimeMillis() + ttlMs);
+            }
+        }
+        return forecast;
+    }
+
+    private Forecast compute(String userId, LocalDateTime forecastMonth, String version) {
+        ForecastService.ForecastResult result = forecastService.forecast(loadHistory(userId), null);
+        Forecast forecast = new Forecast(userId, forecastMonth, result.forecast(), result.trendSlope(), result.total());
+        forecast.setCategoryModel(result.models());
+        forecast.setDataVersion(version);
+        return forecast;
+    }
+
+    /**
+     * Fingerprint of what the forecast depends on, computed in the database: any insert, edit or
+     * delete (TransactionService stamps createdAt/updatedAt) or a transaction leaving the window changes it.
+     */
+    private String dataVersion(String userId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("userId").is(userId).and("date").gte(historyStart())),
+            Aggregation.group().count().as("count").max("createdAt").as("maxCreatedAt").max("updatedAt").as("maxUpdatedAt"));
+        Document stats = mongoTemplate.aggregate(aggregation, Transaction.class, Document.class).getUniqueMappedResult();
+        String fingerprint = stats == null ? "0"
+            : stats.get("count") + ":" + millis(stats.get("maxCreatedAt")) + ":" + millis(stats.get("maxUpdatedAt"));
+        return Hashing.sha256Hex(forecastService.configVersion(), fingerprint);
+    }
+
+    private static String millis(Object date) {
+        return date instanceof Date d ? Long.toString(d.getTime()) : "-";
+    }
+
+    // Midnight on the first of the window's first month, so that month is loaded whole
+    private Date historyStart() {
+        LocalDate startDate = forecastService.historyStart(YearMonth.now());
+        return Date.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDateTime nextForecastMonth() {
+        return YearMonth.now().plusMonths(1).atDay(1).atStartOfDay();
+    }
+
+    @EventListener
+    public void onTransactionsChanged(TransactionChangedEvent event) {
+        String userId = event.getUserId();
+        if (userId == null) return;
+        synchronized (entries) {
+            // No slot: nothing cached and no load in flight that could still store
+            Slot slot = entries.get(userId);
+            if (slot != null) {
+                slot.generation++;
+                slot.entry = null;
+            }
+        }
+        if (recomputeEnabled) {
+            // Later edits push the recompute back: one computation per burst
+            pendingRecomputes.put(userId, System.currentTimeMillis() + recomputeDelayMs);
+        }
+    }
+
+    /**
+     * Start the recomputes that are due; they run on virtual threads, off the scheduler.
+     */
+    @Scheduled(fixedDelayString = "${forecast.recompute.poll-ms:1000}")
+    public void recomputeDue() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> pending : pendingRecomputes.entrySet()) {
+            String userId = pending.getKey();
+            if (pending.getValue() > now || !pendingRecomputes.remove(userId, pending.getValue())) continue;
+            llmExecutor.execute(() -> {
+                try {
+                    get(userId);
+                } catch (Exception e) {
+                    log.warn("Forecast recompute failed for user {}: {}", userId, e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("analytics.forecast.cache", "result", result).increment();
+    }
+}
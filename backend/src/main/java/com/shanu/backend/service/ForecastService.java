@@ -1,127 +1,269 @@
 package com.shanu.backend.service;
 
+import com.shanu.backend.forecast.ExpenseMatrix;
+import com.shanu.backend.forecast.ForecastModel;
+import com.shanu.backend.forecast.HoltTrend;
+import com.shanu.backend.forecast.HoltWinters;
+import com.shanu.backend.forecast.ModelSelector;
+import com.shanu.backend.forecast.SimpleExponentialSmoothing;
+import com.shanu.backend.forecast.WeightedMovingAverage;
 import com.shanu.backend.model.Transaction;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Next-month expense forecasts per category.
+ *
+ * Models (forecast.* properties): wma (3-month weighted average), ses, holt, damped and
+ * holt-winters (needs 2 * forecast.holt-winters.period months of history). Each category uses
+ * forecast.category-models (e.g. "Rent:wma,Travel:holt-winters") if listed there, else
+ * forecast.model; "auto" backtests every applicable model on the last forecast.backtest-months
+ * months and keeps the most accurate. A category without enough history for its model falls back
+ * to wma.
+ *
+ * History is the last forecast.history-months complete months. The current month is still in
+ * progress and would read as a drop in spending, so it is left out and next month is forecast two
+ * steps past the last complete one.
+ */
 @Service
 public class ForecastService {
 
+    public static final String AUTO = "auto";
+
+    // Last complete month -> (current month) -> next month
+    private static final int HORIZON = 2;
+
+    @Value("${forecast.history-months:24}")
+    private int historyMonths;
+
+    @Value("${forecast.model:auto}")
+    private String defaultModel;
+
+    @Value("${forecast.category-models:}")
+    private String categoryModelsSpec;
+
+    @Value("${forecast.backtest-months:3}")
+    private int backtestMonths;
+
+    @Value("${forecast.ses.alpha:0.5}")
+    private double sesAlpha;
+
+    @Value("${forecast.holt.alpha:0.5}")
+    private double holtAlpha;
+
+    @Value("${forecast.holt.beta:0.3}")
+    private double holtBeta;
+
+    @Value("${forecast.damped.phi:0.9}")
+    private double dampedPhi;
+
+    @Value("${forecast.holt-winters.alpha:0.4}")
+    private double hwAlpha;
+
+    @Value("${forecast.holt-winters.beta:0.1}")
+    private double hwBeta;
+
+    @Value("${forecast.holt-winters.gamma:0.3}")
+    private double hwGamma;
+
+    @Value("${forecast.holt-winters.period:12}")
+    private int hwPeriod;
+
+    private List<ForecastModel> models;
+    private Map<String, ForecastModel> modelsByName;
+    private Map<String, String> categoryModels;
+
     /**
-     * Forecast next month expenses using rolling average and trend
+     * Per-category forecast, trend (least-squares slope per month) and the model that produced it.
      */
-    public Map<String, Double> forecastNextMonth(List<Transaction> transactionHistory) {
-        // Group by month and category
-        Map<YearMonth, Map<String, Double>> monthlyByCategory = groupTransactionsByMonthAndCategory(transactionHistory);
-        
-        Map<String, Double> forecast = new HashMap<>();
-        
-        for (String category : extractCategories(transactionHistory)) {
-            List<Double> historicalValues = extractCategoryHistory(monthlyByCategory, category);
-            
-            if (historicalValues.size() >= 2) {
-                // Use weighted moving average (recent months weighted more)
-                Double predicted = weightedMovingAverage(historicalValues, 3);
-                forecast.put(category, predicted);
-            }
+    public record ForecastResult(Map<String, Double> forecast, Map<String, Double> trendSlope, Map<String, String> models) {
+        public double total() {
+            double total = 0.0;
+            for (double value : forecast.values()) total += value;
+            return total;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        // wma first: it is the fallback and wins backtest ties
+        models = List.of(
+            new WeightedMovingAverage(3),
+            new SimpleExponentialSmoothing(sesAlpha),
+            HoltTrend.linear(holtAlpha, holtBeta),
+            HoltTrend.damped(holtAlpha, holtBeta, dampedPhi),
+            new HoltWinters(hwAlpha, hwBeta, hwGamma, hwPeriod));
+        modelsByName = new LinkedHashMap<>();
+        models.forEach(m -> modelsByName.put(m.name(), m));
+
+        categoryModels = new HashMap<>();
+        for (String pair : categoryModelsSpec.split(",")) {
+            int colon = pair.lastIndexOf(':');
+            if (colon <= 0) continue;
+            String model = pair.substring(colon + 1).trim();
+            requireModel(model);
+            categoryModels.put(pair.substring(0, colon).trim(), model);
         }
-        
-        return forecast;
+        requireModel(defaultModel);
     }
 
     /**
-     * Weighted moving average (recent values weighted more)
+     * Identifies the model settings, so stored forecasts made with other settings are recomputed.
      */
-    private Double weightedMovingAverage(List<Double> values, int window) {
-        if (values.size() < window) {
-            return values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-        }
+    public String configVersion() {
+        return String.join("|", String.valueOf(historyMonths), defaultModel, categoryModelsSpec, String.valueOf(backtestMonths),
+            String.valueOf(sesAlpha), String.valueOf(holtAlpha), String.valueOf(holtBeta), String.valueOf(dampedPhi),
+            String.valueOf(hwAlpha), String.valueOf(hwBeta), String.valueOf(hwGamma), String.valueOf(hwPeriod));
+    }
 
-        List<Double> recentValues = values.subList(Math.max(0, values.size() - window), values.size());
-        Double weightSum = 0.0;
-        Double sum = 0.0;
+    public Set<String> modelNames() {
+        return modelsByName.keySet();
+    }
 
-        for (int i = 0; i < recentValues.size(); i++) {
-            double weight = (i + 1.0) / recentValues.size(); // recent values get higher weight
-            sum += recentValues.get(i) * weight;
-            weightSum += weight;
-        }
+    /**
+     * First day of the history window used when currentMonth is the current month: history starts
+     * forecast.history-months whole months back, so no month in it is partial at the start.
+     */
+    public LocalDate historyStart(YearMonth currentMonth) {
+        return currentMonth.minusMonths(historyMonths).atDay(1);
+    }
 
-        return weightSum > 0 ? sum / weightSum : 0.0;
+    /**
+     * Forecast next month expenses with the configured models.
+     */
+    public Map<String, Double> forecastNextMonth(List<Transaction> transactionHistory) {
+        return forecast(transactionHistory, null).forecast();
     }
 
     /**
-     * Linear trend analysis (simple least-squares fit)
+     * Forecast next month per category. model overrides the configuration for every category
+     * (a model name or "auto"); null uses forecast.category-models / forecast.model.
+     * Works on the chronologically ordered month x category matrix (zero-filled gaps).
      */
-    public Double linearTrendSlope(List<Double> values) {
-        if (values.size() < 2) return 0.0;
+    public ForecastResult forecast(List<Transaction> transactionHistory, String model) {
+        return forecast(transactionHistory, model, YearMonth.now());
+    }
 
-        int n = values.size();
-        Double sumX = 0.0, sumY = 0.0, sumXY = 0.0, sumX2 = 0.0;
+    /**
+     * As forecast(transactionHistory, model), for the month after currentMonth.
+     */
+    ForecastResult forecast(List<Transaction> transactionHistory, String model, YearMonth currentMonth) {
+        if (model != null) requireModel(model);
+        ExpenseMatrix matrix = completeMonths(transactionHistory, currentMonth);
+        int months = matrix.months();
 
-        for (int i = 0; i < n; i++) {
-            Double x = (double) i;
-            Double y = values.get(i);
-            sumX += x;
-            sumY += y;
-            sumXY += x * y;
-            sumX2 += x * x;
+        Map<String, Double> forecast = new HashMap<>();
+        Map<String, Double> slopes = new HashMap<>();
+        Map<String, String> used = new HashMap<>();
+        if (months < 2) {
+            return new ForecastResult(forecast, slopes, used);
+        }
+
+        double[] series = new double[months];
+        int holdout = ModelSelector.holdoutFor(months, backtestMonths, HORIZON + 1);
+        for (int c = 0; c < matrix.categoryCount(); c++) {
+            String category = matrix.category(c);
+            matrix.series(c, series);
+            String name = model != null ? model : categoryModels.getOrDefault(category, defaultModel);
+
+            String chosen;
+            double predicted;
+            ForecastModel fixed = modelsByName.get(name);
+            if (fixed != null && months >= fixed.minMonths()) {
+                chosen = fixed.name();
+                predicted = fixed.forecast(series, months, HORIZON);
+            } else if (AUTO.equals(name)) {
+                ModelSelector.Score best = ModelSelector.select(models, series, months, holdout, HORIZON);
+                chosen = best.model();
+                predicted = best.forecast();
+            } else {
+                // Not enough history for the requested model
+                chosen = models.get(0).name();
+                predicted = models.get(0).forecast(series, months, HORIZON);
+            }
+
+            // Trend models can extrapolate below zero; an expense can't
+            forecast.put(category, Math.max(0.0, predicted));
+            slopes.put(category, linearTrendSlope(series, months));
+            used.put(category, chosen);
         }
 
-        Double slope = (n * sumXY - sumX * sumY) / (n * sumX2 - sumX * sumX);
-        return !slope.isInfinite() && !slope.isNaN() ? slope : 0.0;
+        return new ForecastResult(forecast, slopes, used);
     }
 
     /**
-     * Group transactions by month and category
+     * Every model's forecast and backtest error per category (null error: not enough history to
+     * backtest), for comparing models on a user's data.
      */
-    private Map<YearMonth, Map<String, Double>> groupTransactionsByMonthAndCategory(List<Transaction> transactions) {
-        Map<YearMonth, Map<String, Double>> result = new HashMap<>();
-
-        for (Transaction t : transactions) {
-            if (t.getDate() == null) continue;
-            if (t.getAmount() != null && t.getAmount() > 0 && !"income".equalsIgnoreCase(t.getCategory())) {
-                YearMonth month = YearMonth.from(t.getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
-                result.computeIfAbsent(month, k -> new HashMap<>())
-                    .merge(t.getCategory(), Math.abs(t.getAmount()), Double::sum);
-            }
+    public Map<String, List<ModelSelector.Score>> compareModels(List<Transaction> transactionHistory) {
+        ExpenseMatrix matrix = completeMonths(transactionHistory, YearMonth.now());
+        int months = matrix.months();
+        Map<String, List<ModelSelector.Score>> result = new TreeMap<>();
+        if (months < 2) {
+            return result;
         }
 
+        double[] series = new double[months];
+        int holdout = ModelSelector.holdoutFor(months, backtestMonths, HORIZON + 1);
+        for (int c = 0; c < matrix.categoryCount(); c++) {
+            matrix.series(c, series);
+            List<ModelSelector.Score> scores = new ArrayList<>(models.size());
+            for (ForecastModel model : models) {
+                if (months < model.minMonths()) continue;
+                double mae = ModelSelector.backtest(model, series, months, holdout, HORIZON);
+                scores.add(new ModelSelector.Score(model.name(), Math.max(0.0, model.forecast(series, months, HORIZON)),
+                    Double.isNaN(mae) ? null : mae));
+            }
+            result.put(matrix.category(c), scores);
+        }
         return result;
     }
 
-    /**
-     * Extract unique categories from transactions
-     */
-    private Set<String> extractCategories(List<Transaction> transactions) {
-        return transactions.stream()
-            .map(Transaction::getCategory)
-            .filter(cat -> !cat.equalsIgnoreCase("income"))
-            .collect(Collectors.toSet());
+    private ExpenseMatrix completeMonths(List<Transaction> transactionHistory, YearMonth currentMonth) {
+        return ExpenseMatrix.of(transactionHistory, ZoneId.systemDefault(),
+            YearMonth.from(historyStart(currentMonth)), currentMonth.minusMonths(1));
+    }
+
+    private void requireModel(String model) {
+        if (!AUTO.equals(model) && !modelsByName.containsKey(model)) {
+            throw new IllegalArgumentException("Unknown forecast model '" + model + "'; expected one of " + modelsByName.keySet() + " or auto");
+        }
     }
 
     /**
-     * Extract historical values for a category
+     * Linear trend of the first n values (simple least-squares fit), per month
      */
-    private List<Double> extractCategoryHistory(Map<YearMonth, Map<String, Double>> monthlyByCategory, String category) {
-        return monthlyByCategory.values().stream()
-            .map(m -> m.getOrDefault(category, 0.0))
-            .collect(Collectors.toList());
+    public static double linearTrendSlope(double[] values, int n) {
+        if (n < 2) return 0.0;
+
+        double sumX = 0.0, sumY = 0.0, sumXY = 0.0, sumX2 = 0.0;
+        for (int i = 0; i < n; i++) {
+            double y = values[i];
+            sumX += i;
+            sumY += y;
+            sumXY += i * y;
+            sumX2 += (double) i * i;
+        }
+
+        double slope = (n * sumXY - sumX * sumY) / (n * sumX2 - sumX * sumX);
+        return !Double.isInfinite(slope) && !Double.isNaN(slope) ? slope : 0.0;
     }
 
     /**
-     * Calculate rolling average
+     * Average of the last window of the first n values
      */
-    public Double rollingAverage(List<Double> values, int window) {
-        if (values.isEmpty() || window <= 0) return 0.0;
-        int start = Math.max(0, values.size() - window);
-        return values.subList(start, values.size())
-            .stream()
-            .mapToDouble(Double::doubleValue)
-            .average()
-            .orElse(0.0);
+    public static double rollingAverage(double[] values, int n, int window) {
+        if (n <= 0 || window <= 0) return 0.0;
+        int start = Math.max(0, n - window);
+        double sum = 0.0;
+        for (int i = start; i < n; i++) {
+            sum += values[i];
+        }
+        return sum / (n - start);
     }
 }
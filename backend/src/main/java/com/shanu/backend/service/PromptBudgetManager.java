@@ -0,0 +1,105 @@
+package com.shanu.backend.service;
+
+import com.shanu.backend.config.ChatProperties;
+import com.shanu.backend.model.Conversation;
+import com.shanu.backend.model.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps chat prompts under a token budget (chat.prompt.token-budget).
+ *
+ * The fixed part of the prompt (system prompt, financial context, instructions) is bounded on its
+ * own; what grows with a long chat is the history. The history section is therefore made of:
+ * - a rolling summary of older turns, kept in Conversation.meta by ConversationSummarizer
+ * - the raw messages after the summary, newest first, as many as fit in the remaining budget
+ *   (at least chat.prompt.min-recent-messages)
+ *
+ * Messages older than the newest chat.prompt.max-recent-messages are folded into the summary in
+ * batches; until a batch is summarized its messages stay in the raw history, budget permitting.
+ *
+ * Tokens are estimated as characters / 4, which is close enough for budgeting Gemini prompts.
+ */
+@Component
+public class PromptBudgetManager {
+
+    static final String META_SUMMARY = "history_summary";
+    static final String META_SUMMARY_UPTO = "history_summary_upto";
+
+    private final ChatProperties.Prompt config;
+
+    public PromptBudgetManager(ChatProperties chatProperties) {
+        this.config = chatProperties.getPrompt();
+    }
+
+    public static int estimateTokens(CharSequence text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    /**
+     * Render the conversation history section for a prompt whose fixed part is fixedTokens long.
+     */
+    public String renderHistory(Conversation conversation, int fixedTokens) {
+        List<Message> messages = conversation.getMessages();
+        int size = messages == null ? 0 : messages.size();
+        int summarizedUpTo = Math.min(summarizedUpTo(conversation), size);
+        String summary = summary(conversation);
+
+        StringBuilder history = new StringBuilder();
+        int remaining = config.getTokenBudget() - fixedTokens;
+        if (summary != null && !summary.isBlank()) {
+            history.append("Summary of earlier conversation: ").append(summary).append("\n");
+            remaining -= estimateTokens(history);
+        }
+
+        // Walk back from the newest message; stop at the summary or the budget
+        Deque<String> lines = new ArrayDeque<>();
+        for (int i = size - 1; i >= summarizedUpTo; i--) {
+            Message msg = messages.get(i);
+            String line = msg.getRole().toUpperCase() + ": " + msg.getText() + "\n";
+            int cost = estimateTokens(line);
+            if (cost > remaining && lines.size() >= Math.max(1, config.getMinRecentMessages())) {
+                break;
+            }
+            lines.addFirst(line);
+            remaining -= cost;
+        }
+        lines.forEach(history::append);
+        return history.toString();
+    }
+
+    /**
+     * Index up to which messages should be summarized: everything older than the raw window.
+     */
+    public int summaryTarget(Conversation conversation) {
+        int size = conversation.getMessages() == null ? 0 : conversation.getMessages().size();
+        return Math.max(0, size - config.getMaxRecentMessages());
+    }
+
+    /**
+     * Whether enough messages have left the raw window to make a new summary worthwhile.
+     */
+    public boolean needsSummaryRefresh(Conversation conversation) {
+        return summaryTarget(conversation) - summarizedUpTo(conversation) >= config.getSummaryRefreshEvery();
+    }
+
+    public int summaryMaxChars() {
+        return config.getSummaryMaxChars();
+    }
+
+    public static String summary(Conversation conversation) {
+        Map<String, Object> meta = conversation.getMeta();
+        Object value = meta == null ? null : meta.get(META_SUMMARY);
+        return value == null ? null : value.toString();
+    }
+
+    public static int summarizedUpTo(Conversation conversation) {
+        Map<String, Object> meta = conversation.getMeta();
+        Object value = meta == null ? null : meta.get(META_SUMMARY_UPTO);
+        return value instanceof Number n ? n.intValue() : 0;
+    }
+}
@@ -1,8 +1,10 @@
 package com.shanu.backend.service;
 
+import com.shanu.backend.event.TransactionChangedEvent;
 import com.shanu.backend.model.Transaction;
 import com.shanu.backend.repository.TransactionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -13,11 +15,16 @@ public class TransactionService {
     @Autowired
     private TransactionRepository transactionRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Create Transaction
     public Transaction addTransaction(Transaction txn) {
         txn.setCreatedAt(new Date());
         txn.setUpdatedAt(new Date());
-        return transactionRepository.save(txn);
+        Transaction saved = transactionRepository.save(txn);
+        eventPublisher.publishEvent(new TransactionChangedEvent(saved.getUserId()));
+        return saved;
     }
 
     // Get All Transactions for User
@@ -37,11 +44,15 @@ public class TransactionService {
         existing.setDate(updatedTxn.getDate());
         existing.setUpdatedAt(new Date());
 
-        return transactionRepository.save(existing);
+        Transaction saved = transactionRepository.save(existing);
+        eventPublisher.publishEvent(new TransactionChangedEvent(saved.getUserId()));
+        return saved;
     }
 
     // Delete Transaction
     public void deleteTransaction(String id) {
+        Optional<Transaction> existing = transactionRepository.findById(id);
         transactionRepository.deleteById(id);
+        existing.ifPresent(txn -> eventPublisher.publishEvent(new TransactionChangedEvent(txn.getUserId())));
     }
-}
\ No newline at end of file
+}
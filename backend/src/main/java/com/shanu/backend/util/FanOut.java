@@ -0,0 +1,122 @@
+package com.shanu.backend.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs independent blocking lookups of one request concurrently, each on its own virtual thread.
+ *
+ * A small stand-in for StructuredTaskScope.ShutdownOnFailure (still a preview API on Java 21):
+ * <pre>
+ * try (FanOut fanOut = FanOut.withDeadline(Duration.ofSeconds(5))) {
+ *     FanOut.Task&lt;A&gt; a = fanOut.fork(() -&gt; loadA());
+ *     FanOut.Task&lt;B&gt; b = fanOut.fork(() -&gt; loadB());
+ *     fanOut.join();
+ *     use(a.get(), b.get());
+ * }
+ * </pre>
+ * join() waits for all tasks; the first failure cancels (interrupts) the others and is rethrown
+ * unchanged, and passing the deadline cancels everything and throws TimeoutException.
+ * close() cancels whatever is still running, so no task outlives the block.
+ */
+public final class FanOut implements AutoCloseable {
+
+    public static final class Task<T> {
+        private final Future<T> future;
+
+        private Task(Future<T> future) {
+            this.future = future;
+        }
+
+        /**
+         * Result of a task; only valid after join() returned normally.
+         */
+        public T get() {
+            if (!future.isDone() || future.isCancelled()) {
+                throw new IllegalStateException("FanOut task read before join() completed");
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("FanOut task failed; join() should have thrown", e);
+            }
+        }
+    }
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fanout-", 0).factory());
+    private final CompletionService<Object> completion = new ExecutorCompletionService<>(executor);
+    private final List<Future<Object>> futures = new ArrayList<>();
+    private final boolean bounded;
+    private final long deadlineNanos;
+
+    private FanOut(Duration deadline) {
+        this.bounded = deadline != null && deadline.toNanos() > 0;
+        this.deadlineNanos = bounded ? System.nanoTime() + deadline.toNanos() : 0;
+    }
+
+    /**
+     * A null or non-positive deadline means "no deadline".
+     */
+    public static FanOut withDeadline(Duration deadline) {
+        return new FanOut(deadline);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Task<T> fork(Callable<T> task) {
+        Future<Object> future = completion.submit((Callable<Object>) task);
+        futures.add(future);
+        return new Task<>((Future<T>) future);
+    }
+
+    /**
+     * Wait for every forked task.
+     * @throws TimeoutException if the deadline passes first
+     * @throws Exception the first task failure, as thrown by the task
+     */
+    public void join() throws Exception {
+        for (int remaining = futures.size(); remaining > 0; remaining--) {
+            Future<Object> done;
+            if (bounded) {
+                long waitNanos = deadlineNanos - System.nanoTime();
+                done = waitNanos > 0 ? completion.poll(waitNanos, TimeUnit.NANOSECONDS) : completion.poll();
+            } else {
+                done = completion.take();
+            }
+            if (done == null) {
+                cancelAll();
+                throw new TimeoutException("Request lookups did not finish within the deadline");
+            }
+            try {
+                done.get();
+            } catch (ExecutionException e) {
+                cancelAll();
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception ex) throw ex;
+                if (cause instanceof Error err) throw err;
+                throw e;
+            }
+        }
+    }
+
+    private void cancelAll() {
+        for (Future<Object> f : futures) {
+            f.cancel(true);
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,39 @@
+package com.shanu.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Small hashing helpers for content-addressed keys (caches, request coalescing).
+ */
+public final class Hashing {
+
+    private Hashing() {}
+
+    /**
+     * SHA-256 over the parts, separated by a NUL byte so ("ab","c") and ("a","bc") differ.
+     */
+    public static String sha256Hex(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) digest.update((byte) 0);
+                if (parts[i] != null) digest.update(parts[i].getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Normalize a prompt so whitespace-only differences hash the same:
+     * unify line endings, collapse runs of spaces/tabs, trim.
+     */
+    public static String normalizePrompt(String prompt) {
+        if (prompt == null) return "";
+        return prompt.replace("\r\n", "\n").replaceAll("[ \t]+", " ").trim();
+    }
+}
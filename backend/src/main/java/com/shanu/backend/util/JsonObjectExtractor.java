@@ -0,0 +1,212 @@
+package com.shanu.backend.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Finds the first complete JSON object in LLM output: bare, wrapped in prose, or inside a
+ * ```json fence - in one pass, without regexes.
+ *
+ * Each '{' starts a candidate that is fed to Jackson's non-blocking parser; tokens are buffered
+ * until the matching '}' closes the object. If the candidate turns out not to be JSON, scanning
+ * resumes at the next '{'. Braces not followed by '"' or '}' (prose, templates) are skipped
+ * without creating a parser. '{' is a single byte in UTF-8 and never part of a multi-byte sequence,
+ * so the scan works directly on the encoded bytes.
+ *
+ * Works incrementally: feed() streamed chunks as they arrive and the object is available as soon
+ * as its closing brace has been seen. Not thread-safe; use one instance per response.
+ */
+public final class JsonObjectExtractor {
+
+    private static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
+
+    private final ObjectMapper mapper;
+
+    private byte[] buf = new byte[512];
+    private int len;            // valid bytes in buf
+    private int scan;           // where to look for the next '{' when no candidate is open
+    private int candidate = -1; // start of the open candidate, -1 if none
+    private int fed;            // bytes of buf already handed to the parser
+
+    private JsonParser parser;
+    private TokenBuffer tokens;
+    private int depth;
+    private JsonNode result;
+
+    public JsonObjectExtractor() {
+        this(DEFAULT_MAPPER);
+    }
+
+    public JsonObjectExtractor(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * First complete JSON object in text, or null if there is none.
+     */
+    public static JsonNode extractFirst(String text) {
+        JsonObjectExtractor extractor = new JsonObjectExtractor();
+        extractor.feed(text);
+        return extractor.result();
+    }
+
+    /**
+     * Add the next chunk of text. Returns the object once it is complete (and from then on
+     * ignores further input), null while still waiting.
+     */
+    public JsonNode feed(String chunk) {
+        if (result != null || chunk == null || chunk.isEmpty()) {
+            return result;
+        }
+        append(chunk.getBytes(StandardCharsets.UTF_8));
+        advance();
+        return result;
+    }
+
+    public JsonNode result() {
+        return result;
+    }
+
+    public boolean isComplete() {
+        return result != null;
+    }
+
+    private void append(byte[] bytes) {
+        if (len + bytes.length > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + bytes.length));
+        }
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void advance() {
+        while (result == null) {
+            if (candidate < 0) {
+                int start = indexOfBrace(scan);
+                if (start < 0) {
+                    // Nothing worth keeping: no object has started yet
+                    len = 0;
+                    scan = 0;
+                    return;
+                }
+                int verdict = objectStartVerdict(start);
+                if (verdict == 0) {
+                    scan = start + 1;
+                    continue;
+                }
+                if (verdict < 0) {
+                    // Can't tell yet; keep the brace and wait for the next chunk
+                    compact(start);
+                    scan = 0;
+                    return;
+                }
+                openCandidate(start);
+            } else if (fed < len) {
+                feedParser(fed, len);
+            }
+
+            try {
+                if (!pump()) {
+                    return; // need more input
+                }
+            } catch (StreamConstraintsException tooDeep) {
+                // Nested past Jackson's depth limit: every '{' up to here is inside the same runaway
+                // nesting, so skip past them instead of re-parsing each one
+                scan = Math.max(candidate + 1, (int) Math.min(len, candidate + parser.currentLocation().getByteOffset()));
+                closeCandidate();
+            } catch (IOException notJson) {
+                // Not an object after all; try the next '{'
+                scan = candidate + 1;
+                closeCandidate();
+            }
+        }
+    }
+
+    /**
+     * Cheap pre-check so prose like "{analysis}" never costs a parser: an object must continue
+     * with '"' or '}' after optional whitespace. 1 = plausible, 0 = no, -1 = need more input.
+     */
+    private int objectStartVerdict(int brace) {
+        for (int i = brace + 1; i < len; i++) {
+            byte b = buf[i];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') continue;
+            return (b == '"' || b == '}') ? 1 : 0;
+        }
+        return -1;
+    }
+
+    // Drop everything before start so the buffer only holds what may still be needed
+    private void compact(int start) {
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, len - start);
+            len -= start;
+        }
+    }
+
+    private void openCandidate(int start) {
+        compact(start);
+        candidate = 0;
+        depth = 0;
+        try {
+            parser = mapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Jackson non-blocking parser unavailable", e);
+        }
+        tokens = new TokenBuffer(mapper, false);
+        feedParser(0, len);
+    }
+
+    private void feedParser(int from, int to) {
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(buf, from, to);
+        } catch (IOException e) {
+            throw new IllegalStateException("Parser still had unread input", e);
+        }
+        fed = to;
+    }
+
+    /**
+     * Pull every token available so far. Returns true once the candidate object is complete.
+     */
+    private boolean pump() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            tokens.copyCurrentEvent(parser);
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                depth++;
+            } else if ((token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) && --depth == 0) {
+                result = mapper.readTree(tokens.asParser());
+                closeCandidate();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void closeCandidate() {
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+            // nothing to release for a byte-array parser
+        }
+        parser = null;
+        tokens = null;
+        candidate = -1;
+    }
+
+    private int indexOfBrace(int from) {
+        for (int i = from; i < len; i++) {
+            if (buf[i] == '{') return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,54 @@
+package com.shanu.backend.websocket;
+
+import com.shanu.backend.service.AuthService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Authenticates a /ws/chat connection once, during the HTTP upgrade.
+ *
+ * The JWT comes from the Authorization header or, since the browser WebSocket API can't set
+ * headers, from the token query parameter (/ws/chat?token=...). The user id is stored in the
+ * session attributes; frames on the open connection are not re-authenticated.
+ */
+@Component
+public class ChatHandshakeInterceptor implements HandshakeInterceptor {
+
+    static final String USER_ID = "userId";
+
+    @Autowired
+    private AuthService authService;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = request.getHeaders().getFirst("Authorization");
+        if (token == null) {
+            token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+        }
+        if (token == null || token.isBlank()) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        try {
+            attributes.put(USER_ID, authService.getUserFromToken(token).getId());
+            return true;
+        } catch (RuntimeException e) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
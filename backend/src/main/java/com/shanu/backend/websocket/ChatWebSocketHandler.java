@@ -0,0 +1,191 @@
+package com.shanu.backend.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shanu.backend.model.Conversation;
+import com.shanu.backend.service.ChatService;
+import com.shanu.backend.service.ChatStreamListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Chat over one WebSocket per browser tab (/ws/chat), as an alternative to the POST/SSE endpoints.
+ *
+ * Client frames (JSON text):
+ * - { "type": "message", "conversationId": "...", "text": "...", "option": "...", "afterSeq": 12, "requestId": "..." }
+ * - { "type": "resume", "conversationId": "...", "afterSeq": 12 }
+ * - { "type": "ping" }
+ *
+ * Server frames:
+ * - { "type": "token", "conversationId", "requestId", "delta" }: a fragment of the reply, in order
+ * - { "type": "message", "requestId", ... }: the persisted turn, same fields as POST /api/chat/{id}/message
+ * - { "type": "messages", ... }: answer to resume, same fields as GET /api/chat/{id}/messages
+ * - { "type": "error", "requestId", "status", "error" }: status uses the HTTP codes of the REST endpoints
+ * - { "type": "pong" }
+ *
+ * The user is authenticated once at connect (ChatHandshakeInterceptor). Turns run on llmExecutor,
+ * so the container's I/O threads only parse frames; an idle connection holds no thread at all.
+ * Replies of several turns may interleave; requestId (echoed back) tells them apart.
+ */
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+
+    @Value("${chat.ws.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${chat.ws.send-buffer-bytes:524288}")
+    private int sendBufferBytes;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private ExecutorService llmExecutor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final Logger log = LoggerFactory.getLogger(ChatWebSocketHandler.class);
+
+    // Sends come from several turn threads; the decorator serializes them per session
+    private final ConcurrentHashMap<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        sessions.put(session.getId(), new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, sendBufferBytes));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession rawSession, TextMessage frame) {
+        WebSocketSession session = sessions.getOrDefault(rawSession.getId(), rawSession);
+        String userId = (String) session.getAttributes().get(ChatHandshakeInterceptor.USER_ID);
+
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(frame.getPayload());
+        } catch (Exception e) {
+            sendError(session, null, 400, "Frame is not valid JSON");
+            return;
+        }
+        String type = request.path("type").asText("");
+        String requestId = request.hasNonNull("requestId") ? request.get("requestId").asText() : null;
+        String conversationId = request.path("conversationId").asText(null);
+
+        switch (type) {
+            case "ping" -> send(session, Map.of("type", "pong"));
+            case "message" -> {
+                if (conversationId == null) {
+                    sendError(session, requestId, 400, "conversationId is required");
+                    return;
+                }
+                llmExecutor.execute(() -> runTurn(session, userId, conversationId, requestId, request));
+            }
+            case "resume" -> {
+                if (conversationId == null) {
+                    sendError(session, requestId, 400, "conversationId is required");
+                    return;
+                }
+                long afterSeq = request.path("afterSeq").asLong(0);
+                int limit = request.path("limit").asInt(100);
+                llmExecutor.execute(() -> {
+                    try {
+                        Map<String, Object> messages = new HashMap<>(chatService.fetchMessagesAfter(conversationId, userId, afterSeq, limit));
+                        messages.put("type", "messages");
+                        if (requestId != null) messages.put("requestId", requestId);
+                        send(session, messages);
+                    } catch (SecurityException e) {
+                        sendError(session, requestId, 403, e.getMessage());
+                    } catch (IllegalArgumentException e) {
+                        sendError(session, requestId, 404, e.getMessage());
+                    } catch (Exception e) {
+                        sendError(session, requestId, 500, String.valueOf(e.getMessage()));
+                    }
+                });
+            }
+            default -> sendError(session, requestId, 400, "Unknown frame type: " + type);
+        }
+    }
+
+    private void runTurn(WebSocketSession session, String userId, String conversationId, String requestId, JsonNode request) {
+        Conversation conversation;
+        try {
+            conversation = chatService.beginStreamingTurn(conversationId, userId,
+                request.path("text").asText(null), request.path("option").asText(null));
+        } catch (SecurityException e) {
+            sendError(session, requestId, 403, e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(session, requestId, 400, e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            boolean rateLimited = e.getMessage() != null && e.getMessage().contains("Rate limit");
+            sendError(session, requestId, rateLimited ? 429 : 500, String.valueOf(e.getMessage()));
+            return;
+        }
+
+        Long afterSeq = request.hasNonNull("afterSeq") ? request.get("afterSeq").asLong() : null;
+        chatService.streamReply(conversation, userId, afterSeq, new ChatStreamListener() {
+            @Override
+            public void onToken(String delta) {
+                Map<String, Object> token = new HashMap<>();
+                token.put("type", "token");
+                token.put("conversationId", conversationId);
+                token.put("requestId", requestId);
+                token.put("delta", delta);
+                send(session, token);
+            }
+
+            @Override
+            public void onComplete(Map<String, Object> response) {
+                Map<String, Object> message = new HashMap<>(response);
+                message.put("type", "message");
+                message.put("requestId", requestId);
+                send(session, message);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                sendError(session, requestId, e instanceof IllegalStateException ? 409 : 500, String.valueOf(e.getMessage()));
+            }
+        });
+    }
+
+    private void sendError(WebSocketSession session, String requestId, int status, String error) {
+        Map<String, Object> frame = new HashMap<>();
+        frame.put("type", "error");
+        frame.put("requestId", requestId);
+        frame.put("status", status);
+        frame.put("error", error);
+        send(session, frame);
+    }
+
+    private void send(WebSocketSession session, Map<String, Object> frame) {
+        if (!session.isOpen()) {
+            // Client went away; the turn is still persisted and can be fetched with resume
+            return;
+        }
+        try {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+        } catch (Exception e) {
+            log.debug("[ChatWebSocket] Could not send to session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+}
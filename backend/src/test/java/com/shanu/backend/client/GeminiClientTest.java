@@ -0,0 +1,171 @@
+package com.shanu.backend.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * GeminiClientTest - How unary calls interact with the breaker, the limiter and hedging.
+ *
+ * Tests cover:
+ * - calls refused by the open circuit don't shrink the concurrency limit
+ * - a hedge fires when the first attempt is slow; the loser is cancelled without being recorded
+ *   by the breaker or the limiter
+ * - a stream that gets a 4xx or is cancelled is neither a breaker nor a limiter failure and is not
+ *   retried as a unary call; a 5xx before the first fragment is, and falls back
+ *
+ * Mocks: LlmProvider (the upstream), LlmMetrics; the breaker and limiter are real.
+ */
+@ExtendWith(MockitoExtension.class)
+class GeminiClientTest {
+
+  @Mock private LlmProvider provider;
+  @Mock private LlmMetrics metrics;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ExecutorService llmExecutor = Executors.newVirtualThreadPerTaskExecutor();
+  private LlmCircuitBreaker circuitBreaker;
+  private LlmConcurrencyLimiter limiter;
+  private GeminiClient client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    circuitBreaker = new LlmCircuitBreaker();
+    ReflectionTestUtils.setField(circuitBreaker, "windowSize", 4);
+    ReflectionTestUtils.setField(circuitBreaker, "minCalls", 4);
+    ReflectionTestUtils.setField(circuitBreaker, "failureRateThreshold", 50);
+    ReflectionTestUtils.setField(circuitBreaker, "slowCallMs", 10000L);
+    ReflectionTestUtils.setField(circuitBreaker, "slowCallRateThreshold", 80);
+    ReflectionTestUtils.setField(circuitBreaker, "openMs", 60000L);
+    ReflectionTestUtils.setField(circuitBreaker, "halfOpenCalls", 2);
+    ReflectionTestUtils.setField(circuitBreaker, "bulkheadMaxConcurrent", 8);
+    ReflectionTestUtils.setField(circuitBreaker, "bulkheadMaxWaitMs", 10L);
+    ReflectionTestUtils.setField(circuitBreaker, "meterRegistry", meterRegistry);
+    circuitBreaker.init();
+
+    limiter = new LlmConcurrencyLimiter();
+    ReflectionTestUtils.setField(limiter, "enabled", true);
+    ReflectionTestUtils.setField(limiter, "initialLimit", 8);
+    ReflectionTestUtils.setField(limiter, "minLimit", 2);
+    ReflectionTestUtils.setField(limiter, "maxLimit", 64);
+    ReflectionTestUtils.setField(limiter, "backoffRatio", 0.75);
+    ReflectionTestUtils.setField(limiter, "slowMs", 15000L);
+    ReflectionTestUtils.setField(limiter, "meterRegistry", meterRegistry);
+    limiter.init();
+
+    when(provider.name()).thenReturn("mock");
+    client = new GeminiClient();
+    ReflectionTestUtils.setField(client, "providerName", "mock");
+    ReflectionTestUtils.setField(client, "providers", List.of(provider));
+    ReflectionTestUtils.setField(client, "hedgePercentile", 95.0);
+    ReflectionTestUtils.setField(client, "hedgeMinDelayMs", 50L);
+    ReflectionTestUtils.setField(client, "hedgeMinSamples", 0);
+    ReflectionTestUtils.setField(client, "circuitBreaker", circuitBreaker);
+    ReflectionTestUtils.setField(client, "limiter", limiter);
+    ReflectionTestUtils.setField(client, "llmExecutor", llmExecutor);
+    ReflectionTestUtils.setField(client, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(client, "metrics", metrics);
+    client.selectProvider();
+  }
+
+  @AfterEach
+  void tearDown() {
+    llmExecutor.shutdownNow();
+  }
+
+  @Test
+  void testOpenCircuitRefusalsKeepTheLimit() throws Exception {
+    for (int i = 0; i < 4; i++) circuitBreaker.onResult(0, true);
+    assertEquals(LlmCircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    for (int i = 0; i < 5; i++) {
+      assertThrows(LlmUnavailableException.class, () -> client.callGemini("prompt"));
+    }
+
+    verify(provider, never()).complete(anyString());
+    assertEquals(8.0, limiter.getLimit(), 1e-9);
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  void testSlowAttemptIsHedgedAndLoserIsNotRecorded() throws Exception {
+    ReflectionTestUtils.setField(client, "hedgeEnabled", true);
+    AtomicInteger attempts = new AtomicInteger();
+    when(provider.complete("prompt"))
+        .thenAnswer(
+            invocation -> {
+              if (attempts.incrementAndGet() == 1) {
+                Thread.sleep(10000); // stalls until the hedge wins and it is cancelled
+              }
+              return LlmResult.ok("fast");
+            });
+
+    assertEquals("fast", client.callGemini("prompt"));
+
+    assertEquals(2, attempts.get());
+    assertEquals(1.0, meterRegistry.counter("llm.hedge", "outcome", "won").count());
+    // The cancelled leg releases its limiter permit without adjusting the limit...
+    long deadline = System.currentTimeMillis() + 2000;
+    while (limiter.getInFlight() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+    assertEquals(0, limiter.getInFlight());
+    assertEquals(8.0, limiter.getLimit(), 1e-9);
+    // ...and only the winner is in the breaker's window
+    assertEquals(1, (int) ReflectionTestUtils.getField(circuitBreaker, "recorded"));
+  }
+
+  @Test
+  void testStreamClientErrorIsFinal() throws Exception {
+    when(provider.stream(eq("prompt"), any())).thenReturn(LlmResult.error(400, "prompt too long"));
+
+    for (int i = 0; i < 4; i++) {
+      assertThrows(GeminiClient.LlmCallException.class, () -> client.streamGemini(null, "prompt", delta -> {}));
+    }
+
+    verify(provider, never()).complete(anyString());
+    assertEquals(LlmCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertEquals(8.0, limiter.getLimit(), 1e-9);
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  void testCancelledStreamIsNotRecordedOrRetried() throws Exception {
+    when(provider.stream(eq("prompt"), any())).thenThrow(new InterruptedException("cancelled"));
+
+    for (int i = 0; i < 4; i++) {
+      assertThrows(InterruptedException.class, () -> client.streamGemini(null, "prompt", delta -> {}));
+    }
+
+    verify(provider, never()).complete(anyString());
+    assertEquals(0, (int) ReflectionTestUtils.getField(circuitBreaker, "recorded"));
+    assertEquals(8.0, limiter.getLimit(), 1e-9);
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  void testStreamServerErrorBeforeFirstFragmentFallsBack() throws Exception {
+    when(provider.stream(eq("prompt"), any())).thenReturn(LlmResult.error(503, "overloaded"));
+    when(provider.complete("prompt")).thenReturn(LlmResult.ok("whole answer"));
+    List<String> deltas = new ArrayList<>();
+
+    assertEquals("whole answer", client.streamGemini(null, "prompt", deltas::add));
+
+    assertEquals(List.of("whole answer"), deltas);
+    assertEquals(6.0, limiter.getLimit(), 1e-9);
+    assertEquals(0, limiter.getInFlight());
+  }
+}
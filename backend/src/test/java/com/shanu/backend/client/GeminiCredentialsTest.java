@@ -0,0 +1,91 @@
+package com.shanu.backend.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * GeminiCredentialsTest - Loading Application Default Credentials tokens.
+ *
+ * Tests cover:
+ * - a failed token fetch is retried once the backoff window has passed, and then enables AI
+ * - callers inside the backoff window don't hit the token endpoint again
+ * - missing credentials are given up on for good
+ */
+class GeminiCredentialsTest {
+
+  private final AtomicInteger loads = new AtomicInteger();
+  private final AtomicInteger fetches = new AtomicInteger();
+  private GoogleCredentials stub;
+  private GeminiCredentials credentials;
+
+  @BeforeEach
+  void setUp() {
+    // Fails its first token fetch (metadata server not up yet), then succeeds
+    stub = new GoogleCredentials() {
+      @Override
+      public AccessToken refreshAccessToken() throws IOException {
+        if (fetches.incrementAndGet() == 1) {
+          throw new IOException("metadata server unreachable");
+        }
+        return new AccessToken("ya29.token", new Date(System.currentTimeMillis() + 3_600_000));
+      }
+    };
+    credentials = credentialsLoading(stub);
+  }
+
+  @Test
+  void testFailedTokenFetchIsRetriedAfterBackoff() {
+    assertNull(credentials.adcToken());
+    assertFalse(credentials.isConfigured());
+
+    // Inside the backoff window: no new attempt
+    assertNull(credentials.adcToken());
+    assertEquals(1, fetches.get());
+
+    ReflectionTestUtils.setField(credentials, "nextAdcAttemptAt", 0L);
+    assertEquals("ya29.token", credentials.adcToken());
+    assertTrue(credentials.isConfigured());
+    assertEquals(2, fetches.get());
+    // The credentials were found once and kept
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void testMissingCredentialsAreNotRetried() {
+    credentials = credentialsLoading(null);
+
+    assertNull(credentials.adcToken());
+    ReflectionTestUtils.setField(credentials, "nextAdcAttemptAt", 0L);
+    assertNull(credentials.adcToken());
+
+    assertEquals(1, loads.get());
+    assertFalse(credentials.isConfigured());
+  }
+
+  // null: no credentials in the environment
+  private GeminiCredentials credentialsLoading(GoogleCredentials found) {
+    GeminiCredentials c = new GeminiCredentials() {
+      @Override
+      GoogleCredentials loadApplicationDefault() throws IOException {
+        loads.incrementAndGet();
+        if (found == null) {
+          throw new IOException("The Application Default Credentials are not available");
+        }
+        return found;
+      }
+    };
+    ReflectionTestUtils.setField(c, "apiKey", "");
+    ReflectionTestUtils.setField(c, "effectiveApiKey", "");
+    ReflectionTestUtils.setField(c, "mode", GeminiCredentials.AuthMode.ADC);
+    ReflectionTestUtils.setField(c, "refreshSkewMs", 300000L);
+    return c;
+  }
+}
@@ -0,0 +1,150 @@
+package com.shanu.backend.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * LlmCircuitBreakerTest - State transitions of the LLM circuit breaker.
+ *
+ * Tests cover:
+ * - CLOSED -> OPEN once the failure rate over the window reaches the threshold (not before min-calls)
+ * - OPEN refuses calls without running them, then lets trials through as HALF_OPEN after open-ms
+ * - HALF_OPEN closes after half-open-calls successes and re-opens on a failure
+ * - a cancelled call (e.g. a losing hedge leg) is neither a success nor a failure
+ */
+class LlmCircuitBreakerTest {
+
+  private static final LlmResult OK = LlmResult.ok("{}");
+  private static final LlmResult UNAVAILABLE = LlmResult.error(503, "unavailable");
+
+  private LlmCircuitBreaker breaker;
+
+  @BeforeEach
+  void setUp() {
+    breaker = new LlmCircuitBreaker();
+    ReflectionTestUtils.setField(breaker, "windowSize", 4);
+    ReflectionTestUtils.setField(breaker, "minCalls", 4);
+    ReflectionTestUtils.setField(breaker, "failureRateThreshold", 50);
+    ReflectionTestUtils.setField(breaker, "slowCallMs", 10000L);
+    ReflectionTestUtils.setField(breaker, "slowCallRateThreshold", 80);
+    ReflectionTestUtils.setField(breaker, "openMs", 60000L);
+    ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+    ReflectionTestUtils.setField(breaker, "bulkheadMaxConcurrent", 4);
+    ReflectionTestUtils.setField(breaker, "bulkheadMaxWaitMs", 10L);
+    ReflectionTestUtils.setField(breaker, "meterRegistry", new SimpleMeterRegistry());
+    breaker.init();
+  }
+
+  @AfterEach
+  void clearInterrupt() {
+    Thread.interrupted();
+  }
+
+  private LlmResult call(LlmResult result) throws Exception {
+    return breaker.execute(() -> result, LlmResult::isServerFailure);
+  }
+
+  /** A call whose thread is interrupted while it runs, like a hedge leg that lost the race. */
+  private void cancelledCall() throws Exception {
+    breaker.execute(
+        () -> {
+          Thread.currentThread().interrupt();
+          return LlmResult.cancelled();
+        },
+        LlmResult::isServerFailure);
+    assertTrue(Thread.interrupted());
+  }
+
+  private void open() throws Exception {
+    call(OK);
+    call(OK);
+    call(UNAVAILABLE);
+    call(UNAVAILABLE);
+    assertEquals(LlmCircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  /** Let open-ms elapse; the next call is a HALF_OPEN trial. */
+  private void openTimeElapses() {
+    ReflectionTestUtils.setField(breaker, "openMs", 0L);
+  }
+
+  @Test
+  void testOpensWhenFailureRateReachesThreshold() throws Exception {
+    call(UNAVAILABLE);
+    call(UNAVAILABLE);
+    call(UNAVAILABLE);
+    // Three failures, but fewer than min-calls recorded
+    assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.getState());
+
+    call(OK);
+    assertEquals(LlmCircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  @Test
+  void testOpenRefusesWithoutCalling() throws Exception {
+    open();
+    boolean[] ran = {false};
+
+    assertThrows(LlmUnavailableException.class, () -> breaker.execute(() -> ran[0] = true, null));
+    assertFalse(ran[0]);
+    assertFalse(breaker.isCallPermitted());
+  }
+
+  @Test
+  void testHalfOpenClosesAfterTrialSuccesses() throws Exception {
+    open();
+    openTimeElapses();
+
+    call(OK);
+    assertEquals(LlmCircuitBreaker.State.HALF_OPEN, breaker.getState());
+    call(OK);
+    assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  void testHalfOpenReopensOnFailure() throws Exception {
+    open();
+    openTimeElapses();
+    call(OK);
+
+    ReflectionTestUtils.setField(breaker, "openMs", 60000L);
+    call(UNAVAILABLE);
+    assertEquals(LlmCircuitBreaker.State.OPEN, breaker.getState());
+    assertThrows(LlmUnavailableException.class, () -> call(OK));
+  }
+
+  @Test
+  void testCancelledTrialIsNotAHalfOpenSuccess() throws Exception {
+    open();
+    openTimeElapses();
+
+    call(OK);
+    cancelledCall();
+    // One real success out of two: still on trial
+    assertEquals(LlmCircuitBreaker.State.HALF_OPEN, breaker.getState());
+    // ...and the cancelled call gave its trial slot back
+    assertTrue(breaker.isCallPermitted());
+
+    call(OK);
+    assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  void testCancelledCallsDoNotDiluteTheWindow() throws Exception {
+    call(UNAVAILABLE);
+    call(UNAVAILABLE);
+    cancelledCall();
+    cancelledCall();
+    assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.getState());
+
+    call(OK);
+    call(UNAVAILABLE);
+    // 3 of the 4 recorded calls failed; the cancelled ones aren't in the window
+    assertEquals(LlmCircuitBreaker.State.OPEN, breaker.getState());
+  }
+}
@@ -0,0 +1,99 @@
+package com.shanu.backend.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * LlmConcurrencyLimiterTest - The adaptive (AIMD) concurrency limit.
+ *
+ * Tests cover:
+ * - additive increase only while the limit is actually in use
+ * - multiplicative decrease on drops and slow calls, bounded by min-limit
+ * - refusal over the limit; ignore() and double completion leave the limit alone
+ */
+class LlmConcurrencyLimiterTest {
+
+  private LlmConcurrencyLimiter limiter;
+
+  @BeforeEach
+  void setUp() {
+    limiter = newLimiter(15000);
+  }
+
+  private static LlmConcurrencyLimiter newLimiter(long slowMs) {
+    LlmConcurrencyLimiter limiter = new LlmConcurrencyLimiter();
+    ReflectionTestUtils.setField(limiter, "enabled", true);
+    ReflectionTestUtils.setField(limiter, "initialLimit", 4);
+    ReflectionTestUtils.setField(limiter, "minLimit", 2);
+    ReflectionTestUtils.setField(limiter, "maxLimit", 5);
+    ReflectionTestUtils.setField(limiter, "backoffRatio", 0.75);
+    ReflectionTestUtils.setField(limiter, "slowMs", slowMs);
+    ReflectionTestUtils.setField(limiter, "meterRegistry", new SimpleMeterRegistry());
+    limiter.init();
+    return limiter;
+  }
+
+  @Test
+  void testSuccessGrowsLimitOnlyWhenInUse() {
+    // One call in flight of four: nothing learned about the limit
+    limiter.acquire().success();
+    assertEquals(4.0, limiter.getLimit(), 1e-9);
+
+    LlmConcurrencyLimiter.Permit first = limiter.acquire();
+    LlmConcurrencyLimiter.Permit second = limiter.acquire();
+    first.success();
+    assertEquals(4.25, limiter.getLimit(), 1e-9);
+    second.ignore();
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  void testLimitIsCappedAtMax() {
+    for (int i = 0; i < 50; i++) {
+      LlmConcurrencyLimiter.Permit a = limiter.acquire();
+      LlmConcurrencyLimiter.Permit b = limiter.acquire();
+      LlmConcurrencyLimiter.Permit c = limiter.acquire();
+      a.success();
+      b.success();
+      c.success();
+    }
+    assertEquals(5.0, limiter.getLimit(), 1e-9);
+  }
+
+  @Test
+  void testDropShrinksLimitDownToMin() {
+    limiter.acquire().dropped();
+    assertEquals(3.0, limiter.getLimit(), 1e-9);
+
+    limiter.acquire().dropped();
+    limiter.acquire().dropped();
+    assertEquals(2.0, limiter.getLimit(), 1e-9);
+  }
+
+  @Test
+  void testSlowSuccessCountsAsDrop() {
+    limiter = newLimiter(0);
+    limiter.acquire().success();
+    assertEquals(3.0, limiter.getLimit(), 1e-9);
+  }
+
+  @Test
+  void testRefusesOverLimitAndIgnoreLeavesLimitAlone() {
+    LlmConcurrencyLimiter.Permit[] permits = new LlmConcurrencyLimiter.Permit[4];
+    for (int i = 0; i < 4; i++) permits[i] = limiter.acquire();
+    assertFalse(limiter.hasHeadroom());
+
+    assertThrows(LlmUnavailableException.class, limiter::acquire);
+
+    for (LlmConcurrencyLimiter.Permit permit : permits) permit.ignore();
+    // Completing twice releases once
+    permits[0].dropped();
+    assertEquals(4.0, limiter.getLimit(), 1e-9);
+    assertEquals(0, limiter.getInFlight());
+    assertTrue(limiter.hasHeadroom());
+  }
+}
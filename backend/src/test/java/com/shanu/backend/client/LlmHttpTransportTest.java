@@ -0,0 +1,109 @@
+package com.shanu.backend.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * LlmHttpTransportTest - The streaming deadline must hold when the upstream stalls mid-body,
+ * against a local HTTP server standing in for Gemini.
+ */
+class LlmHttpTransportTest {
+
+  private HttpServer server;
+  private final CountDownLatch release = new CountDownLatch(1);
+  private LlmHttpTransport transport;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    // Sends one line, then stalls without closing the response
+    server.createContext(
+        "/stall",
+        exchange -> {
+          exchange.getRequestBody().readAllBytes();
+          exchange.sendResponseHeaders(200, 0);
+          OutputStream out = exchange.getResponseBody();
+          out.write("data: first\n".getBytes(StandardCharsets.UTF_8));
+          out.flush();
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.close();
+        });
+    server.createContext(
+        "/ok",
+        exchange -> {
+          exchange.getRequestBody().readAllBytes();
+          exchange.sendResponseHeaders(200, 0);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write("data: a\ndata: b\n".getBytes(StandardCharsets.UTF_8));
+          }
+        });
+    server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+    server.start();
+
+    transport = new LlmHttpTransport();
+    ReflectionTestUtils.setField(transport, "connectTimeoutMs", 2000L);
+    ReflectionTestUtils.setField(transport, "requestTimeoutMs", 5000L);
+    ReflectionTestUtils.setField(transport, "maxConcurrent", 2);
+    ReflectionTestUtils.setField(transport, "acquireTimeoutMs", 100L);
+    ReflectionTestUtils.setField(transport, "meterRegistry", new SimpleMeterRegistry());
+    transport.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    transport.shutdown();
+    server.stop(0);
+  }
+
+  private String url(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  @Test
+  void testStalledStreamFailsAtDeadlineAndReleasesPermit() {
+    List<String> lines = new CopyOnWriteArrayList<>();
+    long start = System.nanoTime();
+
+    assertThrows(
+        HttpTimeoutException.class,
+        () -> transport.postJsonStreaming(url("/stall"), null, "{}", Duration.ofMillis(500), lines::add));
+
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(elapsedMs < 3000, "stalled read was not cut off at the deadline: " + elapsedMs + " ms");
+    assertEquals(List.of("data: first"), lines);
+    Semaphore permits = (Semaphore) ReflectionTestUtils.getField(transport, "permits");
+    assertEquals(2, permits.availablePermits());
+  }
+
+  @Test
+  void testCompleteStreamDeliversEveryLine() throws Exception {
+    List<String> lines = new CopyOnWriteArrayList<>();
+
+    LlmHttpTransport.Response response =
+        transport.postJsonStreaming(url("/ok"), null, "{}", Duration.ofSeconds(5), lines::add);
+
+    assertEquals(200, response.status());
+    assertEquals(List.of("data: a", "data: b"), lines);
+  }
+}
@@ -0,0 +1,64 @@
+package com.shanu.backend.controller;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.shanu.backend.model.User;
+import com.shanu.backend.service.AdviceJobService;
+import com.shanu.backend.service.AuthService;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/**
+ * AiControllerTest - Errors from the SSE endpoint GET /api/ai/jobs/{id}/events, which must reach the
+ * client as JSON (401 vs 404) rather than an empty 500.
+ */
+@ExtendWith(MockitoExtension.class)
+class AiControllerTest {
+
+  @Mock private AdviceJobService adviceJobService;
+  @Mock private AuthService authService;
+  @InjectMocks private AiController aiController;
+
+  private MockMvc mockMvc;
+
+  @BeforeEach
+  void setUp() {
+    mockMvc = MockMvcBuilders.standaloneSetup(aiController).build();
+  }
+
+  @Test
+  void testJobEventsWithoutTokenIs401Json() throws Exception {
+    mockMvc
+        .perform(get("/api/ai/jobs/job-1/events").accept(MediaType.TEXT_EVENT_STREAM))
+        .andExpect(status().isUnauthorized())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.error").value("Unauthorized"));
+  }
+
+  @Test
+  void testJobEventsForeignJobIs404Json() throws Exception {
+    User user = new User();
+    user.setId("user-123");
+    when(authService.getUserFromToken("token")).thenReturn(user);
+    when(adviceJobService.find("job-1", "user-123")).thenReturn(Optional.empty());
+
+    mockMvc
+        .perform(
+            get("/api/ai/jobs/job-1/events")
+                .header("Authorization", "Bearer token")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+        .andExpect(status().isNotFound())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.error").value("Not found"));
+  }
+}
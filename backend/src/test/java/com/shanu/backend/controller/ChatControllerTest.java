@@ -0,0 +1,79 @@
+package com.shanu.backend.controller;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.shanu.backend.model.User;
+import com.shanu.backend.service.AuthService;
+import com.shanu.backend.service.ChatService;
+import java.util.concurrent.ExecutorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/**
+ * ChatControllerTest - Errors from the SSE endpoint POST /api/chat/{id}/message/stream.
+ *
+ * Rejections happen before the stream starts and must reach the client as JSON with the right
+ * status, whatever the request's Accept header.
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatControllerTest {
+
+  @Mock private ChatService chatService;
+  @Mock private AuthService authService;
+  @Mock private ExecutorService llmExecutor;
+  @InjectMocks private ChatController chatController;
+
+  private MockMvc mockMvc;
+
+  @BeforeEach
+  void setUp() {
+    mockMvc = MockMvcBuilders.standaloneSetup(chatController).build();
+  }
+
+  @Test
+  void testStreamWithoutTokenIs401Json() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/chat/conv-1/message/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"text\":\"hi\"}"))
+        .andExpect(status().isUnauthorized())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.error").value("Unauthorized"));
+
+    verifyNoInteractions(chatService, llmExecutor);
+  }
+
+  @Test
+  void testStreamRateLimitedIs429Json() throws Exception {
+    User user = new User();
+    user.setId("user-123");
+    when(authService.getUserFromToken("token")).thenReturn(user);
+    when(chatService.beginStreamingTurn(eq("conv-1"), eq("user-123"), any(), any()))
+        .thenThrow(new RuntimeException("Rate limit exceeded: max 2 requests per second"));
+
+    mockMvc
+        .perform(
+            post("/api/chat/conv-1/message/stream")
+                .header("Authorization", "Bearer token")
+                .accept(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"text\":\"hi\"}"))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.error").value("Rate limit exceeded: max 2 requests per second"));
+
+    verifyNoInteractions(llmExecutor);
+  }
+}
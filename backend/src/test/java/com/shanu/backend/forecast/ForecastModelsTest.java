@@ -0,0 +1,153 @@
+package com.shanu.backend.forecast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shanu.backend.model.Transaction;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * ForecastModelsTest - Unit tests for the expense matrix and the forecasting models.
+ *
+ * Tests cover:
+ * - ExpenseMatrix: chronological rows regardless of input order, zero-filled gaps, income skipped,
+ *   rows running to the end of the window (trailing empty months) and nothing after it
+ * - exact forecasts on series each model is built for (constant, linear, seasonal with trend)
+ * - damped trend stays below the undamped extrapolation
+ * - forecasts more than one month ahead
+ * - ModelSelector picks the model with the lowest backtest error
+ */
+class ForecastModelsTest {
+
+  private static final List<ForecastModel> MODELS = List.of(
+      new WeightedMovingAverage(3),
+      new SimpleExponentialSmoothing(0.5),
+      HoltTrend.linear(0.5, 0.3),
+      HoltTrend.damped(0.5, 0.3, 0.9),
+      new HoltWinters(0.4, 0.1, 0.3, 12));
+
+  @Test
+  void matrixRowsAreChronologicalWithZeroFilledGaps() {
+    List<Transaction> transactions = List.of(
+        txn("expense", "Food", 30, 2024, 3),
+        txn("expense", "Food", 10, 2024, 1),
+        txn("expense", "Rent", 500, 2024, 3),
+        txn("expense", "Food", 5, 2024, 1),
+        txn("income", "Salary", 1000, 2024, 2));
+
+    ExpenseMatrix matrix =
+        ExpenseMatrix.of(transactions, ZoneOffset.UTC, YearMonth.of(2023, 6), YearMonth.of(2024, 3));
+
+    assertEquals(YearMonth.of(2024, 1), matrix.firstMonth());
+    assertEquals(3, matrix.months());
+    assertEquals(2, matrix.categoryCount());
+    assertEquals("Food", matrix.category(0));
+    assertArrayEquals(new double[] {15, 0, 30}, matrix.series(0, new double[3]));
+    assertArrayEquals(new double[] {0, 0, 500}, matrix.series(1, new double[3]));
+  }
+
+  @Test
+  void matrixRunsToWindowEndAndSkipsMonthsOutsideIt() {
+    List<Transaction> transactions = List.of(
+        txn("expense", "Food", 99, 2023, 12),
+        txn("expense", "Food", 40, 2024, 1),
+        txn("expense", "Food", 60, 2024, 2),
+        // Partial current month, after the window
+        txn("expense", "Food", 5, 2024, 6));
+
+    ExpenseMatrix matrix =
+        ExpenseMatrix.of(transactions, ZoneOffset.UTC, YearMonth.of(2024, 1), YearMonth.of(2024, 5));
+
+    assertEquals(YearMonth.of(2024, 1), matrix.firstMonth());
+    // March to May had no spending: zero rows, not missing ones
+    assertArrayEquals(new double[] {40, 60, 0, 0, 0}, matrix.series(0, new double[5]));
+  }
+
+  @Test
+  void weightedAverageFavoursRecentMonths() {
+    double[] y = {100, 0, 10, 20, 30};
+    // (10*1 + 20*2 + 30*3) / 6
+    assertEquals(140.0 / 6, new WeightedMovingAverage(3).forecast(y, y.length), 1e-9);
+    // Fewer months than the window: plain average
+    assertEquals(15.0, new WeightedMovingAverage(3).forecast(new double[] {10, 20}, 2), 1e-9);
+  }
+
+  @Test
+  void smoothingOfConstantSeriesIsConstant() {
+    double[] y = {42, 42, 42, 42, 42, 42};
+    for (ForecastModel model : MODELS) {
+      if (y.length >= model.minMonths()) {
+        assertEquals(42.0, model.forecast(y, y.length), 1e-9, model.name());
+      }
+    }
+  }
+
+  @Test
+  void holtExtrapolatesLinearTrendAndDampingFlattensIt() {
+    double[] y = {10, 15, 20, 25, 30, 35};
+    double holt = HoltTrend.linear(0.5, 0.3).forecast(y, y.length);
+    double damped = HoltTrend.damped(0.5, 0.3, 0.9).forecast(y, y.length);
+
+    assertEquals(40.0, holt, 1e-9);
+    assertTrue(damped > 35 && damped < holt, "damped forecast " + damped);
+  }
+
+  @Test
+  void trendModelsForecastFurtherAhead() {
+    double[] y = {10, 15, 20, 25, 30, 35};
+
+    assertEquals(45.0, HoltTrend.linear(0.5, 0.3).forecast(y, y.length, 2), 1e-9);
+    assertEquals(35.0, new WeightedMovingAverage(3).forecast(new double[] {35, 35, 35}, 3, 2), 1e-9);
+    double oneStep = HoltTrend.damped(0.5, 0.3, 0.9).forecast(y, y.length, 1);
+    double twoStep = HoltTrend.damped(0.5, 0.3, 0.9).forecast(y, y.length, 2);
+    assertTrue(twoStep > oneStep && twoStep < 45.0, "damped two-step forecast " + twoStep);
+  }
+
+  @Test
+  void holtWintersFollowsSeasonAndTrend() {
+    double[] season = {5, -3, 0, 2, -4, 8, 1, -2, 3, -6, 0, -4};
+    int n = 36;
+    double[] y = new double[n + 1];
+    for (int t = 0; t <= n; t++) {
+      y[t] = 100 + 2 * t + season[t % 12];
+    }
+
+    assertEquals(y[n], new HoltWinters(0.4, 0.1, 0.3, 12).forecast(y, n), 1e-6);
+    double skipped = 100 + 2 * (n + 1) + season[(n + 1) % 12];
+    assertEquals(skipped, new HoltWinters(0.4, 0.1, 0.3, 12).forecast(y, n, 2), 1e-6);
+  }
+
+  @Test
+  void selectorPicksLowestBacktestError() {
+    double[] linear = {10, 15, 20, 25, 30, 35};
+    ModelSelector.Score best = ModelSelector.select(MODELS, linear, linear.length, 3);
+
+    assertEquals("holt", best.model());
+    assertEquals(40.0, best.forecast(), 1e-9);
+    assertEquals(0.0, best.mae(), 1e-9);
+    // Holt-Winters needs two seasons and is not backtested on six months
+    assertTrue(Double.isNaN(ModelSelector.backtest(MODELS.get(4), linear, linear.length, 3)));
+  }
+
+  @Test
+  void selectorFallsBackToFirstModelWithoutBacktest() {
+    double[] y = {10, 20};
+    ModelSelector.Score score = ModelSelector.select(MODELS, y, 2, ModelSelector.holdoutFor(2, 3, 2));
+
+    assertEquals("wma", score.model());
+    assertNull(score.mae());
+  }
+
+  private static Transaction txn(String type, String category, double amount, int year, int month) {
+    Transaction t = new Transaction();
+    t.setType(type);
+    t.setCategory(category);
+    t.setAmount(amount);
+    t.setDate(Date.from(LocalDate.of(year, month, 15).atStartOfDay(ZoneOffset.UTC).toInstant()));
+    return t;
+  }
+}
@@ -5,6 +5,8 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.shanu.backend.client.GeminiClient;
+import com.shanu.backend.client.LlmMetrics;
+import com.shanu.backend.config.ChatProperties;
 import com.shanu.backend.model.Conversation;
 import com.shanu.backend.model.Message;
 import com.shanu.backend.repository.ConversationRepository;
@@ -14,7 +16,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * ChatServiceTest - Unit tests for ChatService.
@@ -25,18 +29,31 @@ import org.mockito.junit.jupiter.MockitoExtension;
  * - parseGeminiResponse: extracts JSON from code-fenced blocks, fallback to plain text (tested indirectly)
  * - checkRateLimit: enforces per-user throttle (2 req/sec max)
  * 
- * Mocks: GeminiClient (API calls), ConversationRepository (database operations)
+ * Mocks: GeminiClient (API calls), ConversationRepository (database operations),
+ * TransactionService (financial context; returns no transactions)
  */
 @ExtendWith(MockitoExtension.class)
 class ChatServiceTest {
 
   @Mock private ConversationRepository conversationRepository;
   @Mock private GeminiClient geminiClient;
+  @Mock private TransactionService transactionService;
+  // Not Spring-managed, so its cache is disabled and it simply calls the loader
+  @Spy private FinancialContextCache financialContextCache = new FinancialContextCache();
+  @Spy private PromptBudgetManager promptBudgetManager = new PromptBudgetManager(new ChatProperties());
+  @Mock private ConversationSummarizer conversationSummarizer;
+  @Mock private LlmMetrics llmMetrics;
+  // Not Spring-managed either: disabled, so reads and appends go straight to the repository mock
+  @Spy private ConversationCache conversationCache = new ConversationCache();
   @InjectMocks private ChatService chatService;
 
   @BeforeEach
   void setUp() {
-    // Setup complete via @InjectMocks
+    // Setup complete via @InjectMocks; the cache needs the same repository mock
+    ReflectionTestUtils.setField(conversationCache, "conversationRepository", conversationRepository);
+    // @Value defaults are not applied outside Spring
+    ReflectionTestUtils.setField(chatService, "rateLimitPerSec", 2);
+    ReflectionTestUtils.setField(chatService, "systemPrompt", "You are BudgetPilot.");
   }
 
   /**
@@ -50,7 +67,7 @@ class ChatServiceTest {
     String geminiGreeting =
         "{\"text\": \"Hello! I'm BudgetPilot.\", \"options\": [\"Start Budget Review\", \"Check Expenses\"]}";
 
-    when(geminiClient.callGemini(anyString())).thenReturn(geminiGreeting);
+    when(geminiClient.callGemini(anyString(), anyString())).thenReturn(geminiGreeting);
     when(conversationRepository.save(any(Conversation.class)))
         .thenAnswer(
             invocation -> {
@@ -67,13 +84,13 @@ class ChatServiceTest {
     assertEquals(userId, result.getUserId());
     assertFalse(result.getMessages().isEmpty());
     assertEquals("assistant", result.getMessages().get(0).getRole());
-    verify(geminiClient, times(1)).callGemini(anyString());
+    verify(geminiClient, times(1)).callGemini(anyString(), anyString());
     verify(conversationRepository, times(1)).save(any(Conversation.class));
   }
 
   /**
    * Test: handleUserMessage appends user message and returns assistant response.
-   * Verifies: user message appended, Gemini called, response parsed, conversation saved.
+   * Verifies: user message appended, Gemini called, response parsed, new messages appended.
    */
   @Test
   void testHandleUserMessage() throws Exception {
@@ -92,12 +109,12 @@ class ChatServiceTest {
         "{\"text\": \"Great goal! How much do you want to save?\", \"options\": [\"$100/month\", \"$500/month\"]}";
 
     when(conversationRepository.findById(conversationId)).thenReturn(Optional.of(conversation));
-    when(geminiClient.callGemini(anyString())).thenReturn(geminiResponse);
-    when(conversationRepository.save(any(Conversation.class)))
-        .thenAnswer(invocation -> invocation.getArgument(0));
+    when(geminiClient.callGemini(anyString(), anyString())).thenReturn(geminiResponse);
+    when(conversationRepository.appendMessages(eq(conversationId), eq(0), anyList(), anyMap(), any()))
+        .thenReturn(true);
 
     // Act
-    Map<String, Object> result = chatService.handleUserMessage(conversationId, userId, userText, null);
+    Map<String, Object> result = chatService.handleUserMessage(conversationId, userId, userText, null, null);
 
     // Assert
     assertNotNull(result);
@@ -105,9 +122,17 @@ class ChatServiceTest {
     Message assistantMessage = (Message) result.get("assistantMessage");
     assertEquals("assistant", assistantMessage.getRole());
     assertTrue(assistantMessage.getText().contains("Great goal!"));
+    assertEquals(2L, assistantMessage.getSeq());
+    // Only this turn's messages are returned, not the whole conversation
+    assertFalse(result.containsKey("conversation"));
+    assertEquals(2, ((List<?>) result.get("messages")).size());
+    assertEquals(2L, result.get("lastSeq"));
     verify(conversationRepository, times(1)).findById(conversationId);
-    verify(geminiClient, times(1)).callGemini(anyString());
-    verify(conversationRepository, times(1)).save(any(Conversation.class));
+    verify(geminiClient, times(1)).callGemini(anyString(), anyString());
+    // Only the new user + assistant messages are written; the document is never re-saved
+    verify(conversationRepository, times(1))
+        .appendMessages(eq(conversationId), eq(0), argThat(messages -> messages.size() == 2), anyMap(), any());
+    verify(conversationRepository, never()).save(any(Conversation.class));
   }
 
   /**
@@ -122,7 +147,7 @@ class ChatServiceTest {
     String userId = "user-123";
     String geminiResponse = "Here's the analysis:\n```json\n{\"text\": \"Your spending is high\", \"options\": [\"View details\"]}\n```";
 
-    when(geminiClient.callGemini(anyString())).thenReturn(geminiResponse);
+    when(geminiClient.callGemini(anyString(), anyString())).thenReturn(geminiResponse);
     when(conversationRepository.save(any(Conversation.class)))
         .thenAnswer(invocation -> {
           Conversation conv = invocation.getArgument(0);
@@ -149,7 +174,7 @@ class ChatServiceTest {
     String userId = "user-123";
     String plainTextResponse = "I couldn't parse that. Can you try again?";
 
-    when(geminiClient.callGemini(anyString())).thenReturn(plainTextResponse);
+    when(geminiClient.callGemini(anyString(), anyString())).thenReturn(plainTextResponse);
     when(conversationRepository.save(any(Conversation.class)))
         .thenAnswer(invocation -> {
           Conversation conv = invocation.getArgument(0);
@@ -176,7 +201,7 @@ class ChatServiceTest {
     String userId = "user-123";
 
     // Mock Gemini and repository for valid calls
-    when(geminiClient.callGemini(anyString())).thenReturn("{\"text\": \"Hello\"}");
+    when(geminiClient.callGemini(anyString(), anyString())).thenReturn("{\"text\": \"Hello\"}");
     when(conversationRepository.save(any(Conversation.class)))
         .thenAnswer(invocation -> {
           Conversation conv = invocation.getArgument(0);
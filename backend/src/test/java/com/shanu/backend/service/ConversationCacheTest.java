@@ -0,0 +1,218 @@
+package com.shanu.backend.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.shanu.backend.model.Conversation;
+import com.shanu.backend.model.Message;
+import com.shanu.backend.repository.ConversationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * ConversationCacheTest - Unit tests for the write-behind / write-through conversation cache.
+ *
+ * Tests cover:
+ * - write-behind: turns are acknowledged from memory and flushed in order, coalesced into one $push
+ * - write-through: each turn is written before append() returns; reads don't wait on the write
+ * - idle eviction and shutdown flush what is pending first
+ * - append refuses a turn started from a stale message count; a flush conflict re-appends the
+ *   pending messages after the stored ones and drops the cached copy
+ *
+ * Mocks: ConversationRepository (the cache's only link to MongoDB)
+ */
+@ExtendWith(MockitoExtension.class)
+class ConversationCacheTest {
+
+  private static final String ID = "conv-1";
+
+  @Mock private ConversationRepository conversationRepository;
+
+  private ConversationCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = newCache("write-behind", 600000);
+  }
+
+  private ConversationCache newCache(String writeMode, long idleEvictMs) {
+    ConversationCache c = new ConversationCache();
+    ReflectionTestUtils.setField(c, "enabled", true);
+    ReflectionTestUtils.setField(c, "writeModeName", writeMode);
+    ReflectionTestUtils.setField(c, "maxEntries", 100);
+    ReflectionTestUtils.setField(c, "idleEvictMs", idleEvictMs);
+    ReflectionTestUtils.setField(c, "maxPendingMessages", 200);
+    ReflectionTestUtils.setField(c, "conversationRepository", conversationRepository);
+    ReflectionTestUtils.setField(c, "meterRegistry", new SimpleMeterRegistry());
+    c.init();
+    return c;
+  }
+
+  /** The stored conversation has the given messages; each read returns a fresh copy. */
+  private void stored(String... texts) {
+    when(conversationRepository.findById(ID))
+        .thenAnswer(
+            invocation -> {
+              Conversation conversation = new Conversation("user-1", "Budget");
+              conversation.setId(ID);
+              conversation.setMessages(new ArrayList<>());
+              for (String text : texts) conversation.addMessage(new Message("user", text));
+              return Optional.of(conversation);
+            });
+  }
+
+  private static Message msg(long seq, String text) {
+    Message message = new Message("user", text);
+    message.setSeq(seq);
+    return message;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Message> pushed(int call) {
+    ArgumentCaptor<List<Message>> messages = ArgumentCaptor.forClass(List.class);
+    verify(conversationRepository, atLeast(call + 1))
+        .appendMessages(eq(ID), anyInt(), messages.capture(), any(), any());
+    return messages.getAllValues().get(call);
+  }
+
+  @Test
+  void testWriteBehindCoalescesTurnsIntoOneOrderedFlush() {
+    stored("hi");
+    when(conversationRepository.appendMessages(eq(ID), anyInt(), anyList(), any(), any())).thenReturn(true);
+    cache.get(ID);
+
+    assertTrue(cache.append(ID, 1, List.of(msg(2, "a"), msg(3, "b")), Map.of("k", 1), LocalDateTime.now()));
+    assertTrue(cache.append(ID, 3, List.of(msg(4, "c")), Map.of("k", 2), LocalDateTime.now()));
+    // Acknowledged from memory only
+    verify(conversationRepository, never()).appendMessages(any(), anyInt(), anyList(), any(), any());
+    assertEquals(4, cache.get(ID).orElseThrow().getMessages().size());
+
+    cache.flushAndEvict();
+    assertTrue(cache.append(ID, 4, List.of(msg(5, "d")), null, LocalDateTime.now()));
+    cache.flushAndEvict();
+
+    InOrder inOrder = inOrder(conversationRepository);
+    inOrder.verify(conversationRepository).appendMessages(eq(ID), eq(1), anyList(), eq(Map.of("k", 2)), any());
+    inOrder.verify(conversationRepository).appendMessages(eq(ID), eq(4), anyList(), any(), any());
+    assertEquals(List.of("a", "b", "c"), pushed(0).stream().map(Message::getText).toList());
+    assertEquals(List.of("d"), pushed(1).stream().map(Message::getText).toList());
+    // Nothing left to write
+    cache.flushAndEvict();
+    verify(conversationRepository, times(2)).appendMessages(any(), anyInt(), anyList(), any(), any());
+  }
+
+  @Test
+  void testWriteThroughWritesBeforeReturning() {
+    cache = newCache("write-through", 600000);
+    stored("hi");
+    when(conversationRepository.appendMessages(eq(ID), eq(1), anyList(), any(), any())).thenReturn(true);
+    cache.get(ID);
+
+    assertTrue(cache.append(ID, 1, List.of(msg(2, "a")), null, LocalDateTime.now()));
+
+    verify(conversationRepository).appendMessages(eq(ID), eq(1), anyList(), any(), any());
+    cache.flushAndEvict();
+    verifyNoMoreInteractions(ignoreStubs(conversationRepository));
+    assertEquals(2, cache.get(ID).orElseThrow().getMessages().size());
+  }
+
+  @Test
+  void testWriteThroughReadsDoNotWaitOnTheWrite() throws Exception {
+    cache = newCache("write-through", 600000);
+    stored("hi");
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(conversationRepository.appendMessages(eq(ID), eq(1), anyList(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              writing.countDown();
+              release.await(5, TimeUnit.SECONDS);
+              return true;
+            });
+    cache.get(ID);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> append = executor.submit(() -> cache.append(ID, 1, List.of(msg(2, "a")), null, LocalDateTime.now()));
+      assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+      // The write is still in flight: the read returns at once, without the unconfirmed turn
+      assertEquals(1, cache.getIfPresent(ID).getMessages().size());
+
+      release.countDown();
+      assertTrue(append.get(5, TimeUnit.SECONDS));
+      assertEquals(2, cache.getIfPresent(ID).getMessages().size());
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testIdleEvictionFlushesFirst() {
+    cache = newCache("write-behind", 0);
+    stored("hi");
+    when(conversationRepository.appendMessages(eq(ID), eq(1), anyList(), any(), any())).thenReturn(true);
+    cache.get(ID);
+    assertTrue(cache.append(ID, 1, List.of(msg(2, "a")), null, LocalDateTime.now().minusMinutes(1)));
+
+    cache.flushAndEvict();
+
+    verify(conversationRepository).appendMessages(eq(ID), eq(1), anyList(), any(), any());
+    assertNull(cache.getIfPresent(ID));
+  }
+
+  @Test
+  void testShutdownFlushesPendingTurns() {
+    stored("hi");
+    when(conversationRepository.appendMessages(eq(ID), eq(1), anyList(), any(), any())).thenReturn(true);
+    cache.get(ID);
+    assertTrue(cache.append(ID, 1, List.of(msg(2, "a"), msg(3, "b")), null, LocalDateTime.now()));
+
+    cache.flushOnShutdown();
+
+    assertEquals(List.of("a", "b"), pushed(0).stream().map(Message::getText).toList());
+  }
+
+  @Test
+  void testAppendFromStaleCountIsRefused() {
+    stored("hi");
+    cache.get(ID);
+
+    // The turn started when the conversation had 0 messages; it now has 1
+    assertFalse(cache.append(ID, 0, List.of(msg(1, "late")), null, LocalDateTime.now()));
+
+    cache.flushAndEvict();
+    verify(conversationRepository, never()).appendMessages(any(), anyInt(), anyList(), any(), any());
+    assertEquals(1, cache.get(ID).orElseThrow().getMessages().size());
+  }
+
+  @Test
+  void testFlushConflictAppendsAfterStoredMessagesAndDropsCopy() {
+    stored("hi");
+    cache.get(ID);
+    assertTrue(cache.append(ID, 1, List.of(msg(2, "a"), msg(3, "b")), null, LocalDateTime.now()));
+    // Meanwhile another instance stored a second message
+    stored("hi", "elsewhere");
+    when(conversationRepository.appendMessages(eq(ID), eq(1), anyList(), any(), any())).thenReturn(false);
+    when(conversationRepository.appendMessages(eq(ID), eq(2), anyList(), any(), any())).thenReturn(true);
+
+    cache.flushAndEvict();
+
+    List<Message> recovered = pushed(1);
+    assertEquals(List.of("a", "b"), recovered.stream().map(Message::getText).toList());
+    assertEquals(List.of(3L, 4L), recovered.stream().map(Message::getSeq).toList());
+    assertNull(cache.getIfPresent(ID));
+  }
+}
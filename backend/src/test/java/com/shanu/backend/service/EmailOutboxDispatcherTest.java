@@ -0,0 +1,145 @@
+package com.shanu.backend.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.shanu.backend.model.EmailOutbox;
+import com.shanu.backend.repository.EmailOutboxRepository;
+import com.shanu.backend.repository.UserRepository;
+import java.util.*;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * EmailOutboxDispatcherTest - Unit tests for the email outbox.
+ *
+ * Tests cover:
+ * - dispatchPending: drains the due rows in batches of mail.outbox.batch-size, one SMTP send per batch
+ * - failed messages: retried with exponential backoff, marked FAILED after max attempts
+ * - enqueue: a second row with the same dedupeKey returns the queued one
+ *
+ * Mocks: MongoTemplate (claims and status updates), EmailOutboxRepository; SMTP is a
+ * JavaMailSender stand-in that records each batch and can fail chosen recipients.
+ */
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxDispatcherTest {
+
+  /** Records every batch; recipients in failFor are reported back as failed messages. */
+  static class FakeMailSender extends JavaMailSenderImpl {
+    final List<SimpleMailMessage[]> batches = new ArrayList<>();
+    final Set<String> failFor = new HashSet<>();
+
+    @Override
+    public void send(SimpleMailMessage... messages) {
+      batches.add(messages);
+      Map<Object, Exception> failed = new LinkedHashMap<>();
+      for (SimpleMailMessage m : messages) {
+        if (failFor.contains(m.getTo()[0])) failed.put(m, new IllegalStateException("550 mailbox unavailable"));
+      }
+      if (!failed.isEmpty()) throw new MailSendException(failed);
+    }
+  }
+
+  @Mock private EmailOutboxRepository emailOutboxRepository;
+  @Mock private UserRepository userRepository;
+  @Mock private MongoTemplate mongoTemplate;
+  @Spy private FakeMailSender mailSender = new FakeMailSender();
+  @InjectMocks private EmailOutboxDispatcher dispatcher;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(dispatcher, "batchSize", 2);
+    ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+    ReflectionTestUtils.setField(dispatcher, "backoffBaseMs", 1000L);
+    ReflectionTestUtils.setField(dispatcher, "backoffMaxMs", 60000L);
+    ReflectionTestUtils.setField(dispatcher, "leaseMs", 120000L);
+    ReflectionTestUtils.setField(dispatcher, "orphanGraceMs", 300000L);
+  }
+
+  @Test
+  void testDispatchDrainsDueRowsInBatches() {
+    claimInOrder(row("a", 1), row("b", 1), row("c", 1));
+
+    dispatcher.dispatchPending();
+
+    assertEquals(2, mailSender.batches.size());
+    assertEquals(2, mailSender.batches.get(0).length);
+    assertEquals(1, mailSender.batches.get(1).length);
+    assertEquals(List.of("SENT", "SENT", "SENT"), statusesSet());
+  }
+
+  @Test
+  void testFailedMessageIsRetriedWithBackoffThenGivenUp() {
+    mailSender.failFor.add("b@example.com");
+    mailSender.failFor.add("c@example.com");
+    // b fails on its second attempt: retry in 1000 * 2^1 ms (+ up to 20% jitter); c is out of attempts
+    claimInOrder(row("a", 1), row("b", 2), row("c", 3));
+    long before = System.currentTimeMillis();
+
+    dispatcher.dispatchPending();
+
+    List<Document> sets = updateSets();
+    assertEquals(List.of("SENT", "PENDING", "FAILED"), statusesSet());
+    long retryAt = ((Date) sets.get(1).get("nextAttemptAt")).getTime();
+    assertTrue(retryAt >= before + 2000 && retryAt <= System.currentTimeMillis() + 2400, "retry at +" + (retryAt - before));
+    assertEquals("550 mailbox unavailable", sets.get(1).get("lastError"));
+  }
+
+  @Test
+  void testEnqueueIsIdempotentOnDedupeKey() {
+    EmailOutbox queued = row("a", 0);
+    EmailOutbox duplicate = new EmailOutbox("verify-email:a", null, "a@example.com", "Verify", "again");
+    when(emailOutboxRepository.insert(duplicate)).thenThrow(new DuplicateKeyException("dedupeKey"));
+    when(emailOutboxRepository.findByDedupeKey("verify-email:a")).thenReturn(Optional.of(queued));
+
+    assertSame(queued, dispatcher.enqueue(duplicate));
+    verify(emailOutboxRepository, times(1)).insert(any(EmailOutbox.class));
+  }
+
+  private void claimInOrder(EmailOutbox... rows) {
+    Iterator<EmailOutbox> it = Arrays.asList(rows).iterator();
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(EmailOutbox.class)))
+        .thenAnswer(invocation -> it.hasNext() ? it.next() : null);
+  }
+
+  private List<Document> updateSets() {
+    ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), updates.capture(), eq(EmailOutbox.class));
+    List<Document> sets = new ArrayList<>();
+    for (UpdateDefinition update : updates.getAllValues()) {
+      sets.add((Document) update.getUpdateObject().get("$set"));
+    }
+    return sets;
+  }
+
+  private List<String> statusesSet() {
+    List<String> statuses = new ArrayList<>();
+    for (Document set : updateSets()) statuses.add(set.getString("status"));
+    return statuses;
+  }
+
+  private static EmailOutbox row(String name, int attempts) {
+    EmailOutbox row = new EmailOutbox("verify-email:" + name, null, name + "@example.com", "Verify", "Click the link");
+    row.setId("id-" + name);
+    row.setStatus(EmailOutbox.STATUS_SENDING);
+    row.setAttempts(attempts);
+    return row;
+  }
+}
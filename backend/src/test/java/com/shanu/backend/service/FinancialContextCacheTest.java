@@ -0,0 +1,69 @@
+package com.shanu.backend.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * FinancialContextCacheTest - Invalidation and bounds of the per-user prompt context cache.
+ *
+ * Tests cover:
+ * - served from memory until the user's transactions change
+ * - a build that overlaps an invalidation is returned but not stored
+ * - invalidations for users with nothing cached don't grow the cache, which stays within max-entries
+ */
+class FinancialContextCacheTest {
+
+  private FinancialContextCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new FinancialContextCache();
+    ReflectionTestUtils.setField(cache, "enabled", true);
+    ReflectionTestUtils.setField(cache, "ttlMs", 60000L);
+    ReflectionTestUtils.setField(cache, "maxEntries", 3);
+    ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.invokeMethod(cache, "init");
+  }
+
+  @Test
+  void testServedFromMemoryUntilInvalidated() {
+    AtomicInteger builds = new AtomicInteger();
+
+    assertEquals("v1", cache.get("u1", () -> "v" + builds.incrementAndGet()));
+    assertEquals("v1", cache.get("u1", () -> "v" + builds.incrementAndGet()));
+
+    cache.invalidate("u1");
+    assertEquals("v2", cache.get("u1", () -> "v" + builds.incrementAndGet()));
+    assertEquals(2, builds.get());
+  }
+
+  @Test
+  void testBuildOverlappingAnInvalidationIsNotStored() {
+    assertEquals("stale", cache.get("u1", () -> {
+      cache.invalidate("u1");
+      return "stale";
+    }));
+
+    assertEquals("fresh", cache.get("u1", () -> "fresh"));
+  }
+
+  @Test
+  void testCacheStaysWithinMaxEntries() {
+    for (int i = 0; i < 100; i++) {
+      cache.invalidate("idle-" + i);
+    }
+    for (int i = 0; i < 10; i++) {
+      String userId = "u" + i;
+      cache.get(userId, () -> "context");
+      cache.invalidate(userId);
+    }
+
+    assertEquals(3, ((Map<?, ?>) ReflectionTestUtils.getField(cache, "entries")).size());
+  }
+}
@@ -0,0 +1,196 @@
+package com.shanu.backend.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.shanu.backend.event.TransactionChangedEvent;
+import com.shanu.backend.model.Forecast;
+import com.shanu.backend.model.Transaction;
+import com.shanu.backend.repository.ForecastRepository;
+import com.shanu.backend.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * ForecastCacheTest - Unit tests for the per-user forecast cache.
+ *
+ * Tests cover:
+ * - memory hits until a transaction change bumps the user's generation
+ * - a stored forecast is served only while its data version matches; a stale one is recomputed and upserted
+ * - a computation that overlaps a change isn't cached
+ * - recomputeDue debounces a burst of changes into one recompute, after the last change
+ * - per-user state stays within max-entries, however many users change data
+ *
+ * Mocks: ForecastService, ForecastRepository, TransactionRepository, MongoTemplate (the data
+ * version aggregation: transaction count and newest createdAt/updatedAt), the executor.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ForecastCacheTest {
+
+  private static final String USER = "user-1";
+
+  @Mock private ForecastService forecastService;
+  @Mock private ForecastRepository forecastRepository;
+  @Mock private TransactionRepository transactionRepository;
+  @Mock private MongoTemplate mongoTemplate;
+  @Mock private ExecutorService llmExecutor;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  // Transaction count seen by the data version aggregation; changing it changes the version
+  private final AtomicInteger transactionCount = new AtomicInteger(3);
+  private ForecastCache cache;
+
+  @BeforeEach
+  void setUp() {
+    when(forecastService.configVersion()).thenReturn("config-1");
+    when(forecastService.historyStart(any(YearMonth.class))).thenReturn(LocalDate.of(2024, 1, 1));
+    when(forecastService.forecast(anyList(), isNull()))
+        .thenAnswer(invocation -> new ForecastService.ForecastResult(
+            Map.of("Food", 100.0 + transactionCount.get()), Map.of("Food", 0.0), Map.of("Food", "wma")));
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq(Transaction.class), eq(Document.class)))
+        .thenAnswer(invocation -> new AggregationResults<>(
+            List.of(new Document("count", transactionCount.get()).append("maxCreatedAt", new Date(1000))),
+            new Document()));
+    cache = newCache();
+  }
+
+  private ForecastCache newCache() {
+    ForecastCache c = new ForecastCache();
+    ReflectionTestUtils.setField(c, "ttlMs", 600000L);
+    ReflectionTestUtils.setField(c, "maxEntries", 100);
+    ReflectionTestUtils.setField(c, "recomputeEnabled", true);
+    ReflectionTestUtils.setField(c, "recomputeDelayMs", 300L);
+    ReflectionTestUtils.setField(c, "forecastService", forecastService);
+    ReflectionTestUtils.setField(c, "forecastRepository", forecastRepository);
+    ReflectionTestUtils.setField(c, "transactionRepository", transactionRepository);
+    ReflectionTestUtils.setField(c, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(c, "llmExecutor", llmExecutor);
+    ReflectionTestUtils.setField(c, "meterRegistry", meterRegistry);
+    return c;
+  }
+
+  private double count(String result) {
+    return meterRegistry.counter("analytics.forecast.cache", "result", result).count();
+  }
+
+  private Forecast lastUpserted() {
+    ArgumentCaptor<Forecast> upserted = ArgumentCaptor.forClass(Forecast.class);
+    verify(forecastRepository, atLeastOnce()).upsert(upserted.capture());
+    return upserted.getValue();
+  }
+
+  @Test
+  void testServedFromMemoryUntilTransactionsChange() throws Exception {
+    Forecast first = cache.get(USER);
+    assertSame(first, cache.get(USER));
+    assertEquals(1.0, count("computed"));
+    assertEquals(1.0, count("hit"));
+
+    transactionCount.set(4);
+    cache.onTransactionsChanged(new TransactionChangedEvent(USER));
+    Forecast second = cache.get(USER);
+
+    assertEquals(2.0, count("computed"));
+    assertEquals(104.0, second.getTotalForecastedExpense(), 1e-9);
+    verify(forecastRepository, times(2)).upsert(any(Forecast.class));
+  }
+
+  @Test
+  void testStoredForecastServedOnlyWhileVersionMatches() throws Exception {
+    cache.get(USER);
+    Forecast stored = lastUpserted();
+
+    // Another instance (or a restart): nothing in memory, the stored forecast is current
+    ForecastCache restarted = newCache();
+    when(forecastRepository.findByUserIdAndForecastMonth(eq(USER), any())).thenReturn(stored);
+    assertSame(stored, restarted.get(USER));
+    assertEquals(1.0, count("stored"));
+    verify(forecastService, times(1)).forecast(anyList(), isNull());
+
+    // Data changed without an event reaching this instance: the version no longer matches
+    transactionCount.set(5);
+    ForecastCache stale = newCache();
+    Forecast recomputed = stale.get(USER);
+    assertNotSame(stored, recomputed);
+    assertNotEquals(stored.getDataVersion(), recomputed.getDataVersion());
+    assertEquals(105.0, recomputed.getTotalForecastedExpense(), 1e-9);
+    assertSame(recomputed, lastUpserted());
+  }
+
+  @Test
+  void testComputationOverlappingAChangeIsNotCached() throws Exception {
+    when(forecastService.forecast(anyList(), isNull()))
+        .thenAnswer(invocation -> {
+          // An edit lands while the forecast is being computed
+          cache.onTransactionsChanged(new TransactionChangedEvent(USER));
+          return new ForecastService.ForecastResult(Map.of("Food", 1.0), Map.of(), Map.of());
+        })
+        .thenReturn(new ForecastService.ForecastResult(Map.of("Food", 2.0), Map.of(), Map.of()));
+
+    assertEquals(1.0, cache.get(USER).getTotalForecastedExpense(), 1e-9);
+    assertEquals(2.0, cache.get(USER).getTotalForecastedExpense(), 1e-9);
+    assertEquals(0.0, count("hit"));
+  }
+
+  @Test
+  void testRecomputeIsDebouncedToOneAfterTheLastChange() throws Exception {
+    cache.onTransactionsChanged(new TransactionChangedEvent(USER));
+    Thread.sleep(200);
+    cache.onTransactionsChanged(new TransactionChangedEvent(USER));
+    cache.onTransactionsChanged(new TransactionChangedEvent(USER));
+    Thread.sleep(150);
+
+    // 350 ms after the first change (delay 300), but only 150 ms after the last
+    cache.recomputeDue();
+    verify(llmExecutor, never()).execute(any());
+
+    Thread.sleep(250);
+    cache.recomputeDue();
+    cache.recomputeDue();
+
+    ArgumentCaptor<Runnable> recompute = ArgumentCaptor.forClass(Runnable.class);
+    verify(llmExecutor, times(1)).execute(recompute.capture());
+    recompute.getValue().run();
+    assertEquals(1.0, count("computed"));
+    // The recompute warmed the cache for the next page view
+    cache.get(USER);
+    assertEquals(1.0, count("hit"));
+  }
+
+  @Test
+  void testPerUserStateStaysWithinMaxEntries() throws Exception {
+    ReflectionTestUtils.setField(cache, "maxEntries", 3);
+    ReflectionTestUtils.setField(cache, "recomputeEnabled", false);
+
+    for (int i = 0; i < 100; i++) {
+      cache.onTransactionsChanged(new TransactionChangedEvent("idle-" + i));
+    }
+    for (int i = 0; i < 10; i++) {
+      String userId = "user-" + i;
+      cache.get(userId);
+      cache.onTransactionsChanged(new TransactionChangedEvent(userId));
+    }
+
+    assertEquals(3, ((Map<?, ?>) ReflectionTestUtils.getField(cache, "entries")).size());
+  }
+}
@@ -0,0 +1,90 @@
+package com.shanu.backend.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shanu.backend.model.Transaction;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * ForecastServiceTest - Which months a forecast is built from.
+ *
+ * Tests cover:
+ * - the in-progress current month is left out, however much it holds so far
+ * - trailing months without spending count as zero, so the forecast follows them down
+ * - the history window starts on the first of a month
+ */
+class ForecastServiceTest {
+
+  private static final YearMonth CURRENT = YearMonth.of(2024, 6);
+
+  private ForecastService forecastService;
+
+  @BeforeEach
+  void setUp() {
+    forecastService = new ForecastService();
+    ReflectionTestUtils.setField(forecastService, "historyMonths", 24);
+    ReflectionTestUtils.setField(forecastService, "defaultModel", "wma");
+    ReflectionTestUtils.setField(forecastService, "categoryModelsSpec", "");
+    ReflectionTestUtils.setField(forecastService, "backtestMonths", 3);
+    ReflectionTestUtils.setField(forecastService, "sesAlpha", 0.5);
+    ReflectionTestUtils.setField(forecastService, "holtAlpha", 0.5);
+    ReflectionTestUtils.setField(forecastService, "holtBeta", 0.3);
+    ReflectionTestUtils.setField(forecastService, "dampedPhi", 0.9);
+    ReflectionTestUtils.setField(forecastService, "hwAlpha", 0.4);
+    ReflectionTestUtils.setField(forecastService, "hwBeta", 0.1);
+    ReflectionTestUtils.setField(forecastService, "hwGamma", 0.3);
+    ReflectionTestUtils.setField(forecastService, "hwPeriod", 12);
+    forecastService.init();
+  }
+
+  @Test
+  void testPartialCurrentMonthIsIgnored() {
+    List<Transaction> transactions = new ArrayList<>();
+    for (int m = 1; m <= 5; m++) {
+      transactions.add(expense("Food", 100, CURRENT.minusMonths(m), 10));
+    }
+    // A few days into June: only a sliver of the month's spending so far
+    transactions.add(expense("Food", 7, CURRENT, 2));
+
+    ForecastService.ForecastResult result = forecastService.forecast(transactions, null, CURRENT);
+
+    assertEquals(100.0, result.forecast().get("Food"), 1e-9);
+    assertEquals(0.0, result.trendSlope().get("Food"), 1e-9);
+  }
+
+  @Test
+  void testTrailingEmptyMonthsPullForecastDown() {
+    List<Transaction> transactions = List.of(
+        expense("Travel", 300, CURRENT.minusMonths(5), 10),
+        expense("Travel", 300, CURRENT.minusMonths(4), 10),
+        expense("Travel", 300, CURRENT.minusMonths(3), 10));
+
+    ForecastService.ForecastResult result = forecastService.forecast(transactions, null, CURRENT);
+
+    // Window ends in May: (300*1 + 0*2 + 0*3) / 6, not 300 from March, the last month with data
+    assertEquals(50.0, result.forecast().get("Travel"), 1e-9);
+    assertTrue(result.trendSlope().get("Travel") < 0);
+  }
+
+  @Test
+  void testHistoryStartsOnFirstOfMonth() {
+    assertEquals(LocalDate.of(2022, 6, 1), forecastService.historyStart(CURRENT));
+  }
+
+  private static Transaction expense(String category, double amount, YearMonth month, int day) {
+    Transaction t = new Transaction();
+    t.setType("expense");
+    t.setCategory(category);
+    t.setAmount(amount);
+    t.setDate(Date.from(month.atDay(day).atStartOfDay(ZoneId.systemDefault()).toInstant()));
+    return t;
+  }
+}
@@ -0,0 +1,86 @@
+package com.shanu.backend.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shanu.backend.config.ChatProperties;
+import com.shanu.backend.model.Conversation;
+import com.shanu.backend.model.Message;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * PromptBudgetManagerTest - Which messages make it into the history section of a prompt.
+ *
+ * Tests cover:
+ * - messages past the recent window that are not summarized yet stay in the history
+ * - messages covered by the summary are left out
+ * - the token budget bounds the history, but the newest min-recent-messages always stay
+ */
+class PromptBudgetManagerTest {
+
+  private ChatProperties properties;
+  private PromptBudgetManager manager;
+
+  @BeforeEach
+  void setUp() {
+    properties = new ChatProperties();
+    properties.getPrompt().setTokenBudget(6000);
+    properties.getPrompt().setMaxRecentMessages(4);
+    properties.getPrompt().setMinRecentMessages(2);
+    properties.getPrompt().setSummaryRefreshEvery(6);
+    manager = new PromptBudgetManager(properties);
+  }
+
+  @Test
+  void testUnsummarizedMessagesOutsideTheWindowStayInHistory() {
+    // 10 messages, summary up to 2: 6 past the window of 4, not yet enough to re-summarize
+    Conversation conversation = conversation(10, "earlier talk", 2);
+    assertFalse(manager.needsSummaryRefresh(conversation));
+
+    String history = manager.renderHistory(conversation, 0);
+
+    assertTrue(history.startsWith("Summary of earlier conversation: earlier talk\n"));
+    for (int i = 2; i < 10; i++) {
+      assertTrue(history.contains("message " + i + "\n"), "missing message " + i);
+    }
+    assertFalse(history.contains("message 1\n"));
+    assertTrue(history.indexOf("message 2\n") < history.indexOf("message 9\n"));
+  }
+
+  @Test
+  void testBudgetBoundsHistoryButKeepsTheNewestMessages() {
+    // Each line is 4 tokens; leave room for three
+    properties.getPrompt().setTokenBudget(12);
+    Conversation conversation = conversation(10, null, 0);
+
+    String history = manager.renderHistory(conversation, 0);
+
+    assertTrue(history.contains("message 9\n"));
+    assertTrue(history.contains("message 7\n"));
+    assertFalse(history.contains("message 6\n"));
+
+    // Over budget, the newest min-recent-messages are still kept
+    String squeezed = manager.renderHistory(conversation, 1000);
+    assertEquals("USER: message 8\nUSER: message 9\n", squeezed);
+  }
+
+  private static Conversation conversation(int size, String summary, int summarizedUpTo) {
+    Conversation conversation = new Conversation("u1", "chat");
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      messages.add(new Message("user", "message " + i));
+    }
+    conversation.setMessages(messages);
+    Map<String, Object> meta = new HashMap<>();
+    if (summary != null) {
+      meta.put(PromptBudgetManager.META_SUMMARY, summary);
+      meta.put(PromptBudgetManager.META_SUMMARY_UPTO, summarizedUpTo);
+    }
+    conversation.setMeta(meta);
+    return conversation;
+  }
+}
@@ -0,0 +1,70 @@
+package com.shanu.backend.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JsonObjectExtractorTest - Unit tests for JsonObjectExtractor.
+ *
+ * Tests cover:
+ * - fenced, bare and prose-wrapped objects
+ * - brace-like prose and invalid candidates are skipped
+ * - incremental feeding across arbitrary chunk boundaries (including multi-byte characters)
+ * - pathological inputs finish quickly and yield null
+ */
+class JsonObjectExtractorTest {
+
+  @Test
+  void extractsBareObject() {
+    JsonNode node = JsonObjectExtractor.extractFirst("{\"text\": \"Hello\"}");
+    assertNotNull(node);
+    assertEquals("Hello", node.get("text").asText());
+  }
+
+  @Test
+  void extractsFencedObjectAfterBraceProse() {
+    String response = "Here's the {analysis}:\n```json\n{\"summary\": \"High spend\", \"options\": [\"View details\"]}\n```";
+    JsonNode node = JsonObjectExtractor.extractFirst(response);
+    assertNotNull(node);
+    assertEquals("High spend", node.get("summary").asText());
+    assertEquals("View details", node.get("options").get(0).asText());
+  }
+
+  @Test
+  void skipsInvalidCandidateAndFindsNestedObject() {
+    JsonNode node = JsonObjectExtractor.extractFirst("{ {\"a\": {\"b\": [1, {\"c\": \"}\"}]}} trailing {\"x\": 1}");
+    assertNotNull(node);
+    assertEquals("}", node.at("/a/b/1/c").asText());
+  }
+
+  @Test
+  void returnsNullWithoutObject() {
+    assertNull(JsonObjectExtractor.extractFirst("I couldn't parse that. Can you try again?"));
+    assertNull(JsonObjectExtractor.extractFirst("{'text': 'single quotes are not JSON'}"));
+    assertNull(JsonObjectExtractor.extractFirst("{\"truncated\": {\"a\": 1}"));
+  }
+
+  @Test
+  void feedsIncrementally() {
+    String response = "Sure! ```json\n{\"summary\": \"₹500 saved – nice\", \"n\": [1, 2, 3], \"deep\": {\"q\": true}}\n``` bye";
+    JsonObjectExtractor extractor = new JsonObjectExtractor();
+    JsonNode node = null;
+    for (int i = 0; i < response.length() && node == null; i += 3) {
+      node = extractor.feed(response.substring(i, Math.min(response.length(), i + 3)));
+    }
+    assertNotNull(node);
+    assertTrue(extractor.isComplete());
+    assertEquals("₹500 saved – nice", node.get("summary").asText());
+    assertTrue(node.at("/deep/q").asBoolean());
+  }
+
+  @Test
+  void pathologicalInputsTerminate() {
+    assertTimeoutPreemptively(java.time.Duration.ofSeconds(5), () -> {
+      assertNull(JsonObjectExtractor.extractFirst("{ a ".repeat(50_000)));
+      assertNull(JsonObjectExtractor.extractFirst("{\"a\":".repeat(20_000)));
+    });
+  }
+}